@@ -2,23 +2,34 @@ package com.wang.wangaicodemother.ai;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.wang.wangaicodemother.ai.memory.BudgetedChatMemory;
+import com.wang.wangaicodemother.ai.memory.ChatMemorySummarizer;
+import com.wang.wangaicodemother.config.ChatMemoryProperties;
+import com.wang.wangaicodemother.manager.ChatMemoryVersionManager;
+import com.wang.wangaicodemother.manager.ProjectTreeIndexManager;
 import com.wang.wangaicodemother.manager.ToolManager;
 import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
 import com.wang.wangaicodemother.exception.ErrorCode;
 import com.wang.wangaicodemother.service.ChatHistoryService;
-import com.wang.wangaicodemother.utils.SpringContextUtil;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
 @Slf4j
 @Configuration
@@ -27,8 +38,14 @@ public class AICodeServiceFactory {
     @Resource(name = "openAiChatModel")
     private ChatModel chatModel;
 
+    /**
+     * 原型 Bean 注入时只创建一次，所有应用共用同一个模型客户端
+     */
+    @Resource(name = "reasoningStreamingChatModelPrototype")
+    private StreamingChatModel streamingChatModel;
+
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private ChatMemoryStore redisChatMemoryStore;
 
     @Resource
     private ChatHistoryService chatHistoryService;
@@ -36,65 +53,128 @@ public class AICodeServiceFactory {
     @Resource
     private ToolManager toolManager;
 
+    @Resource
+    private ChatMemoryVersionManager chatMemoryVersionManager;
+
+    @Resource
+    private ProjectTreeIndexManager projectTreeIndexManager;
+
+    @Resource
+    private ChatMemoryProperties chatMemoryProperties;
+
+    @Resource
+    private ChatMemorySummarizer chatMemorySummarizer;
+
+    /**
+     * 每种生成类型一个 AI 服务模板，工具定义、工具执行器和模型客户端启动时创建一次
+     */
+    private final Map<CodeGenTypeEnum, Assistant> templates = new EnumMap<>(CodeGenTypeEnum.class);
 
-    private final Cache<String, Assistant> serviceCache = Caffeine.newBuilder()
+    /**
+     * 应用与对话记忆的绑定，过期后从模板中解绑，控制模板内记忆对象的数量
+     */
+    private final Cache<String, ChatMemory> memoryBindings = Caffeine.newBuilder()
             .maximumSize(1000)
             .expireAfterWrite(Duration.ofMinutes(30))
             .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI服务实例被删除了，appId:{},原因:{}", key, value);
+            .removalListener((String key, ChatMemory value, RemovalCause cause) -> {
+                log.debug("对话记忆解绑，key:{},原因:{}", key, cause);
+                String[] parts = key.split("_", 2);
+                long appId = Long.parseLong(parts[0]);
+                CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(parts[1]);
+                Assistant template = templates.get(codeGenType);
+                if (template != null) {
+                    template.evictChatMemory(appId);
+                }
+                // 项目文件树索引与 AI 服务的记忆绑定同时释放
+                if (codeGenType == CodeGenTypeEnum.VUE_PROJECT) {
+                    projectTreeIndexManager.evict(appId);
+                }
             })
             .build();
 
+    @PostConstruct
+    public void initTemplates() {
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            ChatMemoryProvider chatMemoryProvider = memoryId -> bindChatMemory(Long.parseLong(String.valueOf(memoryId)), codeGenType);
+            templates.put(codeGenType, buildTemplate(codeGenType, chatModel, streamingChatModel, toolManager.getToolExecutors(), chatMemoryProvider));
+        }
+        log.info("AI服务模板初始化完成，共 {} 个", templates.size());
+    }
 
     /**
-     * 根据appId单独创建ai服务，实现对话记忆
+     * 构建某种生成类型的 AI 服务模板
+     *
+     * @param codeGenType        生成类型
+     * @param chatModel          对话模型
+     * @param streamingChatModel 流式对话模型
+     * @param tools              工具定义和执行器（Vue 项目模式使用）
+     * @param chatMemoryProvider 按 appId 提供对话记忆
+     * @return AI 服务
      */
-    public Assistant getAICodeService(long appId, CodeGenTypeEnum codeGenType) {
-        log.info("创建新的AI服务实例{}", appId);
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .id(appId)
-                .maxMessages(35)
-                .chatMemoryStore(redisChatMemoryStore)
-                .build();
-        //从数据库加载历史对话
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+    static Assistant buildTemplate(CodeGenTypeEnum codeGenType, ChatModel chatModel, StreamingChatModel streamingChatModel,
+                                   Map<ToolSpecification, ToolExecutor> tools, ChatMemoryProvider chatMemoryProvider) {
         return switch (codeGenType) {
             //两种模式使用相同的复杂模型
-            case VUE_PROJECT -> {
-                StreamingChatModel streamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
-                Assistant assistant = AiServices.builder(Assistant.class)
-                        .streamingChatModel(streamingChatModel)
-                        .chatMemoryProvider(memoryId -> chatMemory)
-                        .tools(toolManager.getAllTools())
-                        .hallucinatedToolNameStrategy(toolExecutionRequest ->
-                                ToolExecutionResultMessage.from(toolExecutionRequest,
-                                        "Error:there is no tool called" + toolExecutionRequest.name())
-                        )
-                        .build();
-                yield assistant;
-            }
-            case MULTI_FILE, HTML -> {
-                StreamingChatModel streamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
-               yield  AiServices.builder(Assistant.class)
-                        .chatModel(chatModel)
-                        .streamingChatModel(streamingChatModel)
-                        .chatMemory(chatMemory)
-                        .build();
-            }
+            case VUE_PROJECT -> AiServices.builder(Assistant.class)
+                    .streamingChatModel(streamingChatModel)
+                    .chatMemoryProvider(chatMemoryProvider)
+                    .tools(tools)
+                    .hallucinatedToolNameStrategy(toolExecutionRequest ->
+                            ToolExecutionResultMessage.from(toolExecutionRequest,
+                                    "Error:there is no tool called" + toolExecutionRequest.name())
+                    )
+                    .build();
+            case MULTI_FILE, HTML -> AiServices.builder(Assistant.class)
+                    .chatModel(chatModel)
+                    .streamingChatModel(streamingChatModel)
+                    .chatMemoryProvider(chatMemoryProvider)
+                    .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
         };
     }
 
+    /**
+     * 为应用创建对话记忆
+     * Redis 中的记忆不为空且版本与对话历史一致时直接复用（解绑后再次绑定、重启、生成过程中被解绑），
+     * 只有 Redis 为空或已过期时才从数据库加载历史
+     */
+    private ChatMemory bindChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+        return memoryBindings.get(buildCacheKey(appId, codeGenType), key -> {
+            log.info("绑定应用对话记忆{}", appId);
+            BudgetedChatMemory chatMemory = BudgetedChatMemory.builder()
+                    .id(appId)
+                    .store(redisChatMemoryStore)
+                    .maxMessages(chatMemoryProperties.getMaxMessages())
+                    .tokenBudget(chatMemoryProperties.tokenBudget(codeGenType))
+                    .staleContentMinChars(chatMemoryProperties.getStaleContentMinChars())
+                    .summarizer(chatMemoryProperties.isSummaryEnabled() ? chatMemorySummarizer : null)
+                    .build();
+            ChatMemoryVersionManager.MemoryState memoryState = chatMemoryVersionManager.check(appId);
+            if (!memoryState.warm()) {
+                //从数据库加载历史对话
+                chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+                chatMemoryVersionManager.markLoaded(appId, memoryState);
+            }
+            return chatMemory;
+        });
+    }
+
 
     /**
-     * 创建AI服务
+     * 获取AI服务
+     * 返回共享的模板，对话记忆在首次调用时通过 @MemoryId 绑定
      *
      * @return
      */
     public Assistant createAICodeService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> getAICodeService(appId, codeGenType));
+        Assistant template = templates.get(codeGenType);
+        if (template == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
+        }
+        // 刷新绑定的访问时间，活跃的应用不会被解绑
+        memoryBindings.getIfPresent(buildCacheKey(appId, codeGenType));
+        return template;
     }
 
 
@@ -6,60 +6,66 @@ import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
-import reactor.core.publisher.Flux;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 
 /**
  * AI 对话接口(输入用户信息，返回AI输出的内容)
+ * 同一生成类型的所有应用共用一个实例，按 appId（@MemoryId）区分对话记忆
  *
  * @author wang
  */
-public interface Assistant {
+public interface Assistant extends ChatMemoryAccess {
 
     /**
      * 生成html
      * SystemMessage(提示词)
      *
+     * @param appId       应用 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/html.txt")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成html，css,js多文件
      * SystemMessage(提示词)
      *
+     * @param appId       应用 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/multi-file.txt")
-    MultiFileCodeResult generateMultiCode(String userMessage);
+    MultiFileCodeResult generateMultiCode(@MemoryId long appId, @UserMessage String userMessage);
 
 
     /**
      * 生成html
      * SystemMessage(提示词)
      *
+     * @param appId       应用 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/html.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    TokenStream generateHtmlCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成html，css,js多文件
      * SystemMessage(提示词)
      *
+     * @param appId       应用 ID
      * @param userMessage
      * @return
      */
     @SystemMessage(fromResource = "prompt/multi-file.txt")
-    Flux<String> generateMultiCodeStream(String userMessage);
+    TokenStream generateMultiCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
 
     /**
      * 生成 Vue 项目代码（流式）
      *
+     * @param appId       应用 ID
      * @param userMessage 用户消息
      * @return 生成过程的流式响应
      */
@@ -0,0 +1,18 @@
+package com.wang.wangaicodemother.ai;
+
+import dev.langchain4j.service.SystemMessage;
+
+/**
+ * 对话记忆摘要服务
+ */
+public interface ChatMemorySummaryService {
+
+    /**
+     * 把已有摘要和移出记忆的对话合并为新摘要
+     *
+     * @param conversation 已有摘要和对话记录
+     * @return 新摘要
+     */
+    @SystemMessage(fromResource = "prompt/memory-summary.txt")
+    String summarize(String conversation);
+}
@@ -0,0 +1,354 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 token 预算裁剪的对话记忆
+ * 超出预算或条数上限时：先把旧轮次中的完整文件内容替换为对当前文件的引用，仍然超出再按轮次移出最旧的对话，
+ * 移出的轮次在后台总结为摘要，追加到系统消息末尾。最新一轮（最后一条用户消息及之后的消息）始终完整保留
+ */
+@Slf4j
+public class BudgetedChatMemory implements ChatMemory {
+
+    static final String SUMMARY_HEADER = "\n\n## 之前对话的摘要\n";
+
+    private static final Pattern CODE_BLOCK = Pattern.compile("```([\\w-]*)\\n([\\s\\S]*?)```");
+
+    private static final Set<String> FILE_CONTENT_ARGUMENTS = Set.of("content", "oldContent", "newContent");
+
+    private static final ExecutorService SUMMARY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxMessages;
+
+    private final int tokenBudget;
+
+    private final int staleContentMinChars;
+
+    private final TokenCountEstimator estimator;
+
+    /**
+     * 摘要生成器，为空时移出的轮次直接丢弃
+     */
+    private final ChatMemorySummarizer summarizer;
+
+    /**
+     * 压缩累计节省的 token 数（估算）
+     */
+    private final AtomicLong savedTokens = new AtomicLong();
+
+    /**
+     * 摘要按移出的先后顺序依次生成
+     */
+    private CompletableFuture<Void> summaryChain = CompletableFuture.completedFuture(null);
+
+    /**
+     * 记忆代次，clear() 时递增；摘要生成期间记忆被清空时丢弃结果，不把旧对话的摘要写回
+     */
+    private long generation;
+
+    @Builder
+    public BudgetedChatMemory(Object id, ChatMemoryStore store, int maxMessages, int tokenBudget,
+                              int staleContentMinChars, TokenCountEstimator estimator, ChatMemorySummarizer summarizer) {
+        this.id = id;
+        this.store = store;
+        this.maxMessages = maxMessages;
+        this.tokenBudget = tokenBudget;
+        this.staleContentMinChars = staleContentMinChars;
+        this.estimator = estimator == null ? new HeuristicTokenCountEstimator() : estimator;
+        this.summarizer = summarizer;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage systemMessage) {
+            if (!mergeSystemMessage(messages, systemMessage)) {
+                return;
+            }
+        } else {
+            messages.add(message);
+        }
+        compact(messages);
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public synchronized void clear() {
+        generation++;
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 当前记忆的估算 token 数
+     */
+    public int estimatedTokens() {
+        return estimator.estimateTokenCountInMessages(messages());
+    }
+
+    /**
+     * 压缩累计节省的估算 token 数
+     */
+    public long savedTokens() {
+        return savedTokens.get();
+    }
+
+    /**
+     * 系统消息内容相同（不计摘要）时不写入，不同时替换并保留摘要
+     */
+    private boolean mergeSystemMessage(List<ChatMessage> messages, SystemMessage systemMessage) {
+        if (!messages.isEmpty() && messages.getFirst() instanceof SystemMessage existing) {
+            String[] parts = splitSummary(existing.text());
+            if (parts[0].equals(systemMessage.text())) {
+                return false;
+            }
+            messages.set(0, SystemMessage.from(withSummary(systemMessage.text(), parts[1])));
+            return true;
+        }
+        messages.addFirst(systemMessage);
+        return true;
+    }
+
+    /**
+     * 超出预算时压缩，直接修改传入的列表
+     */
+    void compact(List<ChatMessage> messages) {
+        int before = estimator.estimateTokenCountInMessages(messages);
+        if (before <= tokenBudget && nonSystemCount(messages) <= maxMessages) {
+            return;
+        }
+        int first = systemOffset(messages);
+        int latestTurnStart = latestTurnStart(messages);
+        for (int i = first; i < latestTurnStart; i++) {
+            messages.set(i, stripStaleContent(messages.get(i)));
+        }
+        int total = estimator.estimateTokenCountInMessages(messages);
+        List<ChatMessage> evicted = new ArrayList<>();
+        while (total > tokenBudget || nonSystemCount(messages) > maxMessages) {
+            int next = nextTurnStart(messages, first);
+            if (next < 0) {
+                break;
+            }
+            List<ChatMessage> turn = messages.subList(first, next);
+            total -= estimator.estimateTokenCountInMessages(turn);
+            evicted.addAll(turn);
+            turn.clear();
+        }
+        savedTokens.addAndGet(before - total);
+        log.info("对话记忆压缩，memoryId: {}, 估算 token {} -> {}（预算 {}），移出 {} 条消息",
+                id, before, total, tokenBudget, evicted.size());
+        if (!evicted.isEmpty() && summarizer != null) {
+            scheduleSummary(evicted);
+        }
+    }
+
+    /**
+     * 旧轮次中的完整文件内容已经过时，替换为对当前文件状态的引用
+     */
+    ChatMessage stripStaleContent(ChatMessage message) {
+        if (message instanceof AiMessage aiMessage) {
+            String text = aiMessage.text();
+            String strippedText = text == null ? null : stripCodeBlocks(text);
+            List<ToolExecutionRequest> requests = aiMessage.hasToolExecutionRequests()
+                    ? aiMessage.toolExecutionRequests().stream().map(this::stripArguments).toList()
+                    : List.of();
+            if (StrUtil.equals(text, strippedText) && requests.equals(aiMessage.toolExecutionRequests())) {
+                return message;
+            }
+            return AiMessage.builder().text(strippedText).toolExecutionRequests(requests).build();
+        }
+        if (message instanceof ToolExecutionResultMessage resultMessage
+                && resultMessage.text() != null && resultMessage.text().length() > staleContentMinChars) {
+            return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(),
+                    "[工具结果已省略，文件以当前状态为准，需要时重新读取]");
+        }
+        return message;
+    }
+
+    private String stripCodeBlocks(String text) {
+        Matcher matcher = CODE_BLOCK.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String replacement = matcher.group(2).length() > staleContentMinChars
+                    ? "```" + matcher.group(1) + "\n[旧版本代码已省略，以最新回复中的代码为准]\n```"
+                    : matcher.group();
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private ToolExecutionRequest stripArguments(ToolExecutionRequest request) {
+        String arguments = request.arguments();
+        if (arguments == null || arguments.length() <= staleContentMinChars) {
+            return request;
+        }
+        JSONObject json;
+        try {
+            json = JSONUtil.parseObj(arguments);
+        } catch (Exception e) {
+            return request;
+        }
+        boolean changed = false;
+        for (String key : FILE_CONTENT_ARGUMENTS) {
+            String value = json.getStr(key);
+            if (value != null && value.length() > staleContentMinChars) {
+                json.set(key, "[内容已省略，以当前文件 " + json.getStr("relativeFilePath", "") + " 为准，需要时调用 readFile 读取]");
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return request;
+        }
+        return ToolExecutionRequest.builder()
+                .id(request.id())
+                .name(request.name())
+                .arguments(json.toString())
+                .build();
+    }
+
+    private synchronized void scheduleSummary(List<ChatMessage> evicted) {
+        List<ChatMessage> batch = List.copyOf(evicted);
+        long scheduledGeneration = generation;
+        summaryChain = summaryChain
+                .thenRunAsync(() -> summarizeAndApply(batch, scheduledGeneration), SUMMARY_EXECUTOR)
+                .exceptionally(e -> {
+                    log.warn("对话记忆摘要生成失败，memoryId: {}, error: {}", id, e.getMessage());
+                    return null;
+                });
+    }
+
+    private void summarizeAndApply(List<ChatMessage> evicted, long scheduledGeneration) {
+        if (isStale(scheduledGeneration)) {
+            return;
+        }
+        String previous = currentSummary(messages());
+        String summary = summarizer.summarize(previous, evicted);
+        if (StrUtil.isBlank(summary)) {
+            return;
+        }
+        synchronized (this) {
+            if (isStale(scheduledGeneration)) {
+                log.info("对话记忆已清空，丢弃过期的摘要，memoryId: {}", id);
+                return;
+            }
+            List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+            if (!messages.isEmpty() && messages.getFirst() instanceof SystemMessage existing) {
+                messages.set(0, SystemMessage.from(withSummary(splitSummary(existing.text())[0], summary)));
+            } else {
+                messages.addFirst(SystemMessage.from(withSummary("", summary)));
+            }
+            store.updateMessages(id, messages);
+        }
+        log.info("对话记忆摘要已更新，memoryId: {}, 合并 {} 条消息，摘要 {} 字", id, evicted.size(), summary.length());
+    }
+
+    private synchronized boolean isStale(long scheduledGeneration) {
+        return scheduledGeneration != generation;
+    }
+
+    /**
+     * 等待已提交的摘要生成完成
+     */
+    CompletableFuture<Void> summaryFuture() {
+        synchronized (this) {
+            return summaryChain;
+        }
+    }
+
+    static String currentSummary(List<ChatMessage> messages) {
+        if (!messages.isEmpty() && messages.getFirst() instanceof SystemMessage systemMessage) {
+            return splitSummary(systemMessage.text())[1];
+        }
+        return null;
+    }
+
+    /**
+     * 拆分系统消息
+     *
+     * @return [原始系统消息, 摘要（可为空）]
+     */
+    static String[] splitSummary(String text) {
+        String header = SUMMARY_HEADER.stripLeading();
+        if (text.startsWith(header)) {
+            return new String[]{"", text.substring(header.length())};
+        }
+        int index = text.indexOf(SUMMARY_HEADER);
+        if (index < 0) {
+            return new String[]{text, null};
+        }
+        return new String[]{text.substring(0, index), text.substring(index + SUMMARY_HEADER.length())};
+    }
+
+    static String withSummary(String base, String summary) {
+        if (summary == null) {
+            return base;
+        }
+        return base.isEmpty() ? SUMMARY_HEADER.stripLeading() + summary : base + SUMMARY_HEADER + summary;
+    }
+
+    private static int systemOffset(List<ChatMessage> messages) {
+        return !messages.isEmpty() && messages.getFirst() instanceof SystemMessage ? 1 : 0;
+    }
+
+    private static int nonSystemCount(List<ChatMessage> messages) {
+        return messages.size() - systemOffset(messages);
+    }
+
+    private static int latestTurnStart(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return systemOffset(messages);
+    }
+
+    /**
+     * from 之后的第一条用户消息，即下一轮的开始；没有下一轮时返回 -1
+     */
+    private static int nextTurnStart(List<ChatMessage> messages, int from) {
+        for (int i = from + 1; i < messages.size(); i++) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
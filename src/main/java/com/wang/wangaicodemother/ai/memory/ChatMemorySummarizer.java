@@ -0,0 +1,21 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * 对话摘要生成器
+ */
+@FunctionalInterface
+public interface ChatMemorySummarizer {
+
+    /**
+     * 把移出记忆的轮次合并进已有摘要
+     *
+     * @param previousSummary 已有摘要，可为空
+     * @param evicted         移出记忆的消息
+     * @return 新摘要
+     */
+    String summarize(String previousSummary, List<ChatMessage> evicted);
+}
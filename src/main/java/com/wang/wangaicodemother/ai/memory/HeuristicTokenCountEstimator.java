@@ -0,0 +1,70 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 按字符估算 token 数
+ * 中日韩字符约 1 个 token，其余字符约 4 个一个 token；不依赖具体模型的分词器，记忆每次变化都要估算，需要足够快
+ */
+public class HeuristicTokenCountEstimator implements TokenCountEstimator {
+
+    /**
+     * 每条消息的角色、分隔符等固定开销
+     */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '⺀' && c <= '￯') {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD;
+        switch (message) {
+            case SystemMessage systemMessage -> tokens += estimateTokenCountInText(systemMessage.text());
+            case UserMessage userMessage -> tokens += userMessage.hasSingleText()
+                    ? estimateTokenCountInText(userMessage.singleText()) : 0;
+            case AiMessage aiMessage -> {
+                tokens += estimateTokenCountInText(aiMessage.text());
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        tokens += estimateTokenCountInText(request.name()) + estimateTokenCountInText(request.arguments());
+                    }
+                }
+            }
+            case ToolExecutionResultMessage resultMessage -> tokens += estimateTokenCountInText(resultMessage.text());
+            default -> {
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,82 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import com.wang.wangaicodemother.ai.ChatMemorySummaryService;
+import com.wang.wangaicodemother.config.ChatMemoryProperties;
+import com.wang.wangaicodemother.core.admission.ModelAdmissionScheduler;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.service.AiServices;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 调用对话模型生成摘要
+ * 对话记录只保留用户消息、AI 回复的文字和工具调用的目标文件，代码内容不参与摘要
+ */
+@Slf4j
+@Component
+public class ModelChatMemorySummarizer implements ChatMemorySummarizer {
+
+    /**
+     * 单条消息参与摘要的最大字符数
+     */
+    private static final int MAX_MESSAGE_CHARS = 500;
+
+    @Resource(name = "openAiChatModel")
+    private ChatModel chatModel;
+
+    @Resource
+    private ModelAdmissionScheduler modelAdmissionScheduler;
+
+    @Resource
+    private ChatMemoryProperties chatMemoryProperties;
+
+    private ChatMemorySummaryService chatMemorySummaryService;
+
+    @PostConstruct
+    public void init() {
+        chatMemorySummaryService = AiServices.builder(ChatMemorySummaryService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<ChatMessage> evicted) {
+        String conversation = buildConversation(previousSummary, evicted);
+        String summary = modelAdmissionScheduler.call(ModelAdmissionScheduler.OPENAI_CHAT_MODEL, null,
+                () -> chatMemorySummaryService.summarize(conversation));
+        return StrUtil.maxLength(StrUtil.trim(summary), chatMemoryProperties.getSummaryMaxChars());
+    }
+
+    private String buildConversation(String previousSummary, List<ChatMessage> evicted) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("字数上限：").append(chatMemoryProperties.getSummaryMaxChars()).append("\n\n");
+        builder.append("【已有摘要】\n").append(StrUtil.blankToDefault(previousSummary, "无")).append("\n\n");
+        builder.append("【新移出的对话】\n");
+        for (ChatMessage message : evicted) {
+            if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+                builder.append("用户：").append(StrUtil.maxLength(userMessage.singleText(), MAX_MESSAGE_CHARS)).append('\n');
+            } else if (message instanceof AiMessage aiMessage) {
+                if (StrUtil.isNotBlank(aiMessage.text())) {
+                    builder.append("AI：").append(StrUtil.maxLength(aiMessage.text(), MAX_MESSAGE_CHARS)).append('\n');
+                }
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        String path = StrUtil.subBetween(request.arguments(), "\"relativeFilePath\":\"", "\"");
+                        builder.append("AI 调用工具：").append(request.name())
+                                .append(path == null ? "" : " " + path).append('\n');
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
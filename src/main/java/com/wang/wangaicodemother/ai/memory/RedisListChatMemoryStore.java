@@ -0,0 +1,279 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wang.wangaicodemother.utils.codec.PayloadCodecs;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 基于 Redis 列表的对话记忆存储
+ * 系统消息单独存一个 key，其余消息每条一个列表元素。MessageWindowChatMemory 每次 add 都会传入完整列表，
+ * 这里和上次写入的内容比较，只追加新消息并用 LTRIM 裁掉窗口外的旧消息，不再整体重写。
+ * 每次写入递增记忆的修订号，增量写入前比较修订号，其他实例写过之后改为整体重写。
+ * 每条消息单独压缩后写入（PayloadCodecs.FAST），读取时解压
+ */
+@Slf4j
+public class RedisListChatMemoryStore implements ChatMemoryStore {
+
+    private static final String KEY_PREFIX = "chat:memory:";
+
+    private static final String SYSTEM_KEY_SUFFIX = ":sys";
+
+    private static final String VERSION_KEY_SUFFIX = ":ver";
+
+    private static final String REVISION_KEY_SUFFIX = ":rev";
+
+    private static final String SYSTEM_KEEP = "keep";
+
+    private static final String SYSTEM_SET = "set";
+
+    private static final String SYSTEM_DELETE = "del";
+
+    /**
+     * KEYS[1] 消息列表，KEYS[2] 系统消息，KEYS[3] 记忆对应的对话历史版本（只续期），KEYS[4] 记忆修订号
+     * ARGV: 期望的修订号（-1 表示整体重写）、头部裁掉的条数、过期时间（秒）、系统消息操作、系统消息、追加的消息...
+     * 修订号与期望不一致（其他实例已修改）时返回 0，由调用方整体重写；成功时返回新的修订号。
+     * 窗口写满后列表长度保持不变，只比较长度无法发现其他实例的写入，因此比较修订号
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            local expected = tonumber(ARGV[1])
+            local revision = tonumber(redis.call('GET', KEYS[4]) or '0')
+            if expected >= 0 and revision ~= expected then
+                return 0
+            end
+            if expected < 0 then
+                redis.call('DEL', KEYS[1])
+            end
+            local drop = tonumber(ARGV[2])
+            if drop > 0 then
+                redis.call('LTRIM', KEYS[1], drop, -1)
+            end
+            if #ARGV > 5 then
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, 6))
+            end
+            if ARGV[4] == 'set' then
+                redis.call('SET', KEYS[2], ARGV[5])
+            elseif ARGV[4] == 'del' then
+                redis.call('DEL', KEYS[2])
+            end
+            revision = redis.call('INCR', KEYS[4])
+            local ttl = tonumber(ARGV[3])
+            if ttl > 0 then
+                redis.call('EXPIRE', KEYS[1], ttl)
+                redis.call('EXPIRE', KEYS[2], ttl)
+                redis.call('EXPIRE', KEYS[3], ttl)
+                redis.call('EXPIRE', KEYS[4], ttl)
+            end
+            return revision
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final long ttlSeconds;
+
+    /**
+     * 本实例上次写入或读取的内容及其修订号，用于计算增量
+     */
+    private final Cache<String, Revision> snapshots = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    public RedisListChatMemoryStore(StringRedisTemplate stringRedisTemplate, long ttlSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = listKey(memoryId);
+        // 系统消息和消息列表一次往返读取
+        // 修订号最先读取：读取期间有其他实例写入时，拿到的是旧修订号，下次写入会因不一致而整体重写
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.get(key + REVISION_KEY_SUFFIX);
+            stringConnection.get(key + SYSTEM_KEY_SUFFIX);
+            stringConnection.lRange(key, 0, -1);
+            return null;
+        });
+        long revision = results.get(0) == null ? 0 : Long.parseLong((String) results.get(0));
+        String system = PayloadCodecs.decode((String) results.get(1));
+        @SuppressWarnings("unchecked")
+        List<String> stored = results.get(2) == null ? List.of() : (List<String>) results.get(2);
+        List<String> items = stored.stream().map(PayloadCodecs::decode).toList();
+        snapshots.put(key, new Revision(new Snapshot(system, items), revision));
+        List<ChatMessage> messages = new ArrayList<>(items.size() + 1);
+        if (system != null) {
+            messages.add(ChatMessageDeserializer.messageFromJson(system));
+        }
+        for (String item : items) {
+            messages.add(ChatMessageDeserializer.messageFromJson(item));
+        }
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = listKey(memoryId);
+        Snapshot next = Snapshot.of(messages);
+        Revision previous = snapshots.getIfPresent(key);
+        long revision = previous == null ? 0 : execute(key, plan(previous.snapshot(), next), previous.revision());
+        if (revision == 0) {
+            if (previous != null) {
+                log.debug("对话记忆 {} 已被其他实例修改，整体重写", memoryId);
+            }
+            revision = execute(key, plan(null, next), -1);
+        }
+        snapshots.put(key, new Revision(next, revision));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = listKey(memoryId);
+        stringRedisTemplate.delete(List.of(key, key + SYSTEM_KEY_SUFFIX, key + VERSION_KEY_SUFFIX));
+        // 修订号不删除而是递增，持有旧内容的实例之后的增量写入会失败并整体重写
+        stringRedisTemplate.opsForValue().increment(key + REVISION_KEY_SUFFIX);
+        snapshots.invalidate(key);
+    }
+
+    /**
+     * 执行写入计划
+     *
+     * @param expectedRevision 期望的修订号，-1 表示不比较（整体重写）
+     * @return 写入后的修订号，修订号不一致时返回 0
+     */
+    private long execute(String key, Plan plan, long expectedRevision) {
+        List<String> args = new ArrayList<>(plan.appended().size() + 5);
+        args.add(String.valueOf(plan.isRewrite() ? -1 : expectedRevision));
+        args.add(String.valueOf(plan.drop()));
+        args.add(String.valueOf(ttlSeconds));
+        args.add(plan.systemOperation());
+        args.add(plan.system() == null ? "" : PayloadCodecs.encode(plan.system(), PayloadCodecs.FAST));
+        for (String item : plan.appended()) {
+            args.add(PayloadCodecs.encode(item, PayloadCodecs.FAST));
+        }
+        Long result = stringRedisTemplate.execute(UPDATE_SCRIPT,
+                List.of(key, key + SYSTEM_KEY_SUFFIX, key + VERSION_KEY_SUFFIX, key + REVISION_KEY_SUFFIX), args.toArray());
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * 消息列表的 key
+     */
+    public static String listKey(Object memoryId) {
+        // 同一记忆的 key 用同一个 hash tag，集群模式下落在同一个槽，脚本可以同时操作
+        return KEY_PREFIX + "{" + memoryId + "}";
+    }
+
+    /**
+     * 记忆对应的对话历史版本的 key，过期时间随消息列表续期
+     */
+    public static String versionKey(Object memoryId) {
+        return listKey(memoryId) + VERSION_KEY_SUFFIX;
+    }
+
+    /**
+     * 计算从上次的内容变为新内容需要执行的操作
+     * 新列表是旧列表去掉头部若干条再追加若干条时只写增量，否则整体重写
+     *
+     * @param previous 上次的内容，未知时为空
+     * @param next     新内容
+     * @return 写入计划
+     */
+    static Plan plan(Snapshot previous, Snapshot next) {
+        if (previous == null) {
+            return new Plan(true, 0, next.items(), systemOperation(next.system()), next.system());
+        }
+        String systemOperation = Objects.equals(previous.system(), next.system())
+                ? SYSTEM_KEEP : systemOperation(next.system());
+        List<String> oldItems = previous.items();
+        List<String> newItems = next.items();
+        for (int drop = 0; drop <= oldItems.size(); drop++) {
+            int kept = oldItems.size() - drop;
+            if (kept > newItems.size()) {
+                continue;
+            }
+            if (oldItems.subList(drop, oldItems.size()).equals(newItems.subList(0, kept))) {
+                return new Plan(false, drop, newItems.subList(kept, newItems.size()), systemOperation, next.system());
+            }
+        }
+        return new Plan(true, 0, newItems, systemOperation(next.system()), next.system());
+    }
+
+    private static String systemOperation(String system) {
+        return system == null ? SYSTEM_DELETE : SYSTEM_SET;
+    }
+
+    /**
+     * 已序列化的对话记忆
+     *
+     * @param system 系统消息，可为空
+     * @param items  其余消息
+     */
+    record Snapshot(String system, List<String> items) {
+
+        static Snapshot of(List<ChatMessage> messages) {
+            String system = null;
+            List<String> items = new ArrayList<>(messages.size());
+            for (ChatMessage message : messages) {
+                if (message instanceof SystemMessage && system == null && items.isEmpty()) {
+                    system = ChatMessageSerializer.messageToJson(message);
+                } else {
+                    items.add(ChatMessageSerializer.messageToJson(message));
+                }
+            }
+            return new Snapshot(system, items);
+        }
+    }
+
+    /**
+     * 已写入或读取的对话记忆及其修订号
+     */
+    private record Revision(Snapshot snapshot, long revision) {
+    }
+
+    /**
+     * 写入计划
+     *
+     * @param rewrite         是否整体重写
+     * @param drop            头部裁掉的条数
+     * @param appended        追加的消息
+     * @param systemOperation 系统消息的操作
+     * @param system          系统消息
+     */
+    record Plan(boolean rewrite, int drop, List<String> appended, String systemOperation, String system) {
+
+        boolean isRewrite() {
+            return rewrite;
+        }
+
+        /**
+         * 发送给 Redis 的消息内容字节数
+         */
+        long payloadBytes() {
+            long bytes = 0;
+            for (String item : appended) {
+                bytes += item.getBytes(StandardCharsets.UTF_8).length;
+            }
+            if (!SYSTEM_KEEP.equals(systemOperation) && system != null) {
+                bytes += system.getBytes(StandardCharsets.UTF_8).length;
+            }
+            return bytes;
+        }
+    }
+}
@@ -6,10 +6,11 @@ import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 进程内以对象形式在外观类和流处理器之间传递，只在 SSE 出口处序列化一次
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
     private String type;
 }
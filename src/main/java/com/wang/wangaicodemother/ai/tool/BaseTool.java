@@ -1,7 +1,12 @@
 package com.wang.wangaicodemother.ai.tool;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Set;
+
 /**
  * 工具基类
  * 定义所有工具的通用接口
@@ -38,4 +43,33 @@ public abstract class BaseTool {
      * @return 格式化的工具执行结果
      */
     public abstract String generateToolExecutedResult(JSONObject arguments);
+
+    /**
+     * 本次调用涉及的资源，同一轮中资源相同的调用按请求顺序执行，其余调用并发执行
+     * 默认与所有调用冲突（串行执行）
+     *
+     * @param arguments 工具执行参数
+     * @return 资源标识，返回 null 表示与所有调用冲突
+     */
+    public Set<String> conflictKeys(JSONObject arguments) {
+        return null;
+    }
+
+    /**
+     * 以文件路径作为资源标识，路径为空或无效时与所有调用冲突
+     *
+     * @param arguments 工具执行参数
+     * @return 资源标识
+     */
+    protected Set<String> filePathConflictKeys(JSONObject arguments) {
+        String relativeFilePath = arguments.getStr("relativeFilePath");
+        if (StrUtil.isBlank(relativeFilePath)) {
+            return null;
+        }
+        try {
+            return Set.of(Paths.get(relativeFilePath).normalize().toString());
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package com.wang.wangaicodemother.ai.tool;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.service.tool.ConflictAwareToolExecutor;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 工具执行器
+ * 执行委托给 langchain4j 默认执行器，同时向流式工具循环声明调用涉及的资源，使同一轮中互不冲突的工具调用可以并发执行
+ */
+public class BaseToolExecutor implements ConflictAwareToolExecutor {
+
+    private final BaseTool tool;
+
+    private final ToolExecutor delegate;
+
+    public BaseToolExecutor(BaseTool tool, Method method) {
+        this.tool = tool;
+        this.delegate = new DefaultToolExecutor(tool, method);
+    }
+
+    @Override
+    public String execute(ToolExecutionRequest request, Object memoryId) {
+        return delegate.execute(request, memoryId);
+    }
+
+    @Override
+    public Set<String> conflictKeys(ToolExecutionRequest request, Object memoryId) {
+        JSONObject arguments;
+        try {
+            arguments = JSONUtil.parseObj(request.arguments());
+        } catch (Exception e) {
+            // 参数无法解析时按冲突处理，交给执行器返回错误
+            return null;
+        }
+        return tool.conflictKeys(arguments);
+    }
+
+    /**
+     * 为工具的所有 @Tool 方法创建工具定义和执行器
+     *
+     * @param tools 工具
+     * @return 工具定义到执行器的映射
+     */
+    public static Map<ToolSpecification, ToolExecutor> forTools(BaseTool... tools) {
+        Map<ToolSpecification, ToolExecutor> toolExecutors = new LinkedHashMap<>();
+        for (BaseTool tool : tools) {
+            for (Method method : tool.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    toolExecutors.put(ToolSpecifications.toolSpecificationFrom(method), new BaseToolExecutor(tool, method));
+                }
+            }
+        }
+        return toolExecutors;
+    }
+}
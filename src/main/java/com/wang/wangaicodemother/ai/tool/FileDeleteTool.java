@@ -5,6 +5,8 @@ import com.wang.wangaicodemother.constants.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import com.wang.wangaicodemother.manager.ProjectOverlayManager;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +14,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Set;
 
 /**
  * 文件删除工具
@@ -21,6 +24,9 @@ import java.nio.file.Paths;
 @Component
 public class FileDeleteTool extends BaseTool {
 
+    @Resource
+    private ProjectOverlayManager projectOverlayManager;
+
     @Tool("删除指定路径的文件")
     public String deleteFile(
             @P("文件的相对路径")
@@ -34,18 +40,18 @@ public class FileDeleteTool extends BaseTool {
                 Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            if (!Files.exists(path)) {
-                return "警告：文件不存在，无需删除 - " + relativeFilePath;
-            }
-            if (!Files.isRegularFile(path)) {
+            if (Files.isDirectory(path)) {
                 return "错误：指定路径不是文件，无法删除 - " + relativeFilePath;
             }
+            if (projectOverlayManager.readFile(appId, path) == null) {
+                return "警告：文件不存在，无需删除 - " + relativeFilePath;
+            }
             // 安全检查：避免删除重要文件
             String fileName = path.getFileName().toString();
             if (isImportantFile(fileName)) {
                 return "错误：不允许删除重要文件 - " + fileName;
             }
-            Files.delete(path);
+            projectOverlayManager.deleteFile(appId, path);
             log.info("成功删除文件: {}", path.toAbsolutePath());
             return "文件删除成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -88,4 +94,9 @@ public class FileDeleteTool extends BaseTool {
         String relativeFilePath = arguments.getStr("relativeFilePath");
         return String.format("[工具调用]%s %s",getDisplayName(),relativeFilePath);
     }
+
+    @Override
+    public Set<String> conflictKeys(JSONObject arguments) {
+        return filePathConflictKeys(arguments);
+    }
 }
@@ -5,14 +5,15 @@ import com.wang.wangaicodemother.constants.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import com.wang.wangaicodemother.manager.ProjectOverlayManager;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.Set;
 
 /**
  * 文件修改工具
@@ -22,6 +23,9 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileModifyTool extends BaseTool {
 
+    @Resource
+    private ProjectOverlayManager projectOverlayManager;
+
     @Tool("修改文件内容，用新内容替换指定的旧内容")
     public String modifyFile(
             @P("文件的相对路径")
@@ -39,10 +43,10 @@ public class FileModifyTool extends BaseTool {
                 Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+            String originalContent = projectOverlayManager.readFile(appId, path);
+            if (originalContent == null) {
                 return "错误：文件不存在或不是文件 - " + relativeFilePath;
             }
-            String originalContent = Files.readString(path);
             if (!originalContent.contains(oldContent)) {
                 return "警告：文件中未找到要替换的内容，文件未修改 - " + relativeFilePath;
             }
@@ -50,7 +54,7 @@ public class FileModifyTool extends BaseTool {
             if (originalContent.equals(modifiedContent)) {
                 return "信息：替换后文件内容未发生变化 - " + relativeFilePath;
             }
-            Files.writeString(path, modifiedContent, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            projectOverlayManager.writeFile(appId, path, modifiedContent);
             log.info("成功修改文件: {}", path.toAbsolutePath());
             return "文件修改成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -77,4 +81,9 @@ public class FileModifyTool extends BaseTool {
         String newContent= arguments.getStr("newContent");
         return String.format("[工具调用]%s %s %s %s",getDisplayName(),relativeFilePath,oldContent,newContent);
     }
+
+    @Override
+    public Set<String> conflictKeys(JSONObject arguments) {
+        return filePathConflictKeys(arguments);
+    }
 }
@@ -5,13 +5,15 @@ import com.wang.wangaicodemother.constants.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import com.wang.wangaicodemother.manager.ProjectOverlayManager;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Set;
 
 /**
  * 文件读取工具
@@ -21,6 +23,9 @@ import java.nio.file.Paths;
 @Component
 public class FileReadTool extends BaseTool {
 
+    @Resource
+    private ProjectOverlayManager projectOverlayManager;
+
     @Tool("读取指定路径的文件内容")
     public String readFile(
             @P("文件的相对路径")
@@ -34,10 +39,11 @@ public class FileReadTool extends BaseTool {
                 Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+            String content = projectOverlayManager.readFile(appId, path);
+            if (content == null) {
                 return "错误：文件不存在或不是文件 - " + relativeFilePath;
             }
-            return Files.readString(path);
+            return content;
         } catch (IOException e) {
             String errorMessage = "读取文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
             log.error(errorMessage, e);
@@ -60,4 +66,9 @@ public class FileReadTool extends BaseTool {
         String relativeFilePath = arguments.getStr("relativeFilePath");
         return String.format("[工具调用]%s %s",getDisplayName(),relativeFilePath);
     }
+
+    @Override
+    public Set<String> conflictKeys(JSONObject arguments) {
+        return filePathConflictKeys(arguments);
+    }
 }
@@ -6,14 +6,15 @@ import com.wang.wangaicodemother.constants.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import com.wang.wangaicodemother.manager.ProjectOverlayManager;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.Set;
 
 /**
  * 文件写入工具
@@ -23,6 +24,9 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileWriteTool extends BaseTool {
 
+    @Resource
+    private ProjectOverlayManager projectOverlayManager;
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -39,15 +43,8 @@ public class FileWriteTool extends BaseTool {
                 Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
                 path = projectRoot.resolve(relativeFilePath);
             }
-            // 创建父目录（如果不存在）
-            Path parentDir = path.getParent();
-            if (parentDir != null) {
-                Files.createDirectories(parentDir);
-            }
-            // 写入文件内容
-            Files.write(path, content.getBytes(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
+            // 写入覆盖层，父目录在提交时创建
+            projectOverlayManager.writeFile(appId, path, content);
             log.info("成功写入文件: {}", path.toAbsolutePath());
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
             return "文件写入成功: " + relativeFilePath;
@@ -75,4 +72,9 @@ public class FileWriteTool extends BaseTool {
         String content = arguments.getStr("content");
         return String.format("[工具调用]%s %s %s %s", getDisplayName(), relativeFilePath, suffix, content);
     }
+
+    @Override
+    public Set<String> conflictKeys(JSONObject arguments) {
+        return filePathConflictKeys(arguments);
+    }
 }
@@ -0,0 +1,33 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型调用准入配置
+ * 按模型 Bean 限制并发调用数，超出的请求按用户加权公平排队
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "admission")
+public class AdmissionProperties {
+
+    /**
+     * 最长排队时间（秒），超时返回请求过于频繁
+     */
+    private long queueTimeoutSeconds = 120;
+
+    /**
+     * 每个模型 Bean 的最大并发调用数，key 为 Bean 名称，未配置的模型不限制
+     */
+    private Map<String, Integer> models = new HashMap<>();
+
+    /**
+     * 按用户角色的权重，权重越大排队时分到的调用越多，未配置的角色权重为 1
+     */
+    private Map<String, Integer> roleWeights = new HashMap<>();
+}
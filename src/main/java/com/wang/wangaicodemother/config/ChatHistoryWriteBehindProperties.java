@@ -0,0 +1,40 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 对话历史异步批量写入配置
+ * 消息先追加到本地日志段并进入内存缓冲，按时间间隔或条数批量写库
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat-history.write-behind")
+public class ChatHistoryWriteBehindProperties {
+
+    /**
+     * 是否开启异步批量写入，关闭后每条消息同步写库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 刷写间隔（毫秒）
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 单批最大条数，缓冲区达到该条数立即刷写
+     */
+    private int batchSize = 100;
+
+    /**
+     * 单个日志段最多尝试写库的次数，失败后按指数退避（200ms 起，最长 60s）重试，超过后移入日志目录下的 dead-letter 目录
+     */
+    private int maxAttempts = 10;
+
+    /**
+     * 日志段目录，进程异常退出后未写库的消息在下次启动时从这里补写
+     */
+    private String journalDir = System.getProperty("user.dir") + "/tmp/chat_history_journal";
+}
@@ -0,0 +1,59 @@
+package com.wang.wangaicodemother.config;
+
+import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对话记忆配置
+ * 按生成类型限制记忆的 token 数，超出后压缩旧轮次的文件内容并把移出的轮次异步总结为摘要
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat-memory")
+public class ChatMemoryProperties {
+
+    /**
+     * 最多保留的消息条数（不含系统消息）
+     */
+    private int maxMessages = 35;
+
+    /**
+     * 默认 token 预算
+     */
+    private int defaultTokenBudget = 16000;
+
+    /**
+     * 按代码生成类型覆盖 token 预算，key 为 CodeGenTypeEnum 的 value
+     */
+    private Map<String, Integer> tokenBudgets = new HashMap<>();
+
+    /**
+     * 超过该字符数的旧文件内容替换为引用
+     */
+    private int staleContentMinChars = 200;
+
+    /**
+     * 是否把移出的轮次总结为摘要
+     */
+    private boolean summaryEnabled = true;
+
+    /**
+     * 摘要最大字符数
+     */
+    private int summaryMaxChars = 800;
+
+    /**
+     * 生成类型对应的 token 预算
+     *
+     * @param codeGenTypeEnum 代码生成类型
+     * @return token 预算
+     */
+    public int tokenBudget(CodeGenTypeEnum codeGenTypeEnum) {
+        return tokenBudgets.getOrDefault(codeGenTypeEnum.getValue(), defaultTokenBudget);
+    }
+}
@@ -0,0 +1,50 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Vue 项目依赖仓库配置
+ * 依赖相同的项目共用一份 node_modules，通过硬链接放入项目目录，只有仓库未命中时才执行 npm install
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "vue-build.dependency-store")
+public class DependencyStoreProperties {
+
+    /**
+     * 是否启用依赖仓库，关闭后每个项目单独执行 npm install
+     */
+    private boolean enabled = true;
+
+    /**
+     * 仓库目录，每组依赖一个子目录；与项目目录在同一文件系统时才能使用硬链接，否则退化为复制
+     */
+    private String storeDir = System.getProperty("user.dir") + "/tmp/dependency_store";
+
+    /**
+     * npm 缓存目录，为空时使用 npm 默认缓存
+     */
+    private String npmCacheDir = System.getProperty("user.dir") + "/tmp/npm_cache";
+
+    /**
+     * 是否只从本地缓存安装（npm --offline），否则优先使用缓存（--prefer-offline）
+     */
+    private boolean offline = false;
+
+    /**
+     * 仓库条目最近未使用超过该天数后删除，0 表示不按时间清理
+     */
+    private int retainDays = 30;
+
+    /**
+     * 仓库总大小上限（MB），超出时按最近使用时间从旧到新删除，0 表示不限制
+     */
+    private long maxSizeMb = 20480;
+
+    /**
+     * 清理间隔（分钟）
+     */
+    private long sweepIntervalMinutes = 60;
+}
@@ -0,0 +1,41 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 应用部署配置
+ * 每次部署写入独立的版本目录（{deployKey}@{内容哈希}），通过原子替换符号链接切换线上版本；
+ * 部署时预压缩文本文件，访问时按 Accept-Encoding 发送压缩变体
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "deploy")
+public class DeployProperties {
+
+    /**
+     * 每个应用保留的版本数（包括线上版本），更早的版本在部署后删除
+     */
+    private int retainVersions = 3;
+
+    /**
+     * 是否在部署时为文本类文件生成 .br / .gz 压缩变体
+     */
+    private boolean precompress = true;
+
+    /**
+     * 小于该大小（字节）的文件不生成压缩变体
+     */
+    private long precompressMinBytes = 1024;
+
+    /**
+     * 部署站点内存缓存的总大小上限（MB）
+     */
+    private long memoryCacheMb = 64;
+
+    /**
+     * 不超过该大小（KB）的文件内容放入内存缓存，更大的文件直接从磁盘零拷贝发送
+     */
+    private long memoryCacheFileMaxKb = 256;
+}
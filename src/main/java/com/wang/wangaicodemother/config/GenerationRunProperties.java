@@ -0,0 +1,53 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 生成任务配置
+ * 生成任务与 SSE 连接解耦，断线后可以通过 Last-Event-ID 续传
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "generation.run")
+public class GenerationRunProperties {
+
+    /**
+     * 事件日志存储：memory（默认，仅本机可续传）或 redis（Redis Streams，任意实例可续传）
+     */
+    private String eventLog = "memory";
+
+    /**
+     * 每个生成任务最多保留的事件数，超出后丢弃最早的事件
+     */
+    private int maxEvents = 5000;
+
+    /**
+     * 生成结束后事件日志的保留时间（秒）
+     */
+    private long retentionSeconds = 300;
+
+    /**
+     * 所有连接断开后等待重连的时间（秒），超时仍无连接则取消生成
+     */
+    private long detachTimeoutSeconds = 60;
+
+    /**
+     * 应用正在生成时收到新提示词的处理策略：queue（排队）、reject（拒绝）、supersede（取消之前的轮次）
+     * 重复提交（见 duplicateWindowSeconds）总是连接到进行中的生成
+     */
+    private ConcurrentPromptPolicy concurrentPolicy = ConcurrentPromptPolicy.QUEUE;
+
+    /**
+     * 重复提交窗口（秒）：同一用户在该时间内对同一应用提交相同的提示词时视为重复提交（如双击、网络重试），
+     * 超过窗口或其他用户提交相同提示词时作为新的轮次
+     */
+    private long duplicateWindowSeconds = 10;
+
+    public enum ConcurrentPromptPolicy {
+        QUEUE,
+        REJECT,
+        SUPERSEDE
+    }
+}
@@ -0,0 +1,58 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户限流配置
+ * 请求次数和模型 token 分别计数，都按固定时间窗口统计
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否开启限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 需要限流的接口（不含 context-path），支持 Ant 风格通配符
+     */
+    private List<String> paths = new ArrayList<>();
+
+    /**
+     * 每个窗口允许的请求次数
+     */
+    private long requestLimit = 20;
+
+    /**
+     * 请求次数的统计窗口（秒）
+     */
+    private long requestWindowSeconds = 60;
+
+    /**
+     * 每次从 Redis 预取的请求次数
+     */
+    private long requestLease = 5;
+
+    /**
+     * 每个窗口允许消耗的模型 token 数
+     */
+    private long tokenLimit = 500_000;
+
+    /**
+     * 模型 token 的统计窗口（秒）
+     */
+    private long tokenWindowSeconds = 3600;
+
+    /**
+     * 每次从 Redis 预取的 token 数
+     */
+    private long tokenLease = 20_000;
+}
@@ -1,10 +1,12 @@
 package com.wang.wangaicodemother.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import com.wang.wangaicodemother.ai.memory.RedisListChatMemoryStore;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 @Configuration
 @ConfigurationProperties(prefix = "spring.data.redis")
@@ -21,14 +23,11 @@ public class RedisChatMemoryStoreConfig {
 
     private String username;
 
+    /**
+     * 对话记忆按条存入 Redis 列表，每次只追加新消息
+     */
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .user(username)
-                .password(password)
-                .ttl(ttl)
-                .build();
+    public ChatMemoryStore redisChatMemoryStore(StringRedisTemplate stringRedisTemplate) {
+        return new RedisListChatMemoryStore(stringRedisTemplate, ttl);
     }
 }
@@ -0,0 +1,96 @@
+package com.wang.wangaicodemother.config;
+
+import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SSE 帧合并配置
+ * 按时间窗口或字符数合并流式片段，满足任一条件即发送一帧
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sse.coalesce")
+public class SseCoalesceProperties {
+
+    /**
+     * 单次请求允许设置的最大刷新间隔（毫秒）
+     */
+    private static final long MAX_FLUSH_INTERVAL_MS = 1000;
+
+    /**
+     * 单次请求允许设置的最大帧大小（字符数）
+     */
+    private static final int MAX_FLUSH_SIZE = 64 * 1024;
+
+    /**
+     * 默认刷新间隔（毫秒），0 表示不合并
+     */
+    private long flushIntervalMs = 30;
+
+    /**
+     * 默认帧大小（字符数）
+     */
+    private int flushSize = 2048;
+
+    /**
+     * 按代码生成类型覆盖默认配置，key 为 CodeGenTypeEnum 的 value
+     */
+    private Map<String, Window> types = new HashMap<>();
+
+    /**
+     * 计算最终生效的合并窗口：请求参数 > 类型配置 > 默认配置
+     *
+     * @param codeGenTypeEnum 代码生成类型
+     * @param requestWindow   请求指定的窗口，可为空
+     * @return 合并窗口
+     */
+    public Window resolve(CodeGenTypeEnum codeGenTypeEnum, Window requestWindow) {
+        long interval = flushIntervalMs;
+        int size = flushSize;
+        Window typeWindow = codeGenTypeEnum == null ? null : types.get(codeGenTypeEnum.getValue());
+        for (Window window : new Window[]{typeWindow, requestWindow}) {
+            if (window == null) {
+                continue;
+            }
+            if (window.getFlushIntervalMs() != null) {
+                interval = window.getFlushIntervalMs();
+            }
+            if (window.getFlushSize() != null) {
+                size = window.getFlushSize();
+            }
+        }
+        interval = Math.max(0, Math.min(interval, MAX_FLUSH_INTERVAL_MS));
+        size = Math.max(1, Math.min(size, MAX_FLUSH_SIZE));
+        return new Window(interval, size);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Window {
+
+        /**
+         * 刷新间隔（毫秒），0 表示不合并
+         */
+        private Long flushIntervalMs;
+
+        /**
+         * 帧大小（字符数），缓冲区达到该大小立即发送
+         */
+        private Integer flushSize;
+
+        /**
+         * 是否需要合并
+         */
+        public boolean isEnabled() {
+            return flushIntervalMs != null && flushIntervalMs > 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.wang.wangaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Vue 项目构建配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "vue-build")
+public class VueBuildProperties {
+
+    /**
+     * 同时执行的构建数上限，超出的构建按提交顺序排队
+     */
+    private int maxConcurrentBuilds = 2;
+
+    /**
+     * 每次构建在内存中保留的日志行数，超出时丢弃最早的行
+     */
+    private int logBufferLines = 500;
+
+    /**
+     * 构建子进程的资源限制（仅 Linux）
+     */
+    private Sandbox sandbox = new Sandbox();
+
+    @Data
+    public static class Sandbox {
+        /**
+         * 是否启用资源限制
+         */
+        private boolean enabled = true;
+
+        /**
+         * nice 值，越大优先级越低，0 表示不调整
+         */
+        private int nice = 10;
+
+        /**
+         * ionice best-effort 级别（0-7），越大优先级越低，小于 0 表示不调整
+         */
+        private int ioniceLevel = 7;
+
+        /**
+         * 单个进程的 CPU 时间上限（秒，ulimit -t），0 表示不限制
+         */
+        private int cpuTimeSeconds = 600;
+
+        /**
+         * 单个进程的打开文件数上限（ulimit -n），0 表示不限制
+         */
+        private int maxOpenFiles = 4096;
+
+        /**
+         * cgroup v2 限制，需要父 cgroup 已委派给当前用户并开启 cpu、memory 控制器
+         */
+        private Cgroup cgroup = new Cgroup();
+    }
+
+    @Data
+    public static class Cgroup {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+
+        /**
+         * 父 cgroup 目录，每次执行命令时在其下创建子 cgroup，结束后删除
+         */
+        private String parent = "/sys/fs/cgroup/vue-build";
+
+        /**
+         * CPU 配额（百分比，100 表示一个核），0 表示不限制
+         */
+        private int cpuQuotaPercent = 100;
+
+        /**
+         * 内存上限（MB），0 表示不限制
+         */
+        private long memoryMaxMb = 2048;
+    }
+}
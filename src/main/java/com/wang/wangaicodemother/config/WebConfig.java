@@ -1,6 +1,7 @@
 package com.wang.wangaicodemother.config;
 
 import com.wang.wangaicodemother.interceptor.JwtInterceptor;
+import com.wang.wangaicodemother.interceptor.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -15,6 +16,12 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private JwtInterceptor jwtInterceptor;
 
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
     private static final String CODE_OUTPUT_DIR =
             System.getProperty("user.dir") + "/tmp/code_output/";
     private static final String CODE_DEPLOY_DIR =
@@ -62,6 +69,12 @@ public class WebConfig implements WebMvcConfigurer {
                         "/api/user/register"
                 )
                 .order(1);
+        // 限流放在鉴权之后，才能拿到 userId
+        if (rateLimitProperties.isEnabled() && !rateLimitProperties.getPaths().isEmpty()) {
+            registry.addInterceptor(rateLimitInterceptor)
+                    .addPathPatterns(rateLimitProperties.getPaths())
+                    .order(2);
+        }
     }
 
     @Override
@@ -69,15 +82,11 @@ public class WebConfig implements WebMvcConfigurer {
         System.out.println("Code output dir = " + CODE_OUTPUT_DIR);
         System.out.println("Code deploy dir = " + CODE_DEPLOY_DIR);
 
-        // 同时注册两个目录的静态资源映射
+        // 生成目录的静态资源映射；部署目录 /static/deploy/** 由 StaticDeployController 处理
         registry.addResourceHandler("/static/output/**")
                 .addResourceLocations("file:" + CODE_OUTPUT_DIR)
                 .setCachePeriod(0); // 开发期关闭缓存
         
-        registry.addResourceHandler("/static/deploy/**")
-                .addResourceLocations("file:" + CODE_DEPLOY_DIR)
-                .setCachePeriod(0); // 开发期关闭缓存
-        
         // 保持原有的 /static/** 映射指向 code_output 目录（向后兼容）
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("file:" + CODE_OUTPUT_DIR)
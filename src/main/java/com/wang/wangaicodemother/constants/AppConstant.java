@@ -27,4 +27,9 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_HOST = "http://localhost:8123/api/static/deploy";
 
+    /**
+     * 用户取消生成时追加到 AI 消息末尾的标记
+     */
+    String GENERATION_CANCELLED_MARKER = "\n\n[用户已取消生成]";
+
 }
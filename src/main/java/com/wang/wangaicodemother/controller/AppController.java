@@ -11,8 +11,15 @@ import com.wang.wangaicodemother.annotation.AuthCheck;
 import com.wang.wangaicodemother.common.BaseResponse;
 import com.wang.wangaicodemother.common.DeleteRequest;
 import com.wang.wangaicodemother.common.ResultUtils;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
 import com.wang.wangaicodemother.constants.AppConstant;
 import com.wang.wangaicodemother.constants.UserConstant;
+import com.wang.wangaicodemother.core.admission.ModelAdmissionScheduler;
+import com.wang.wangaicodemother.core.builder.BuildLog;
+import com.wang.wangaicodemother.core.builder.VueProjectBuilder;
+import com.wang.wangaicodemother.core.run.GenerationEvent;
+import com.wang.wangaicodemother.core.run.GenerationRun;
+import com.wang.wangaicodemother.core.run.GenerationRunManager;
 import com.wang.wangaicodemother.enums.ChatHistoryMessageTypeEnum;
 import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
@@ -22,6 +29,7 @@ import com.wang.wangaicodemother.model.dto.*;
 import com.wang.wangaicodemother.model.entity.App;
 import com.wang.wangaicodemother.model.entity.ChatHistory;
 import com.wang.wangaicodemother.model.entity.User;
+import com.wang.wangaicodemother.model.vo.AppDeployVO;
 import com.wang.wangaicodemother.model.vo.AppVO;
 import com.wang.wangaicodemother.service.AppService;
 import com.wang.wangaicodemother.service.ChatHistoryService;
@@ -35,7 +43,6 @@ import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -66,6 +73,15 @@ public class AppController {
     @Resource
     private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
 
+    @Resource
+    private GenerationRunManager generationRunManager;
+
+    @Resource
+    private ModelAdmissionScheduler modelAdmissionScheduler;
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
 
     /**
      * 下载应用代码
@@ -108,18 +124,53 @@ public class AppController {
      *
      * @param appDeployRequest 部署请求
      * @param request          请求
-     * @return 部署 URL
+     * @return 部署 URL 和构建结果
      */
     @PostMapping("/deploy")
-    public BaseResponse<String> deployApp(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
+    public BaseResponse<AppDeployVO> deployApp(@RequestBody AppDeployRequest appDeployRequest, HttpServletRequest request) {
         ThrowUtils.throwIf(appDeployRequest == null, ErrorCode.PARAMS_ERROR);
         Long appId = appDeployRequest.getAppId();
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
         // 调用服务部署应用
-        String deployUrl = appService.deployApp(appId, loginUser);
-        return ResultUtils.success(deployUrl);
+        AppDeployVO appDeployVO = appService.deployApp(appId, loginUser);
+        return ResultUtils.success(appDeployVO);
+    }
+
+
+    /**
+     * 查看 Vue 项目最近一次构建的日志
+     *
+     * @param appId   应用ID
+     * @param buildId 构建ID，传入时只查看该次构建
+     * @param request 请求
+     * @return 缓冲区中的日志和后续的实时日志，构建结束时发送 done 事件（包含结果、各阶段耗时和资源用量）
+     */
+    @GetMapping(value = "/build/log", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamBuildLog(@RequestParam Long appId,
+                                                        @RequestParam(required = false) String buildId,
+                                                        HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        checkAppOwner(appId, loginUser);
+        String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + CodeGenTypeEnum.VUE_PROJECT.getValue() + "_" + appId;
+        BuildLog buildLog = vueProjectBuilder.getBuildLog(projectPath);
+        ThrowUtils.throwIf(buildLog == null || (StrUtil.isNotBlank(buildId) && !buildId.equals(buildLog.getBuildId())),
+                ErrorCode.NOT_FOUND_ERROR, "构建记录不存在");
+        return buildLog.attach()
+                .map(line -> ServerSentEvent.<String>builder()
+                        .data(JSONUtil.toJsonStr(Map.of("line", line)))
+                        .build())
+                .concatWith(Flux.defer(() -> Flux.just(ServerSentEvent.<String>builder()
+                        .event("done")
+                        .data(JSONUtil.toJsonStr(Map.of(
+                                "buildId", buildLog.getBuildId(),
+                                "result", buildLog.getResult().name(),
+                                "phaseTimings", buildLog.getPhaseTimings(),
+                                "peakRssBytes", buildLog.getResourceUsage().peakRssBytes(),
+                                "cpuSeconds", buildLog.getResourceUsage().cpuSeconds())))
+                        .build())));
     }
 
 
@@ -129,6 +180,8 @@ public class AppController {
      *
      * @param appId
      * @param message
+     * @param flushIntervalMs SSE 帧合并间隔（毫秒），为空使用配置，0 表示逐片段发送
+     * @param flushSize       SSE 帧合并大小（字符数），为空使用配置
      * @param request
      * @return
      */
@@ -136,36 +189,165 @@ public class AppController {
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestParam(required = false) Long flushIntervalMs,
+                                                       @RequestParam(required = false) Integer flushSize,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 保存用户的消息
-        chatHistoryService.addChatHistoryMessage(message, appId, loginUser.getId(), ChatHistoryMessageTypeEnum.USER.getValue());
-        // 消息流
-        Flux<String> contentFlux = appService.chatToGenCode(message, String.valueOf(appId), loginUser);
-
-        // 保存AI聊天记录
-        StringBuilder AiChatContent = new StringBuilder();
-
-        // 转换为 ServerSentEvent 格式
-        return contentFlux
-                .map(chunk -> {
-                    // 收集AI返回的消息
-                    AiChatContent.append(chunk);
-                    // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
-                .concatWith(Mono.just(ServerSentEvent.<String>builder()
-                        .event("done")
-                        .data("")
-                        .build()));
+        // EventSource 断线自动重连会带上 Last-Event-ID，续传原任务而不是重新生成
+        String[] resumeFrom = GenerationRunManager.parseEventId(lastEventId);
+        if (resumeFrom != null) {
+            return resumeGeneration(appId, resumeFrom[0], Long.parseLong(resumeFrom[1]), loginUser);
+        }
+        checkAppOwner(appId, loginUser);
+        SseCoalesceProperties.Window coalesceWindow = new SseCoalesceProperties.Window(flushIntervalMs, flushSize);
+        // 生成任务与连接解耦，连接断开后生成继续进行；同一应用同时只运行一个生成
+        GenerationRun run = generationRunManager.submit(appId, loginUser.getId(), message, submitted -> {
+            // 轮到该任务时才保存用户的消息，保证对话历史的顺序
+            chatHistoryService.addChatHistoryMessage(message, appId, loginUser.getId(), ChatHistoryMessageTypeEnum.USER.getValue());
+            return appService.chatToGenCode(message, String.valueOf(appId), loginUser, coalesceWindow,
+                    status -> submitted.reportAdmission(status.getPosition(), status.getEtaMs()));
+        });
+        return toServerSentEvents(run.getRunId(), run.attach(0));
+    }
+
+    /**
+     * 连接到应用进行中的生成（多个标签页查看同一应用）
+     *
+     * @param appId   应用ID
+     * @param request 请求
+     * @return 从头回放的事件和后续的实时事件
+     */
+    @GetMapping(value = "/chat/gen/attach", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> attachGenCode(@RequestParam Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        checkAppOwner(appId, loginUser);
+        GenerationRun run = generationRunManager.getActiveRun(appId);
+        ThrowUtils.throwIf(run == null, ErrorCode.NOT_FOUND_ERROR, "当前没有进行中的生成");
+        return toServerSentEvents(run.getRunId(), run.attach(0));
+    }
+
+    /**
+     * 断线续传
+     *
+     * @param appId       应用ID
+     * @param runId       生成任务ID
+     * @param lastEventId 收到的最后一个事件ID，也可以通过 Last-Event-ID 请求头传递
+     * @param request     请求
+     * @return 错过的事件和后续的实时事件
+     */
+    @GetMapping(value = "/chat/gen/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> resumeGenCode(@RequestParam Long appId,
+                                                       @RequestParam(required = false) String runId,
+                                                       @RequestParam(required = false) Long lastEventId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        String[] resumeFrom = GenerationRunManager.parseEventId(lastEventIdHeader);
+        if (resumeFrom != null) {
+            return resumeGeneration(appId, resumeFrom[0], Long.parseLong(resumeFrom[1]), loginUser);
+        }
+        ThrowUtils.throwIf(StrUtil.isBlank(runId), ErrorCode.PARAMS_ERROR, "生成任务ID不能为空");
+        return resumeGeneration(appId, runId, lastEventId == null ? 0 : lastEventId, loginUser);
+    }
+
+    /**
+     * 取消应用正在进行的生成
+     *
+     * @param appId       应用ID
+     * @param withPending 是否同时取消排队中的生成
+     * @param request     请求
+     * @return 是否取消了生成
+     */
+    @PostMapping("/chat/cancel/{appId}")
+    public BaseResponse<Boolean> cancelGenCode(@PathVariable Long appId,
+                                               @RequestParam(defaultValue = "false") boolean withPending,
+                                               HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        checkAppOwner(appId, loginUser);
+        return ResultUtils.success(generationRunManager.cancel(appId, withPending));
+    }
+
+    private Flux<ServerSentEvent<String>> resumeGeneration(Long appId, String runId, long lastEventId, User loginUser) {
+        checkAppOwner(appId, loginUser);
+        return toServerSentEvents(runId, generationRunManager.resume(appId, runId, lastEventId));
+    }
+
+    /**
+     * 校验应用存在且属于当前用户
+     */
+    private void checkAppOwner(Long appId, User loginUser) {
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "用户没有权限,只能使用自己创建的应用");
+    }
+
+    /**
+     * 将生成任务事件转换为 SSE，事件 ID 为 {runId}:{eventId}
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(String runId, Flux<GenerationEvent> events) {
+        return events.concatMapIterable(event -> {
+            String id = GenerationRunManager.formatEventId(runId, event.getId());
+            String type = event.getEvent();
+            if (type == null) {
+                // 将内容包装成JSON对象
+                String jsonData = JSONUtil.toJsonStr(Map.of("d", event.getData()));
+                return List.of(ServerSentEvent.<String>builder().id(id).data(jsonData).build());
+            }
+            return switch (type) {
+                case GenerationEvent.QUEUE -> List.of(ServerSentEvent.<String>builder()
+                        .id(id)
+                        .event(GenerationEvent.QUEUE)
+                        .data(JSONUtil.toJsonStr(Map.of("position", Integer.parseInt(event.getData()))))
+                        .build());
+                case GenerationEvent.ADMISSION -> List.of(ServerSentEvent.<String>builder()
+                        .id(id)
+                        .event(GenerationEvent.ADMISSION)
+                        .data(event.getData())
+                        .build());
+                case GenerationEvent.GAP -> List.of(ServerSentEvent.<String>builder()
+                        .id(id)
+                        .event(GenerationEvent.GAP)
+                        .data(event.getData())
+                        .build());
+                case GenerationEvent.RUN -> List.of(ServerSentEvent.<String>builder()
+                        .id(id)
+                        .event(GenerationEvent.RUN)
+                        .data(JSONUtil.toJsonStr(Map.of("runId", runId)))
+                        .build());
+                case GenerationEvent.ERROR -> List.of(ServerSentEvent.<String>builder()
+                                .id(id)
+                                .event("business-error")
+                                .data(JSONUtil.toJsonStr(Map.of(
+                                        "error", true,
+                                        "code", ErrorCode.SYSTEM_ERROR.getCode(),
+                                        "message", "AI回复失败: " + event.getData())))
+                                .build(),
+                        doneEvent(id));
+                case GenerationEvent.CANCELLED -> List.of(ServerSentEvent.<String>builder()
+                                .id(id)
+                                .event(GenerationEvent.CANCELLED)
+                                .data("")
+                                .build(),
+                        doneEvent(id));
+                default -> List.of(doneEvent(id));
+            };
+        });
+    }
+
+    private static ServerSentEvent<String> doneEvent(String id) {
+        return ServerSentEvent.<String>builder()
+                .id(id)
+                .event("done")
+                .data("")
+                .build();
     }
 
     /**
@@ -414,7 +596,8 @@ public class AppController {
         // 获取ai智能路由工厂的实例
         AiCodeGenTypeRoutingService aiCodeGenTypeRouting = aiCodeGenTypeRoutingServiceFactory.aiCodeGenTypeRoutingService();
         // 使用ai智能路由生成代码生成类型
-        CodeGenTypeEnum routing = aiCodeGenTypeRouting.routing(initPrompt);
+        CodeGenTypeEnum routing = modelAdmissionScheduler.call(ModelAdmissionScheduler.ROUTING_MODEL, loginUser,
+                () -> aiCodeGenTypeRouting.routing(initPrompt));
         app.setCodeGenType(routing.getValue());
         // 插入数据库
         boolean result = appService.save(app);
@@ -0,0 +1,38 @@
+package com.wang.wangaicodemother.controller;
+
+import com.wang.wangaicodemother.core.deploy.StaticSiteHandler;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 已部署应用的静态文件访问
+ * 替代通用的静态资源映射：预压缩变体协商、ETag、长期缓存、内存缓存和零拷贝发送
+ */
+@RestController
+@RequestMapping("/static/deploy")
+public class StaticDeployController {
+
+    private static final String PREFIX = "/static/deploy/";
+
+    @Resource
+    private StaticSiteHandler staticSiteHandler;
+
+    /**
+     * 访问部署的文件
+     *
+     * @param request  请求
+     * @param response 响应
+     */
+    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveDeployedFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        String relative = uri.startsWith(PREFIX) ? uri.substring(PREFIX.length()) : "";
+        staticSiteHandler.serve(relative, request, response);
+    }
+}
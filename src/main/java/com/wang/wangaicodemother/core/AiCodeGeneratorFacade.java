@@ -1,19 +1,23 @@
 package com.wang.wangaicodemother.core;
 
-import cn.hutool.json.JSONUtil;
 import com.wang.wangaicodemother.ai.AICodeServiceFactory;
 import com.wang.wangaicodemother.ai.Assistant;
+import com.wang.wangaicodemother.ai.memory.BudgetedChatMemory;
+import com.wang.wangaicodemother.ai.memory.HeuristicTokenCountEstimator;
 import com.wang.wangaicodemother.ai.model.HtmlCodeResult;
 import com.wang.wangaicodemother.ai.model.MultiFileCodeResult;
 import com.wang.wangaicodemother.ai.model.message.AiResponseMessage;
+import com.wang.wangaicodemother.ai.model.message.StreamMessage;
 import com.wang.wangaicodemother.ai.model.message.ToolExecutedMessage;
 import com.wang.wangaicodemother.ai.model.message.ToolRequestMessage;
-import com.wang.wangaicodemother.core.parser.ParseActuator;
+import com.wang.wangaicodemother.core.parser.StreamingCodeParser;
 import com.wang.wangaicodemother.core.saver.CodeFileSaverExecutor;
 import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
 import com.wang.wangaicodemother.exception.ErrorCode;
+import com.wang.wangaicodemother.manager.ProjectOverlayManager;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
@@ -22,6 +26,9 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -30,9 +37,14 @@ import java.io.File;
 @Service
 public class AiCodeGeneratorFacade {
 
+    private static final HeuristicTokenCountEstimator TOKEN_ESTIMATOR = new HeuristicTokenCountEstimator();
+
     @Resource
     private AICodeServiceFactory aiCodeServiceFactory;
 
+    @Resource
+    private ProjectOverlayManager projectOverlayManager;
+
     /**
      * 统一入口：根据类型生成并保存代码
      *
@@ -48,11 +60,11 @@ public class AiCodeGeneratorFacade {
         Assistant aiCodeGeneratorService = aiCodeServiceFactory.createAICodeService(Long.parseLong(appId), codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(Long.parseLong(appId), userMessage);
                 yield CodeFileSaverExecutor.executeSaver(htmlCodeResult, codeGenTypeEnum, appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult htmlCodeResult = aiCodeGeneratorService.generateMultiCode(userMessage);
+                MultiFileCodeResult htmlCodeResult = aiCodeGeneratorService.generateMultiCode(Long.parseLong(appId), userMessage);
                 yield CodeFileSaverExecutor.executeSaver(htmlCodeResult, codeGenTypeEnum, appId);
             }
             default -> {
@@ -69,22 +81,52 @@ public class AiCodeGeneratorFacade {
      * @param codeGenTypeEnum 生成类型
      * @return 保存的目录
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, String appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, String appId) {
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, null);
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码(流式)，结束后回调本轮消耗的 token；取消或出错时回调按已收到内容估算的用量
+     *
+     * @param userMessage        用户提示词
+     * @param codeGenTypeEnum    生成类型
+     * @param appId              应用 ID
+     * @param tokenUsageConsumer token 用量回调，可为空
+     * @return 流式响应
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, String appId,
+                                                         Consumer<TokenUsage> tokenUsageConsumer) {
         log.info("开始生成代码，用户提示词：{}，生成类型：{}", userMessage, codeGenTypeEnum);
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
         Assistant aiCodeGeneratorService = aiCodeServiceFactory.createAICodeService(Long.parseLong(appId),codeGenTypeEnum);
+        int estimatedInputTokens = estimateInputTokens(aiCodeGeneratorService, appId, userMessage);
+        Consumer<TokenUsage> turnUsageConsumer = tokenUsage -> {
+            logTurnTokenUsage(aiCodeGeneratorService, appId, codeGenTypeEnum, tokenUsage);
+            if (tokenUsageConsumer != null) {
+                tokenUsageConsumer.accept(tokenUsage);
+            }
+        };
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                yield processCodeStream(aiCodeGeneratorService.generateHtmlCodeStream(userMessage), codeGenTypeEnum, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateHtmlCodeStream(Long.parseLong(appId), userMessage);
+                yield processCodeStream(processTokenStream(tokenStream, estimatedInputTokens, turnUsageConsumer), codeGenTypeEnum, appId);
             }
             case MULTI_FILE -> {
-                yield processCodeStream(aiCodeGeneratorService.generateMultiCodeStream(userMessage), codeGenTypeEnum, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateMultiCodeStream(Long.parseLong(appId), userMessage);
+                yield processCodeStream(processTokenStream(tokenStream, estimatedInputTokens, turnUsageConsumer), codeGenTypeEnum, appId);
             }
             case VUE_PROJECT -> {
-                TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(Long.parseLong(appId), userMessage);
-                yield processTokenStream(tokenStream);
+                long id = Long.parseLong(appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(id, userMessage);
+                // 本轮工具的文件改动先写入覆盖层，正常结束时（在通知下游构建之前）一次性提交到磁盘；
+                // 出错或取消时不提交，覆盖层保留给下一轮继续使用，与对话记忆中的工具结果保持一致
+                yield Flux.defer(() -> {
+                            projectOverlayManager.begin(id);
+                            return processTokenStream(tokenStream, estimatedInputTokens, turnUsageConsumer);
+                        })
+                        .doOnComplete(() -> projectOverlayManager.commit(id));
             }
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
@@ -95,30 +137,85 @@ public class AiCodeGeneratorFacade {
 
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 估算本轮请求的输入 token 数：对话记忆加上用户消息
+     */
+    private int estimateInputTokens(Assistant assistant, String appId, String userMessage) {
+        int memoryTokens = 0;
+        try {
+            if (assistant.getChatMemory(Long.parseLong(appId)) instanceof BudgetedChatMemory chatMemory) {
+                memoryTokens = chatMemory.estimatedTokens();
+            }
+        } catch (Exception e) {
+            log.debug("读取对话记忆统计失败：{}", e.getMessage());
+        }
+        return memoryTokens + TOKEN_ESTIMATOR.estimateTokenCountInText(userMessage);
+    }
+
+    /**
+     * 记录本轮的 token 用量，以及对话记忆当前的估算 token 数和压缩累计节省的 token 数
+     */
+    private void logTurnTokenUsage(Assistant assistant, String appId, CodeGenTypeEnum codeGenTypeEnum, TokenUsage tokenUsage) {
+        int memoryTokens = -1;
+        long savedTokens = 0;
+        try {
+            if (assistant.getChatMemory(Long.parseLong(appId)) instanceof BudgetedChatMemory chatMemory) {
+                memoryTokens = chatMemory.estimatedTokens();
+                savedTokens = chatMemory.savedTokens();
+            }
+        } catch (Exception e) {
+            log.debug("读取对话记忆统计失败：{}", e.getMessage());
+        }
+        log.info("本轮 token 用量，appId: {}, 类型: {}, 输入: {}, 输出: {}, 记忆估算: {}, 记忆压缩累计节省: {}",
+                appId, codeGenTypeEnum.getValue(), tokenUsage.inputTokenCount(), tokenUsage.outputTokenCount(),
+                memoryTokens, savedTokens);
+    }
+
+    /**
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
      *
-     * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @param tokenStream          TokenStream 对象
+     * @param estimatedInputTokens 估算的输入 token 数，取消或出错时用于计费
+     * @param tokenUsageConsumer   token 用量回调，可为空，只回调一次
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, int estimatedInputTokens,
+                                                   Consumer<TokenUsage> tokenUsageConsumer) {
         return Flux.create(sink -> {
+            AtomicBoolean charged = new AtomicBoolean();
+            AtomicLong estimatedOutputTokens = new AtomicLong();
+            // 取消或出错时拿不到模型返回的用量，按输入和已收到的输出估算，中断的请求同样计入额度
+            Runnable chargeEstimate = () -> {
+                if (tokenUsageConsumer != null && charged.compareAndSet(false, true)) {
+                    tokenUsageConsumer.accept(new TokenUsage(estimatedInputTokens, (int) estimatedOutputTokens.get()));
+                }
+            };
+            // 客户端断开时取消模型请求和后续的工具调用
+            sink.onCancel(() -> {
+                tokenStream.cancel();
+                chargeEstimate.run();
+            });
             tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        estimatedOutputTokens.addAndGet(TOKEN_ESTIMATOR.estimateTokenCountInText(partialResponse));
+                        sink.next(new AiResponseMessage(partialResponse));
                     })
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        estimatedOutputTokens.addAndGet(TOKEN_ESTIMATOR.estimateTokenCountInText(toolExecutionRequest.arguments()));
+                        sink.next(new ToolRequestMessage(toolExecutionRequest));
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(new ToolExecutedMessage(toolExecution));
                     })
                     .onCompleteResponse((ChatResponse response) -> {
+                        if (response.tokenUsage() == null) {
+                            chargeEstimate.run();
+                        } else if (tokenUsageConsumer != null && charged.compareAndSet(false, true)) {
+                            tokenUsageConsumer.accept(response.tokenUsage());
+                        }
                         sink.complete();
                     })
                     .onError((Throwable error) -> {
                         error.printStackTrace();
+                        chargeEstimate.run();
                         sink.error(error);
                     })
                     .start();
@@ -129,27 +226,26 @@ public class AiCodeGeneratorFacade {
 
     /**
      * 生成并保存代码流(通用)
+     * 边接收边解析，每个代码块闭合后立即写入文件
      *
      * @param codeStream
      * @param codeGenTypeEnum
      * @return
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, String appId) {
-
-        StringBuilder codeBuilder = new StringBuilder();
-
-        return codeStream.doOnNext(code -> {
-            //实时拼接代码
-            codeBuilder.append(code);
-        }).doOnComplete(() -> {
-            try {
-                String completeResult = codeBuilder.toString();
-                //解析代码
-                Object parse = ParseActuator.parse(completeResult, codeGenTypeEnum);
-                CodeFileSaverExecutor.executeSaver(parse, codeGenTypeEnum, appId);
-            } catch (Exception e) {
-                log.info("保存代码文件失败：{}" + e.getMessage());
-            }
+    private Flux<StreamMessage> processCodeStream(Flux<StreamMessage> codeStream, CodeGenTypeEnum codeGenTypeEnum, String appId) {
+        return Flux.defer(() -> {
+            StreamingCodeParser codeParser = new StreamingCodeParser(codeGenTypeEnum, (language, code) -> {
+                try {
+                    CodeFileSaverExecutor.executeBlockSaver(language, code, codeGenTypeEnum, appId);
+                } catch (Exception e) {
+                    log.error("保存代码文件失败：{}", e.getMessage());
+                }
+            });
+            //实时解析代码
+            return codeStream.ofType(AiResponseMessage.class)
+                    .doOnNext(aiResponseMessage -> codeParser.append(aiResponseMessage.getData()))
+                    .doOnComplete(codeParser::finish)
+                    .cast(StreamMessage.class);
         });
     }
 }
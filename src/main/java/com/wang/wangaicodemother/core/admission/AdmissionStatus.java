@@ -0,0 +1,22 @@
+package com.wang.wangaicodemother.core.admission;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 排队状态
+ */
+@Data
+@AllArgsConstructor
+public class AdmissionStatus {
+
+    /**
+     * 前面还有几个请求，0 表示已获得调用许可
+     */
+    private int position;
+
+    /**
+     * 预计等待时间（毫秒）
+     */
+    private long etaMs;
+}
@@ -0,0 +1,293 @@
+package com.wang.wangaicodemother.core.admission;
+
+import com.wang.wangaicodemother.config.AdmissionProperties;
+import com.wang.wangaicodemother.exception.BusinessException;
+import com.wang.wangaicodemother.exception.ErrorCode;
+import com.wang.wangaicodemother.model.entity.User;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 模型调用准入调度器
+ * 每个模型 Bean 一个闸门，并发调用数达到上限后请求进入队列；
+ * 队列按加权公平排队（WFQ）排序：每个用户的请求依次获得虚拟完成时间，
+ * 连续提交大量请求的用户排在其他用户之后，不会饿死别人
+ */
+@Slf4j
+@Component
+public class ModelAdmissionScheduler {
+
+    public static final String REASONING_STREAMING_MODEL = "reasoningStreamingChatModelPrototype";
+
+    public static final String ROUTING_MODEL = "routingChatModelPrototype";
+
+    public static final String OPENAI_CHAT_MODEL = "openAiChatModel";
+
+    /**
+     * 没有登录用户的调用（如工作流节点）归到同一个用户
+     */
+    private static final long SYSTEM_USER_ID = 0L;
+
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    @Resource
+    private AdmissionProperties admissionProperties;
+
+    /**
+     * 流式调用准入，获得许可后才订阅调用流，调用流结束或取消时释放许可
+     *
+     * @param model    模型 Bean 名称
+     * @param user     发起调用的用户，可为空
+     * @param call     模型调用
+     * @param listener 排队状态回调，可为空
+     * @return 调用流
+     */
+    public <T> Flux<T> admit(String model, User user, Supplier<Flux<T>> call, Consumer<AdmissionStatus> listener) {
+        Gate gate = getGate(model);
+        if (gate == null) {
+            return Flux.defer(call);
+        }
+        return Flux.defer(() -> {
+            Ticket ticket = gate.enqueue(userId(user), weight(user), listener);
+            return Mono.fromFuture(ticket.granted, true)
+                    .timeout(Duration.ofSeconds(admissionProperties.getQueueTimeoutSeconds()),
+                            Mono.error(() -> new BusinessException(ErrorCode.TOO_MANY_REQUEST, "模型繁忙，请稍后再试")))
+                    .thenMany(Flux.defer(call))
+                    .doFinally(signalType -> gate.release(ticket));
+        });
+    }
+
+    /**
+     * 同步调用准入，在当前线程等待许可
+     *
+     * @param model 模型 Bean 名称
+     * @param user  发起调用的用户，可为空
+     * @param call  模型调用
+     * @return 调用结果
+     */
+    public <T> T call(String model, User user, Supplier<T> call) {
+        Gate gate = getGate(model);
+        if (gate == null) {
+            return call.get();
+        }
+        Ticket ticket = gate.enqueue(userId(user), weight(user), null);
+        try {
+            ticket.granted.get(admissionProperties.getQueueTimeoutSeconds(), TimeUnit.SECONDS);
+            return call.get();
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "模型繁忙，请稍后再试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型调用被中断");
+        } catch (ExecutionException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, e.getMessage());
+        } finally {
+            gate.release(ticket);
+        }
+    }
+
+    private Gate getGate(String model) {
+        Integer maxConcurrency = admissionProperties.getModels().get(model);
+        if (maxConcurrency == null || maxConcurrency <= 0) {
+            return null;
+        }
+        return gates.computeIfAbsent(model, key -> new Gate(key, maxConcurrency));
+    }
+
+    private long userId(User user) {
+        return user == null || user.getId() == null ? SYSTEM_USER_ID : user.getId();
+    }
+
+    private int weight(User user) {
+        if (user == null || user.getUserRole() == null) {
+            return 1;
+        }
+        return Math.max(1, admissionProperties.getRoleWeights().getOrDefault(user.getUserRole(), 1));
+    }
+
+    /**
+     * 排队凭证
+     */
+    private static class Ticket {
+
+        /**
+         * 虚拟开始时间
+         */
+        private final double startTag;
+
+        /**
+         * 虚拟完成时间，越小越先获得许可
+         */
+        private final double finishTag;
+
+        /**
+         * 入队顺序，虚拟完成时间相同时先到先得
+         */
+        private final long sequence;
+
+        private final Consumer<AdmissionStatus> listener;
+
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        private long grantedAt;
+
+        /**
+         * 已占用许可，在锁内放行时设置；granted 在锁外才完成，不能据此判断是否占用了许可
+         */
+        private boolean admitted;
+
+        private boolean released;
+
+        private Ticket(double startTag, double finishTag, long sequence, Consumer<AdmissionStatus> listener) {
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * 单个模型的闸门
+     */
+    private static class Gate {
+
+        /**
+         * 平均占用时间的平滑系数
+         */
+        private static final double EWMA_ALPHA = 0.2;
+
+        private final String model;
+
+        private final int maxConcurrency;
+
+        private final PriorityQueue<Ticket> waiting = new PriorityQueue<>((a, b) -> {
+            int compare = Double.compare(a.finishTag, b.finishTag);
+            return compare != 0 ? compare : Long.compare(a.sequence, b.sequence);
+        });
+
+        /**
+         * 每个用户最后一个请求的虚拟完成时间
+         */
+        private final Map<Long, Double> lastFinishTags = new HashMap<>();
+
+        private int inFlight;
+
+        private double virtualTime;
+
+        private long sequence;
+
+        /**
+         * 单次调用的平均占用时间（毫秒），用于估算等待时间
+         */
+        private double averageHoldMs = 30_000;
+
+        private Gate(String model, int maxConcurrency) {
+            this.model = model;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        private Ticket enqueue(long userId, int weight, Consumer<AdmissionStatus> listener) {
+            Ticket ticket;
+            List<Ticket> granted = new ArrayList<>();
+            synchronized (this) {
+                double start = Math.max(virtualTime, lastFinishTags.getOrDefault(userId, 0.0));
+                double finishTag = start + 1.0 / weight;
+                lastFinishTags.put(userId, finishTag);
+                ticket = new Ticket(start, finishTag, ++sequence, listener);
+                waiting.add(ticket);
+                dispatch(granted);
+            }
+            if (!ticket.granted.isDone()) {
+                log.info("模型 {} 并发已满（{}），用户 {} 进入排队，当前排队 {} 个", model, maxConcurrency, userId, waiting.size());
+            }
+            notifyWaiting(granted);
+            return ticket;
+        }
+
+        private void release(Ticket ticket) {
+            List<Ticket> granted = new ArrayList<>();
+            synchronized (this) {
+                if (ticket.released) {
+                    return;
+                }
+                ticket.released = true;
+                if (ticket.admitted) {
+                    inFlight--;
+                    long holdMs = System.currentTimeMillis() - ticket.grantedAt;
+                    averageHoldMs = averageHoldMs * (1 - EWMA_ALPHA) + holdMs * EWMA_ALPHA;
+                } else {
+                    // 排队时取消或超时
+                    waiting.remove(ticket);
+                }
+                dispatch(granted);
+            }
+            notifyWaiting(granted);
+        }
+
+        /**
+         * 有空闲许可时按虚拟完成时间依次放行，需要持有锁
+         */
+        private void dispatch(List<Ticket> granted) {
+            while (inFlight < maxConcurrency && !waiting.isEmpty()) {
+                Ticket next = waiting.poll();
+                inFlight++;
+                next.admitted = true;
+                virtualTime = Math.max(virtualTime, next.startTag);
+                next.grantedAt = System.currentTimeMillis();
+                granted.add(next);
+            }
+            if (!granted.isEmpty()) {
+                // 虚拟完成时间已经落后的用户不再需要记录
+                lastFinishTags.values().removeIf(tag -> tag <= virtualTime);
+            }
+        }
+
+        /**
+         * 在锁外完成许可并通知排队位置
+         * 先通知放行再完成许可，排队状态先于模型输出到达客户端；通知期间请求可能已被取消
+         */
+        private void notifyWaiting(List<Ticket> granted) {
+            for (Ticket ticket : granted) {
+                if (ticket.listener != null) {
+                    ticket.listener.accept(new AdmissionStatus(0, 0));
+                }
+                ticket.granted.complete(null);
+            }
+            List<Ticket> ordered;
+            double holdMs;
+            synchronized (this) {
+                if (waiting.isEmpty()) {
+                    return;
+                }
+                ordered = new ArrayList<>(waiting);
+                holdMs = averageHoldMs;
+            }
+            ordered.sort(waiting.comparator());
+            for (int i = 0; i < ordered.size(); i++) {
+                Ticket ticket = ordered.get(i);
+                if (ticket.listener != null) {
+                    int position = i + 1;
+                    long etaMs = (long) Math.ceil((double) position / maxConcurrency * holdMs);
+                    ticket.listener.accept(new AdmissionStatus(position, etaMs));
+                }
+            }
+        }
+    }
+}
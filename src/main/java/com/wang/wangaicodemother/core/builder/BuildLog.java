@@ -0,0 +1,165 @@
+package com.wang.wangaicodemother.core.builder;
+
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次构建的日志
+ * 命令输出按行写入固定容量的环形缓冲区，超出时丢弃最早的行；连接时先回放缓冲区中的行再接上实时输出，构建结束时完成
+ */
+public class BuildLog {
+
+    /**
+     * 单行最大长度，压缩后的产物等超长输出会被截断
+     */
+    private static final int MAX_LINE_LENGTH = 2000;
+
+    @Getter
+    private final String buildId;
+
+    @Getter
+    private final String projectPath;
+
+    private final int capacity;
+
+    private final ArrayDeque<String> lines;
+
+    /**
+     * 当前连接的订阅者
+     */
+    private final List<Sinks.Many<String>> listeners = new ArrayList<>();
+
+    /**
+     * 各阶段耗时（毫秒），按执行顺序
+     */
+    private final Map<String, Long> phaseTimings = new LinkedHashMap<>();
+
+    /**
+     * 本次构建执行的所有命令的资源用量
+     */
+    @Getter
+    private volatile ResourceUsage resourceUsage = ResourceUsage.NONE;
+
+    /**
+     * 被丢弃的行数
+     */
+    @Getter
+    private long droppedLines;
+
+    @Getter
+    private volatile BuildResult result;
+
+    public BuildLog(String buildId, String projectPath, int capacity) {
+        this.buildId = buildId;
+        this.projectPath = projectPath;
+        this.capacity = Math.max(1, capacity);
+        this.lines = new ArrayDeque<>(this.capacity);
+    }
+
+    /**
+     * 追加一行输出，构建结束后忽略
+     */
+    public void append(String line) {
+        if (line.length() > MAX_LINE_LENGTH) {
+            line = line.substring(0, MAX_LINE_LENGTH) + "...";
+        }
+        synchronized (this) {
+            if (result != null) {
+                return;
+            }
+            if (lines.size() == capacity) {
+                lines.pollFirst();
+                droppedLines++;
+            }
+            lines.addLast(line);
+            for (Sinks.Many<String> listener : listeners) {
+                listener.tryEmitNext(line);
+            }
+        }
+    }
+
+    /**
+     * 记录阶段耗时
+     */
+    public synchronized void recordPhase(String phase, long elapsedMs) {
+        phaseTimings.merge(phase, elapsedMs, Long::sum);
+    }
+
+    /**
+     * 累计一条命令的资源用量
+     */
+    public synchronized void recordUsage(ResourceUsage usage) {
+        resourceUsage = resourceUsage.plus(usage);
+    }
+
+    public synchronized Map<String, Long> getPhaseTimings() {
+        return new LinkedHashMap<>(phaseTimings);
+    }
+
+    /**
+     * 结束构建，完成所有连接
+     */
+    public void finish(BuildResult result) {
+        List<Sinks.Many<String>> completed;
+        synchronized (this) {
+            if (this.result != null) {
+                return;
+            }
+            this.result = result;
+            completed = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        completed.forEach(Sinks.Many::tryEmitComplete);
+    }
+
+    /**
+     * 最后若干行输出，用于失败诊断
+     */
+    public synchronized List<String> tail(int maxLines) {
+        int skip = Math.max(0, lines.size() - maxLines);
+        List<String> tail = new ArrayList<>(lines.size() - skip);
+        for (String line : lines) {
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            tail.add(line);
+        }
+        return Collections.unmodifiableList(tail);
+    }
+
+    /**
+     * 连接到构建日志
+     *
+     * @return 缓冲区中的行 + 实时输出，构建结束时完成
+     */
+    public Flux<String> attach() {
+        return Flux.defer(() -> {
+            Sinks.Many<String> listener = Sinks.many().unicast().onBackpressureBuffer();
+            List<String> buffered;
+            synchronized (this) {
+                // 回放和注册在同一把锁内完成，保证两段之间不丢行、不重复
+                buffered = new ArrayList<>(lines);
+                if (result != null) {
+                    return Flux.fromIterable(buffered);
+                }
+                listeners.add(listener);
+            }
+            return Flux.fromIterable(buffered)
+                    .concatWith(listener.asFlux())
+                    .doFinally(signalType -> detach(listener));
+        });
+    }
+
+    private synchronized void detach(Sinks.Many<String> listener) {
+        listeners.remove(listener);
+    }
+}
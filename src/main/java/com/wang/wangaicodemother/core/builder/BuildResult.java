@@ -0,0 +1,27 @@
+package com.wang.wangaicodemother.core.builder;
+
+import lombok.Getter;
+
+/**
+ * 项目构建结果
+ */
+@Getter
+public enum BuildResult {
+
+    REBUILT("重新构建"),
+    UP_TO_DATE("已是最新，跳过构建"),
+    FAILED("构建失败");
+
+    private final String text;
+
+    BuildResult(String text) {
+        this.text = text;
+    }
+
+    /**
+     * dist 是否可用
+     */
+    public boolean isSuccess() {
+        return this != FAILED;
+    }
+}
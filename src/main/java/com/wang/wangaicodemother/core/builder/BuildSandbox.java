@@ -0,0 +1,165 @@
+package com.wang.wangaicodemother.core.builder;
+
+import cn.hutool.core.util.IdUtil;
+import com.wang.wangaicodemother.config.VueBuildProperties;
+import com.wang.wangaicodemother.utils.ExecutableUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构建沙箱
+ * 生成的项目可能带有任意构建脚本，在 Linux 上为构建子进程加上资源限制，避免单个项目拖垮服务进程：
+ * setsid 放入独立进程组（超时时整组终止），nice / ionice 降低 CPU 和 IO 优先级，ulimit 限制 CPU 时间和打开文件数，
+ * 可选放入独立的 cgroup v2 限制 CPU 配额和内存上限。缺少的工具或不可用的 cgroup 会被跳过
+ */
+@Slf4j
+@Component
+public class BuildSandbox {
+
+    /**
+     * cpu.max 的周期（微秒）
+     */
+    private static final long CPU_PERIOD_MICROS = 100_000;
+
+    @Resource
+    private VueBuildProperties vueBuildProperties;
+
+    private boolean linux;
+
+    private String setsid;
+
+    private String nice;
+
+    private String ionice;
+
+    private Path cgroupParent;
+
+    public BuildSandbox() {
+    }
+
+    BuildSandbox(VueBuildProperties vueBuildProperties) {
+        this.vueBuildProperties = vueBuildProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        VueBuildProperties.Sandbox sandbox = vueBuildProperties.getSandbox();
+        linux = System.getProperty("os.name").toLowerCase().contains("linux");
+        if (!linux || !sandbox.isEnabled()) {
+            log.info("构建资源限制未启用");
+            return;
+        }
+        setsid = ExecutableUtil.find("setsid");
+        nice = ExecutableUtil.find("nice");
+        ionice = ExecutableUtil.find("ionice");
+        if (sandbox.getCgroup().isEnabled()) {
+            cgroupParent = prepareCgroupParent(Paths.get(sandbox.getCgroup().getParent()));
+        }
+        log.info("构建资源限制: setsid={}, nice={}, ionice={}, cgroup={}", setsid != null, nice != null, ionice != null, cgroupParent);
+    }
+
+    /**
+     * 为命令加上资源限制
+     *
+     * @param command 命令及参数
+     * @return 受限命令，未启用或非 Linux 时原样执行
+     */
+    public SandboxedCommand wrap(String[] command) {
+        VueBuildProperties.Sandbox sandbox = vueBuildProperties.getSandbox();
+        if (!linux || !sandbox.isEnabled()) {
+            return SandboxedCommand.plain(command);
+        }
+        List<String> wrapped = new ArrayList<>();
+        if (setsid != null) {
+            // 子进程不是进程组组长，setsid 不会再 fork，进程组 ID 即子进程 PID
+            wrapped.add(setsid);
+        }
+        if (nice != null && sandbox.getNice() != 0) {
+            wrapped.addAll(List.of(nice, "-n", String.valueOf(sandbox.getNice())));
+        }
+        if (ionice != null && sandbox.getIoniceLevel() >= 0) {
+            wrapped.addAll(List.of(ionice, "-c", "2", "-n", String.valueOf(sandbox.getIoniceLevel())));
+        }
+        Path cgroup = createCgroup();
+        wrapped.addAll(List.of("sh", "-c", buildShellPrelude(sandbox, cgroup) + "exec \"$@\"", "sh"));
+        wrapped.addAll(List.of(command));
+        return new SandboxedCommand(wrapped.toArray(String[]::new), setsid != null, cgroup);
+    }
+
+    /**
+     * 在 exec 真正的命令之前执行：设置 ulimit，加入 cgroup（之后启动的子进程都继承）
+     * 单项失败不影响构建
+     */
+    static String buildShellPrelude(VueBuildProperties.Sandbox sandbox, Path cgroup) {
+        StringBuilder prelude = new StringBuilder();
+        if (sandbox.getCpuTimeSeconds() > 0) {
+            prelude.append("ulimit -t ").append(sandbox.getCpuTimeSeconds()).append(" 2>/dev/null; ");
+        }
+        if (sandbox.getMaxOpenFiles() > 0) {
+            prelude.append("ulimit -n ").append(sandbox.getMaxOpenFiles()).append(" 2>/dev/null; ");
+        }
+        if (cgroup != null) {
+            prelude.append("echo $$ > '").append(cgroup.resolve("cgroup.procs")).append("' 2>/dev/null; ");
+        }
+        return prelude.toString();
+    }
+
+    /**
+     * 为一条命令创建子 cgroup 并写入限制
+     *
+     * @return cgroup 目录，不可用时返回 null
+     */
+    private Path createCgroup() {
+        if (cgroupParent == null) {
+            return null;
+        }
+        VueBuildProperties.Cgroup config = vueBuildProperties.getSandbox().getCgroup();
+        Path cgroup = cgroupParent.resolve("build-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createDirectory(cgroup);
+            if (config.getCpuQuotaPercent() > 0) {
+                long quota = CPU_PERIOD_MICROS * config.getCpuQuotaPercent() / 100;
+                Files.writeString(cgroup.resolve("cpu.max"), quota + " " + CPU_PERIOD_MICROS);
+            }
+            if (config.getMemoryMaxMb() > 0) {
+                Files.writeString(cgroup.resolve("memory.max"), String.valueOf(config.getMemoryMaxMb() * 1024 * 1024));
+            }
+            return cgroup;
+        } catch (IOException e) {
+            log.warn("创建构建 cgroup 失败，本次不使用 cgroup 限制: {}", e.getMessage());
+            try {
+                Files.deleteIfExists(cgroup);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 检查父 cgroup 可写，并为子 cgroup 开启 cpu、memory 控制器
+     */
+    private static Path prepareCgroupParent(Path parent) {
+        try {
+            Files.createDirectories(parent);
+            Path subtreeControl = parent.resolve("cgroup.subtree_control");
+            if (!Files.isWritable(subtreeControl)) {
+                log.warn("cgroup 不可写，不使用 cgroup 限制: {}", parent);
+                return null;
+            }
+            Files.writeString(subtreeControl, "+cpu +memory");
+            return parent;
+        } catch (IOException e) {
+            log.warn("cgroup 不可用，不使用 cgroup 限制: {}, 错误: {}", parent, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.wang.wangaicodemother.core.builder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 项目构建调度器
+ * 同时最多执行固定数量的构建，其余按提交顺序排队；同一项目目录的构建串行执行，
+ * 尚未开始的构建请求合并为一个，调用方共享同一个结果
+ * 正在构建的项目再次提交时会排一次后续构建（文件可能在本次构建开始后又被修改），之后的请求都共享这次后续构建
+ */
+@Slf4j
+public class BuildScheduler {
+
+    /**
+     * 关闭时等待执行中的构建结束的时间
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final Function<String, BuildResult> buildAction;
+
+    private final ExecutorService workers;
+
+    /**
+     * 项目目录到构建状态的映射，读写都在 this 上同步
+     */
+    private final Map<String, ProjectBuilds> projects = new HashMap<>();
+
+    /**
+     * 尚未完成的构建，关闭时统一以失败结束，避免调用方一直等待；在 this 上同步
+     */
+    private final Set<CompletableFuture<BuildResult>> pending = new HashSet<>();
+
+    private static class ProjectBuilds {
+
+        /**
+         * 最后提交的构建（执行中或排队中），下一次构建在它结束后开始
+         */
+        CompletableFuture<BuildResult> tail;
+
+        /**
+         * 已提交但尚未开始的构建，新的请求直接共享它
+         */
+        CompletableFuture<BuildResult> waiting;
+    }
+
+    /**
+     * @param buildAction   构建动作，参数为项目目录，返回构建结果
+     * @param maxConcurrent 最大并发构建数
+     */
+    public BuildScheduler(Function<String, BuildResult> buildAction, int maxConcurrent) {
+        this.buildAction = buildAction;
+        // 固定数量的工作线程 + 无界 FIFO 队列
+        this.workers = Executors.newFixedThreadPool(Math.max(1, maxConcurrent),
+                Thread.ofVirtual().name("vue-builder-", 0).factory());
+    }
+
+    /**
+     * 提交构建
+     *
+     * @param projectPath 项目目录
+     * @return 构建结果，合并的请求返回同一个 future
+     */
+    public synchronized CompletableFuture<BuildResult> submit(String projectPath) {
+        String key = Paths.get(projectPath).toAbsolutePath().normalize().toString();
+        ProjectBuilds builds = projects.computeIfAbsent(key, k -> new ProjectBuilds());
+        if (builds.waiting != null) {
+            log.info("合并构建请求，项目 {} 已有排队中的构建", key);
+            return builds.waiting;
+        }
+        CompletableFuture<BuildResult> build = new CompletableFuture<>();
+        CompletableFuture<BuildResult> previous = builds.tail == null ? CompletableFuture.completedFuture(BuildResult.UP_TO_DATE) : builds.tail;
+        builds.waiting = build;
+        builds.tail = build;
+        pending.add(build);
+        build.whenComplete((result, error) -> {
+            synchronized (this) {
+                pending.remove(build);
+            }
+        });
+        previous.whenComplete((result, error) -> {
+            try {
+                workers.execute(() -> run(key, builds, build));
+            } catch (RejectedExecutionException e) {
+                build.complete(BuildResult.FAILED);
+            }
+        });
+        return build;
+    }
+
+    /**
+     * 关闭调度器，排队中的构建不再执行并以失败结束；执行中的构建最多等待 {@value #SHUTDOWN_TIMEOUT_SECONDS} 秒
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("等待执行中的构建结束超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<CompletableFuture<BuildResult>> unfinished;
+        synchronized (this) {
+            unfinished = new ArrayList<>(pending);
+        }
+        unfinished.forEach(build -> build.complete(BuildResult.FAILED));
+    }
+
+    private void run(String key, ProjectBuilds builds, CompletableFuture<BuildResult> build) {
+        synchronized (this) {
+            if (builds.waiting == build) {
+                builds.waiting = null;
+            }
+        }
+        try {
+            build.complete(buildAction.apply(key));
+        } catch (Throwable e) {
+            log.error("构建项目失败: {}, 错误: {}", key, e.getMessage());
+            build.complete(BuildResult.FAILED);
+        } finally {
+            synchronized (this) {
+                if (builds.tail == build) {
+                    projects.remove(key);
+                }
+            }
+        }
+    }
+}
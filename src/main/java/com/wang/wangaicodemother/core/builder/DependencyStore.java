@@ -0,0 +1,402 @@
+package com.wang.wangaicodemother.core.builder;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wang.wangaicodemother.config.DependencyStoreProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Vue 项目依赖仓库
+ * 按规范化后的 package.json 依赖声明和 lockfile 计算哈希，每个哈希对应仓库中一份安装好的 node_modules；
+ * 项目构建时把命中的 node_modules 以硬链接方式放入项目目录（跨文件系统时退化为复制），只有未命中时才执行 npm install。
+ * 硬链接与仓库共用 inode，仓库条目安装完成后去掉所有文件的写权限，项目构建无法就地修改共享的依赖文件；
+ * 条目按最近使用时间和仓库总大小定期清理
+ */
+@Slf4j
+@Component
+public class DependencyStore {
+
+    /**
+     * 参与哈希的 package.json 字段，name、version、scripts 等与安装结果无关的字段不参与
+     */
+    private static final List<String> DEPENDENCY_SECTIONS = List.of(
+            "dependencies", "devDependencies", "optionalDependencies", "peerDependencies", "overrides"
+    );
+
+    /**
+     * 仓库条目安装完成的标记，同时记录最近使用时间
+     */
+    private static final String COMPLETE_FILE = ".complete";
+
+    /**
+     * 项目 node_modules 中记录来源哈希的文件，哈希未变化时跳过链接
+     */
+    private static final String STORE_KEY_FILE = ".store-key";
+
+    private static final Set<PosixFilePermission> WRITE_PERMISSIONS = EnumSet.of(
+            PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE
+    );
+
+    /**
+     * 最近使用过的条目不清理，避免删除正在链接到项目中的条目
+     */
+    private static final long IN_USE_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * 安装中断残留的临时目录超过该时间后清理
+     */
+    private static final long STALE_STAGING_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Resource
+    private DependencyStoreProperties dependencyStoreProperties;
+
+    private Path storeRoot;
+
+    /**
+     * 同一组依赖同时只安装一次；使用 ReentrantLock，npm install 期间不会钉住虚拟线程的载体线程
+     */
+    private final Map<String, ReentrantLock> installLocks = new ConcurrentHashMap<>();
+
+    public DependencyStore() {
+    }
+
+    DependencyStore(Path storeRoot, DependencyStoreProperties dependencyStoreProperties) {
+        this.storeRoot = storeRoot;
+        this.dependencyStoreProperties = dependencyStoreProperties;
+    }
+
+    @PostConstruct
+    public void init() {
+        storeRoot = Paths.get(dependencyStoreProperties.getStoreDir()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 为项目准备 node_modules
+     *
+     * @param projectDir 项目目录（包含 package.json）
+     * @param npmInstall 在指定目录执行 npm install，仓库未命中时调用
+     * @return 是否成功
+     */
+    public boolean install(Path projectDir, Predicate<File> npmInstall) throws IOException {
+        String key = storeKey(projectDir);
+        Path nodeModules = projectDir.resolve("node_modules");
+        Path keyFile = nodeModules.resolve(STORE_KEY_FILE);
+        if (Files.isRegularFile(keyFile) && key.equals(Files.readString(keyFile).trim())) {
+            log.info("依赖未变化，复用项目中的 node_modules: {}", projectDir);
+            return true;
+        }
+        Path entry = storeRoot.resolve(key);
+        ReentrantLock lock = installLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (!Files.isRegularFile(entry.resolve(COMPLETE_FILE))) {
+                log.info("依赖仓库未命中，开始安装，key: {}", key);
+                if (!populate(projectDir, entry, npmInstall)) {
+                    return false;
+                }
+            } else {
+                log.info("依赖仓库命中，key: {}", key);
+            }
+            // 在锁内更新最近使用时间，清理任务不会删除接下来要链接的条目
+            Files.setLastModifiedTime(entry.resolve(COMPLETE_FILE), FileTime.fromMillis(System.currentTimeMillis()));
+        } finally {
+            lock.unlock();
+        }
+        long start = System.currentTimeMillis();
+        FileUtil.del(nodeModules);
+        boolean linked = linkTree(entry.resolve("node_modules"), nodeModules);
+        Files.writeString(keyFile, key);
+        log.info("node_modules 已{}到项目，耗时 {}ms: {}", linked ? "硬链接" : "复制", System.currentTimeMillis() - start, projectDir);
+        return true;
+    }
+
+    /**
+     * 在临时目录中只用 package.json 和 lockfile 安装依赖，成功后原子重命名为仓库条目
+     */
+    private boolean populate(Path projectDir, Path entry, Predicate<File> npmInstall) throws IOException {
+        Path staging = storeRoot.resolve(".staging-" + entry.getFileName() + "-" + IdUtil.fastSimpleUUID());
+        Files.createDirectories(staging);
+        try {
+            Files.copy(projectDir.resolve("package.json"), staging.resolve("package.json"));
+            Path lockfile = projectDir.resolve("package-lock.json");
+            if (Files.isRegularFile(lockfile)) {
+                Files.copy(lockfile, staging.resolve("package-lock.json"));
+            }
+            if (!npmInstall.test(staging.toFile())) {
+                return false;
+            }
+            Files.createDirectories(staging.resolve("node_modules"));
+            makeReadOnly(staging.resolve("node_modules"));
+            Files.writeString(staging.resolve(COMPLETE_FILE), entry.getFileName().toString());
+            try {
+                Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // 其他进程已经安装了同一组依赖
+                log.info("依赖仓库条目已存在，丢弃本次安装结果: {}", entry);
+            }
+            return true;
+        } finally {
+            if (Files.exists(staging)) {
+                FileUtil.del(staging);
+            }
+        }
+    }
+
+    /**
+     * 去掉目录树下所有文件的写权限；目录保持可写，项目中链接出的目录是独立创建的，构建仍可新建文件（如 .vite 缓存）
+     */
+    static void makeReadOnly(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+                if (view == null) {
+                    file.toFile().setWritable(false, false);
+                    return FileVisitResult.CONTINUE;
+                }
+                Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+                permissions.addAll(view.readAttributes().permissions());
+                permissions.removeAll(WRITE_PERMISSIONS);
+                view.setPermissions(permissions);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 定期清理仓库：删除超过保留天数未使用的条目，总大小超出上限时再按最近使用时间从旧到新删除
+     */
+    @Scheduled(fixedDelayString = "${vue-build.dependency-store.sweep-interval-minutes:60}",
+            initialDelayString = "${vue-build.dependency-store.sweep-interval-minutes:60}", timeUnit = TimeUnit.MINUTES)
+    public void sweep() {
+        if (!dependencyStoreProperties.isEnabled() || !Files.isDirectory(storeRoot)) {
+            return;
+        }
+        try {
+            sweep(System.currentTimeMillis());
+        } catch (IOException e) {
+            log.warn("清理依赖仓库失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return 删除的条目数
+     */
+    int sweep(long now) throws IOException {
+        List<StoreEntry> entries = new ArrayList<>();
+        try (Stream<Path> children = Files.list(storeRoot)) {
+            for (Path child : children.toList()) {
+                String name = child.getFileName().toString();
+                if (name.startsWith(".")) {
+                    // 安装或删除中断留下的临时目录
+                    if (now - lastModified(child) > STALE_STAGING_MILLIS) {
+                        FileUtil.del(child);
+                    }
+                    continue;
+                }
+                Path complete = child.resolve(COMPLETE_FILE);
+                if (Files.isRegularFile(complete)) {
+                    entries.add(new StoreEntry(child, lastModified(complete), treeSize(child)));
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(StoreEntry::lastUsed));
+        long retainMillis = TimeUnit.DAYS.toMillis(dependencyStoreProperties.getRetainDays());
+        long maxBytes = dependencyStoreProperties.getMaxSizeMb() * 1024 * 1024;
+        long totalBytes = entries.stream().mapToLong(StoreEntry::bytes).sum();
+        int removed = 0;
+        for (StoreEntry entry : entries) {
+            boolean expired = retainMillis > 0 && now - entry.lastUsed() > retainMillis;
+            boolean oversize = maxBytes > 0 && totalBytes > maxBytes;
+            if (!expired && !oversize) {
+                break;
+            }
+            if (now - entry.lastUsed() < IN_USE_GRACE_MILLIS || !evict(entry.dir())) {
+                continue;
+            }
+            totalBytes -= entry.bytes();
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("依赖仓库清理完成，删除 {} 个条目，剩余 {}MB", removed, totalBytes / 1024 / 1024);
+        }
+        return removed;
+    }
+
+    /**
+     * 先在安装锁内把条目重命名为临时目录，之后的安装不会再命中它，再删除
+     */
+    private boolean evict(Path dir) throws IOException {
+        String key = dir.getFileName().toString();
+        ReentrantLock lock = installLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return false;
+        }
+        Path evicting = storeRoot.resolve(".evicting-" + key + "-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.move(dir, evicting, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+        log.info("删除依赖仓库条目: {}", key);
+        FileUtil.del(evicting);
+        return true;
+    }
+
+    /**
+     * 目录树中文件的总大小，不跟随符号链接
+     */
+    private static long treeSize(Path root) throws IOException {
+        long[] bytes = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    bytes[0] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return bytes[0];
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private record StoreEntry(Path dir, long lastUsed, long bytes) {
+    }
+
+    /**
+     * 计算项目依赖的哈希
+     * 只取依赖相关字段并按 key 排序；lockfile 去掉根包（包含项目名称）后参与计算；平台不同安装结果不同，也参与计算
+     */
+    static String storeKey(Path projectDir) throws IOException {
+        JSONObject packageJson = JSONUtil.parseObj(Files.readString(projectDir.resolve("package.json")));
+        Map<String, Object> canonical = new TreeMap<>();
+        for (String section : DEPENDENCY_SECTIONS) {
+            if (packageJson.containsKey(section)) {
+                canonical.put(section, packageJson.get(section));
+            }
+        }
+        Path lockfile = projectDir.resolve("package-lock.json");
+        if (Files.isRegularFile(lockfile)) {
+            JSONObject packages = JSONUtil.parseObj(Files.readString(lockfile)).getJSONObject("packages");
+            if (packages != null) {
+                Map<String, Object> lockedPackages = new TreeMap<>(packages);
+                lockedPackages.remove("");
+                canonical.put("lockfile", lockedPackages);
+            }
+        }
+        canonical.put("platform", System.getProperty("os.name") + "/" + System.getProperty("os.arch"));
+        StringBuilder text = new StringBuilder();
+        appendCanonical(canonical, text);
+        return DigestUtil.sha256Hex(text.toString());
+    }
+
+    private static void appendCanonical(Object value, StringBuilder text) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+            text.append('{');
+            sorted.forEach((k, v) -> {
+                text.append(JSONUtil.quote(k)).append(':');
+                appendCanonical(v, text);
+                text.append(',');
+            });
+            text.append('}');
+        } else if (value instanceof List<?> array) {
+            text.append('[');
+            for (Object item : array) {
+                appendCanonical(item, text);
+                text.append(',');
+            }
+            text.append(']');
+        } else if (value instanceof CharSequence) {
+            text.append(JSONUtil.quote(value.toString()));
+        } else {
+            text.append(value);
+        }
+    }
+
+    /**
+     * 把 source 目录树以硬链接方式复制到 target，符号链接按原目标重建；不支持硬链接时改为复制
+     *
+     * @return 是否全部使用硬链接
+     */
+    static boolean linkTree(Path source, Path target) throws IOException {
+        boolean[] hardLinks = {true};
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path dest = target.resolve(source.relativize(file).toString());
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+                    return FileVisitResult.CONTINUE;
+                }
+                if (hardLinks[0]) {
+                    try {
+                        Files.createLink(dest, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        // 跨文件系统等情况，之后的文件都直接复制
+                        log.warn("无法创建硬链接，改为复制: {}", e.getMessage());
+                        hardLinks[0] = false;
+                    }
+                }
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return hardLinks[0];
+    }
+}
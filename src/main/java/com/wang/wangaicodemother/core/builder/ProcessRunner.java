@@ -0,0 +1,115 @@
+package com.wang.wangaicodemother.core.builder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 外部命令执行器
+ * stdout、stderr 各由一个虚拟线程持续读取并按行交给调用方，避免输出填满管道缓冲区导致子进程阻塞
+ */
+@Slf4j
+public final class ProcessRunner {
+
+    /**
+     * 进程退出后等待输出读完的时间；子进程的后代进程可能仍持有管道，超时后直接关闭
+     */
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+
+    /**
+     * 超时时的退出码
+     */
+    public static final int TIMEOUT_EXIT_CODE = -1;
+
+    private ProcessRunner() {
+    }
+
+    /**
+     * 执行命令并等待结束
+     *
+     * @param workingDir     工作目录
+     * @param command        命令及参数
+     * @param timeoutSeconds 超时时间（秒），超时后强制终止进程及其后代进程
+     * @param output         输出行的接收方，stdout 和 stderr 的行都会交给它，需线程安全
+     * @return 退出码，超时返回 {@link #TIMEOUT_EXIT_CODE}
+     */
+    public static int run(File workingDir, String[] command, int timeoutSeconds, Consumer<String> output)
+            throws IOException, InterruptedException {
+        SandboxedCommand plain = SandboxedCommand.plain(command);
+        try {
+            return run(workingDir, plain, timeoutSeconds, output);
+        } finally {
+            plain.finish();
+        }
+    }
+
+    /**
+     * 执行受限命令并等待结束，资源用量由调用方通过 {@link SandboxedCommand#finish()} 获取
+     *
+     * @param workingDir     工作目录
+     * @param command        受限命令
+     * @param timeoutSeconds 超时时间（秒），超时后终止命令启动的所有进程
+     * @param output         输出行的接收方，stdout 和 stderr 的行都会交给它，需线程安全
+     * @return 退出码，超时返回 {@link #TIMEOUT_EXIT_CODE}
+     */
+    public static int run(File workingDir, SandboxedCommand command, int timeoutSeconds, Consumer<String> output)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command.getCommand()).directory(workingDir).start();
+        command.started(process);
+        process.getOutputStream().close();
+        Thread stdout = drain(process.getInputStream(), output, "stdout");
+        Thread stderr = drain(process.getErrorStream(), output, "stderr");
+        try {
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                command.kill(process);
+                process.waitFor(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return TIMEOUT_EXIT_CODE;
+            }
+            return process.exitValue();
+        } catch (InterruptedException e) {
+            // 调度器关闭时中断构建线程，子进程不能留下
+            command.kill(process);
+            throw e;
+        } finally {
+            awaitDrain(process, stdout, stderr);
+        }
+    }
+
+    private static Thread drain(InputStream stream, Consumer<String> output, String name) {
+        return Thread.ofVirtual().name("process-" + name).start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.accept(line);
+                }
+            } catch (IOException e) {
+                // 进程结束后流被关闭
+                log.debug("读取进程输出结束: {}", e.getMessage());
+            }
+        });
+    }
+
+    private static void awaitDrain(Process process, Thread stdout, Thread stderr) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        stdout.join(Math.max(1, deadline - System.currentTimeMillis()));
+        stderr.join(Math.max(1, deadline - System.currentTimeMillis()));
+        if (stdout.isAlive() || stderr.isAlive()) {
+            closeQuietly(process.getInputStream());
+            closeQuietly(process.getErrorStream());
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.wang.wangaicodemother.core.builder;
+
+/**
+ * 子进程资源用量
+ *
+ * @param peakRssBytes 峰值常驻内存（字节），进程树同一时刻的总和
+ * @param cpuSeconds   用户态 + 内核态 CPU 时间（秒）
+ */
+public record ResourceUsage(long peakRssBytes, double cpuSeconds) {
+
+    public static final ResourceUsage NONE = new ResourceUsage(0, 0);
+
+    /**
+     * 合并先后执行的两条命令：峰值取较大者，CPU 时间累加
+     */
+    public ResourceUsage plus(ResourceUsage other) {
+        return new ResourceUsage(Math.max(peakRssBytes, other.peakRssBytes), cpuSeconds + other.cpuSeconds);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("peakRss=%dMB, cpu=%.1fs", peakRssBytes / 1024 / 1024, cpuSeconds);
+    }
+}
@@ -0,0 +1,202 @@
+package com.wang.wangaicodemother.core.builder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 受资源限制的命令
+ * 由 {@link BuildSandbox} 创建：命令外包一层 setsid / nice / ionice / ulimit，可选加入独立的 cgroup；
+ * 运行期间定时采样进程树的常驻内存和 CPU 时间，结束后汇总资源用量
+ */
+@Slf4j
+public class SandboxedCommand {
+
+    /**
+     * 进程树采样间隔
+     */
+    private static final long SAMPLE_INTERVAL_MS = 500;
+
+    private final String[] command;
+
+    /**
+     * 命令是否在独立的进程组中运行（setsid），是则超时时按进程组终止
+     */
+    private final boolean processGroup;
+
+    /**
+     * 命令所在的 cgroup，为空表示未使用
+     */
+    private final Path cgroup;
+
+    /**
+     * 每个进程采样到的最大 CPU 时间（纳秒），进程退出后保留最后一次采样值
+     */
+    private final Map<Long, Long> cpuNanosByPid = new ConcurrentHashMap<>();
+
+    private volatile long peakRssBytes;
+
+    private volatile Thread sampler;
+
+    SandboxedCommand(String[] command, boolean processGroup, Path cgroup) {
+        this.command = command;
+        this.processGroup = processGroup;
+        this.cgroup = cgroup;
+    }
+
+    /**
+     * 不加任何限制的命令，仍然采样资源用量
+     */
+    public static SandboxedCommand plain(String[] command) {
+        return new SandboxedCommand(command, false, null);
+    }
+
+    public String[] getCommand() {
+        return command;
+    }
+
+    /**
+     * 进程启动后调用，开始采样
+     */
+    void started(Process process) {
+        sampler = Thread.ofVirtual().name("process-sampler-" + process.pid()).start(() -> {
+            while (process.isAlive()) {
+                sample(process.toHandle());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * 终止命令启动的所有进程
+     */
+    void kill(Process process) {
+        if (cgroup != null) {
+            // cgroup 中的进程即使脱离了进程树也会被终止（内核 5.14+）
+            writeQuietly(cgroup.resolve("cgroup.kill"), "1");
+        }
+        if (processGroup) {
+            try {
+                new ProcessBuilder("kill", "-KILL", "--", "-" + process.pid()).start().waitFor(5, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                log.warn("终止进程组失败: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * 命令结束后调用：停止采样，汇总资源用量并清理 cgroup
+     *
+     * @return 资源用量，cgroup 可用时优先采用 cgroup 的统计
+     */
+    public ResourceUsage finish() {
+        Thread current = sampler;
+        if (current != null) {
+            current.interrupt();
+        }
+        long sampledCpuNanos = cpuNanosByPid.values().stream().mapToLong(Long::longValue).sum();
+        ResourceUsage usage = new ResourceUsage(peakRssBytes, sampledCpuNanos / 1e9);
+        if (cgroup != null) {
+            long cgroupPeak = readLong(cgroup.resolve("memory.peak"));
+            double cgroupCpu = readCpuUsageMicros() / 1e6;
+            usage = new ResourceUsage(Math.max(usage.peakRssBytes(), cgroupPeak), Math.max(usage.cpuSeconds(), cgroupCpu));
+            removeCgroup();
+        }
+        return usage;
+    }
+
+    private void sample(ProcessHandle root) {
+        List<ProcessHandle> handles = new ArrayList<>();
+        handles.add(root);
+        root.descendants().forEach(handles::add);
+        long rss = 0;
+        for (ProcessHandle handle : handles) {
+            rss += readRssBytes(handle.pid());
+            handle.info().totalCpuDuration()
+                    .ifPresent(cpu -> cpuNanosByPid.merge(handle.pid(), cpu.toNanos(), Math::max));
+        }
+        if (rss > peakRssBytes) {
+            peakRssBytes = rss;
+        }
+    }
+
+    /**
+     * 读取 /proc/{pid}/status 中的 VmRSS，进程已退出或非 Linux 时返回 0
+     */
+    private static long readRssBytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return 0;
+    }
+
+    private long readCpuUsageMicros() {
+        try {
+            for (String line : Files.readAllLines(cgroup.resolve("cpu.stat"))) {
+                if (line.startsWith("usage_usec ")) {
+                    return Long.parseLong(line.substring("usage_usec ".length()).trim());
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return 0;
+    }
+
+    private static long readLong(Path file) {
+        try {
+            return Long.parseLong(Files.readString(file).trim());
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void removeCgroup() {
+        writeQuietly(cgroup.resolve("cgroup.kill"), "1");
+        // 进程退出后 cgroup 才能删除，稍等片刻
+        for (int attempt = 0; attempt < 20; attempt++) {
+            try {
+                Files.delete(cgroup);
+                return;
+            } catch (IOException e) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.warn("删除 cgroup 失败: {}", cgroup);
+    }
+
+    private static void writeQuietly(Path file, String content) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            Files.writeString(file, content);
+        } catch (IOException e) {
+            log.debug("写入 {} 失败: {}", file, e.getMessage());
+        }
+    }
+}
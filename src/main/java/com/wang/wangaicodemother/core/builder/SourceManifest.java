@@ -0,0 +1,166 @@
+package com.wang.wangaicodemother.core.builder;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 项目源码清单
+ * 记录上次成功构建时每个源码文件的内容哈希（不含 node_modules、dist 和清单本身），保存在 dist 旁边；
+ * 源码哈希不变时跳过构建，依赖声明不变时跳过依赖安装
+ */
+@Slf4j
+public class SourceManifest {
+
+    /**
+     * 清单文件名，与 dist 同级
+     */
+    public static final String FILE_NAME = ".build-manifest.json";
+
+    private static final String[] DEPENDENCY_FILES = {"package.json", "package-lock.json"};
+
+    /**
+     * 不计入清单的路径（相对项目目录）；其余文件（包括 .env、lockfile 等隐藏或编辑器不展示的文件）都可能影响构建结果
+     */
+    private static final Set<String> EXCLUDED_PATHS = Set.of("node_modules", "dist", FILE_NAME);
+
+    /**
+     * 相对路径（以 / 分隔）到内容哈希
+     */
+    private final Map<String, String> files;
+
+    private final String sourceHash;
+
+    private final String dependencyHash;
+
+    private SourceManifest(Map<String, String> files) {
+        this.files = files;
+        StringBuilder all = new StringBuilder();
+        files.forEach((path, hash) -> all.append(path).append('\0').append(hash).append('\n'));
+        this.sourceHash = DigestUtil.sha256Hex(all.toString());
+        StringBuilder dependencies = new StringBuilder();
+        for (String dependencyFile : DEPENDENCY_FILES) {
+            dependencies.append(dependencyFile).append('\0').append(files.getOrDefault(dependencyFile, "")).append('\n');
+        }
+        this.dependencyHash = DigestUtil.sha256Hex(dependencies.toString());
+    }
+
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    /**
+     * 源码哈希相同即认为构建结果相同
+     */
+    public boolean sameSources(SourceManifest other) {
+        return other != null && sourceHash.equals(other.sourceHash);
+    }
+
+    /**
+     * package.json 和 lockfile 是否相同
+     */
+    public boolean sameDependencies(SourceManifest other) {
+        return other != null && dependencyHash.equals(other.dependencyHash);
+    }
+
+    /**
+     * 与另一份清单相比发生变化（新增、修改、删除）的文件数
+     */
+    public int changedFileCount(SourceManifest other) {
+        if (other == null) {
+            return files.size();
+        }
+        int changed = 0;
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            if (!entry.getValue().equals(other.files.get(entry.getKey()))) {
+                changed++;
+            }
+        }
+        for (String path : other.files.keySet()) {
+            if (!files.containsKey(path)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 扫描项目源码
+     */
+    public static SourceManifest scan(Path projectDir) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(projectDir) && EXCLUDED_PATHS.contains(relative(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relative = relative(file);
+                if (!attrs.isRegularFile() || EXCLUDED_PATHS.contains(relative)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                files.put(relative, DigestUtil.sha256Hex(Files.readAllBytes(file)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            private String relative(Path path) {
+                return projectDir.relativize(path).toString().replace('\\', '/');
+            }
+        });
+        return new SourceManifest(files);
+    }
+
+    /**
+     * 读取上次成功构建的清单
+     *
+     * @return 清单，不存在或无法解析时返回 null
+     */
+    public static SourceManifest read(Path projectDir) {
+        Path manifestFile = projectDir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(Files.readString(manifestFile));
+            Map<String, String> files = new TreeMap<>();
+            json.getJSONObject("files").forEach((path, hash) -> files.put(path, String.valueOf(hash)));
+            return new SourceManifest(files);
+        } catch (Exception e) {
+            log.warn("构建清单无法读取，将重新构建: {}, 错误: {}", manifestFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 构建成功后写入清单
+     */
+    public void write(Path projectDir) throws IOException {
+        JSONObject json = new JSONObject();
+        json.set("sourceHash", sourceHash);
+        json.set("files", files);
+        Files.writeString(projectDir.resolve(FILE_NAME), json.toString());
+    }
+
+    /**
+     * 删除清单，构建开始前调用，构建失败时下次一定重新构建
+     */
+    public static void delete(Path projectDir) throws IOException {
+        Files.deleteIfExists(projectDir.resolve(FILE_NAME));
+    }
+}
@@ -1,71 +1,171 @@
 package com.wang.wangaicodemother.core.builder;
 
-import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wang.wangaicodemother.config.DependencyStoreProperties;
+import com.wang.wangaicodemother.config.VueBuildProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 
 @Slf4j
 @Component
 public class VueProjectBuilder {
 
+    @Resource
+    private DependencyStore dependencyStore;
+
+    @Resource
+    private DependencyStoreProperties dependencyStoreProperties;
+
+    @Resource
+    private VueBuildProperties vueBuildProperties;
+
+    @Resource
+    private BuildSandbox buildSandbox;
+
+    /**
+     * 构建调度：限制并发构建数并合并同一项目的构建请求
+     */
+    private BuildScheduler buildScheduler;
+
+    /**
+     * 每个项目最近一次构建的日志，键为规范化后的项目目录
+     */
+    private final Cache<String, BuildLog> buildLogs = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        buildScheduler = new BuildScheduler(this::doBuildProject, vueBuildProperties.getMaxConcurrentBuilds());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildScheduler.shutdown();
+    }
+
     /**
      * 异步构建 Vue 项目
+     * 构建进入调度队列，同一项目尚未开始的构建会被合并
      *
-     * @param projectPath
+     * @param projectPath 项目根目录路径
+     * @return 构建结果
      */
-    public void buildProjectAsync(String projectPath) {
-        //在单独的线程中执行构建,避免阻塞主线程
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis()).start(() -> {
-            try {
-                buildProject(projectPath);
-            } catch (Exception e) {
-                log.error("构建项目失败: {}", e.getMessage());
-            }
-        });
+    public CompletableFuture<BuildResult> buildProjectAsync(String projectPath) {
+        return buildScheduler.submit(projectPath);
     }
 
 
     /**
-     * 构建 Vue 项目
+     * 构建 Vue 项目，等待构建完成
+     * 与异步构建共用调度队列，项目已有排队中的构建时直接等待它的结果
      *
      * @param projectPath 项目根目录路径
-     * @return 是否构建成功
+     * @return 构建结果
      */
-    public boolean buildProject(String projectPath) {
+    public BuildResult buildProject(String projectPath) {
+        return buildProjectAsync(projectPath).join();
+    }
+
+
+    /**
+     * 获取项目最近一次构建的日志
+     *
+     * @param projectPath 项目根目录路径
+     * @return 构建日志，还没有构建过时返回 null
+     */
+    public BuildLog getBuildLog(String projectPath) {
+        return buildLogs.getIfPresent(normalize(projectPath));
+    }
+
+
+    /**
+     * 执行构建
+     * 源码与上次成功构建时相同且 dist 存在时跳过构建；package.json、lockfile 未变化且 node_modules 存在时跳过依赖安装
+     *
+     * @param projectPath 项目根目录路径
+     * @return 构建结果
+     */
+    private BuildResult doBuildProject(String projectPath) {
+        BuildLog buildLog = new BuildLog(IdUtil.fastSimpleUUID(), projectPath, vueBuildProperties.getLogBufferLines());
+        buildLogs.put(normalize(projectPath), buildLog);
+        BuildResult result = BuildResult.FAILED;
+        try {
+            result = doBuildProject(projectPath, buildLog);
+        } finally {
+            buildLog.append("[" + result.getText() + "]");
+            buildLog.finish(result);
+            log.info("Vue 项目构建结束: {}, 结果: {}, 阶段耗时(ms): {}, 资源用量: {}",
+                    projectPath, result, buildLog.getPhaseTimings(), buildLog.getResourceUsage());
+        }
+        return result;
+    }
+
+    private BuildResult doBuildProject(String projectPath, BuildLog buildLog) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
-            return false;
+            return BuildResult.FAILED;
         }
         // 检查 package.json 是否存在
         File packageJson = new File(projectDir, "package.json");
         if (!packageJson.exists()) {
             log.error("package.json 文件不存在: {}", packageJson.getAbsolutePath());
-            return false;
+            return BuildResult.FAILED;
         }
-        log.info("开始构建 Vue 项目: {}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
+        File distDir = new File(projectDir, "dist");
+        SourceManifest current;
+        SourceManifest last = SourceManifest.read(projectDir.toPath());
+        try {
+            current = SourceManifest.scan(projectDir.toPath());
+            if (current.sameSources(last) && distDir.isDirectory()) {
+                log.info("Vue 项目源码未变化，跳过构建: {}", projectPath);
+                buildLog.append("源码未变化，跳过构建");
+                return BuildResult.UP_TO_DATE;
+            }
+            // 构建失败时 dist 可能已被清空，清单先删除，保证下次一定重新构建
+            SourceManifest.delete(projectDir.toPath());
+        } catch (IOException e) {
+            log.error("扫描项目源码失败: {}, 错误: {}", projectPath, e.getMessage());
+            return BuildResult.FAILED;
+        }
+        log.info("开始构建 Vue 项目: {}，变化文件数: {}", projectPath, current.changedFileCount(last));
+        // 安装依赖：依赖未变化时跳过；否则优先从依赖仓库链接，未命中时执行 npm install
+        if (current.sameDependencies(last) && new File(projectDir, "node_modules").isDirectory()) {
+            log.info("依赖未变化，跳过安装");
+        } else if (!installDependencies(projectDir, buildLog)) {
             log.error("npm install 执行失败");
-            return false;
+            return BuildResult.FAILED;
         }
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        if (!executeNpmBuild(projectDir, buildLog)) {
             log.error("npm run build 执行失败");
-            return false;
+            return BuildResult.FAILED;
         }
         // 验证 dist 目录是否生成
-        File distDir = new File(projectDir, "dist");
         if (!distDir.exists()) {
             log.error("构建完成但 dist 目录未生成: {}", distDir.getAbsolutePath());
-            return false;
+            return BuildResult.FAILED;
+        }
+        try {
+            current.write(projectDir.toPath());
+        } catch (IOException e) {
+            log.warn("写入构建清单失败，下次将重新构建: {}", e.getMessage());
         }
         log.info("Vue 项目构建成功，dist 目录: {}", distDir.getAbsolutePath());
-        return true;
+        return BuildResult.REBUILT;
     }
 
 
@@ -81,58 +181,108 @@ public class VueProjectBuilder {
         return System.getProperty("os.name").toLowerCase().contains("windows");
     }
 
+    /**
+     * 安装项目依赖
+     * 启用依赖仓库时，依赖相同的项目共用一份 node_modules，仓库不可用时直接在项目中执行 npm install
+     */
+    private boolean installDependencies(File projectDir, BuildLog buildLog) {
+        long start = System.currentTimeMillis();
+        try {
+            if (dependencyStoreProperties.isEnabled()) {
+                try {
+                    return dependencyStore.install(projectDir.toPath(), dir -> executeNpmInstall(dir, buildLog));
+                } catch (Exception e) {
+                    log.warn("依赖仓库不可用，直接执行 npm install: {}", e.getMessage());
+                }
+            }
+            return executeNpmInstall(projectDir, buildLog);
+        } finally {
+            buildLog.recordPhase("install", System.currentTimeMillis() - start);
+        }
+    }
+
     /**
      * 执行 npm install 命令
      */
-    private boolean executeNpmInstall(File projectDir) {
+    private boolean executeNpmInstall(File projectDir, BuildLog buildLog) {
         log.info("执行 npm install...");
-        return executeCommand(projectDir, String.format("%s install", buildCommand("npm")), 300); // 5分钟超时
+        return executeCommand(projectDir, buildNpmInstallCommand(), 300, buildLog); // 5分钟超时
+    }
+
+    /**
+     * npm install 命令，优先（或只）使用本地缓存，跳过审计和赞助提示
+     */
+    private String buildNpmInstallCommand() {
+        StringBuilder command = new StringBuilder(buildCommand("npm")).append(" install --no-audit --no-fund");
+        command.append(dependencyStoreProperties.isOffline() ? " --offline" : " --prefer-offline");
+        if (StrUtil.isNotBlank(dependencyStoreProperties.getNpmCacheDir())) {
+            command.append(" --cache ").append(dependencyStoreProperties.getNpmCacheDir());
+        }
+        return command.toString();
     }
 
     /**
      * 执行 npm run build 命令
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, BuildLog buildLog) {
         log.info("执行 npm run build...");
-        return executeCommand(projectDir, String.format("%s run build", buildCommand("npm")), 300); // 5分钟超时
+        long start = System.currentTimeMillis();
+        try {
+            return executeCommand(projectDir, String.format("%s run build", buildCommand("npm")), 300, buildLog); // 5分钟超时
+        } finally {
+            buildLog.recordPhase("build", System.currentTimeMillis() - start);
+        }
     }
 
 
     /**
-     * 执行命令
+     * 在资源限制下执行命令，输出和资源用量写入构建日志
      *
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间（秒）
+     * @param buildLog       构建日志
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, int timeoutSeconds, BuildLog buildLog) {
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
-            Process process = RuntimeUtil.exec(
-                    null,
-                    workingDir,
-                    command.split("\\s+") // 命令分割为数组
-            );
-            // 等待进程完成，设置超时
-            boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
-            if (!finished) {
-                log.error("命令执行超时（{}秒），强制终止进程", timeoutSeconds);
-                process.destroyForcibly();
+            buildLog.append("> " + command);
+            // 命令分割为数组
+            SandboxedCommand sandboxed = buildSandbox.wrap(command.split("\\s+"));
+            int exitCode;
+            try {
+                exitCode = ProcessRunner.run(workingDir, sandboxed, timeoutSeconds, buildLog::append);
+            } finally {
+                ResourceUsage usage = sandboxed.finish();
+                buildLog.recordUsage(usage);
+                log.info("命令资源用量: {}, {}", command, usage);
+            }
+            if (exitCode == ProcessRunner.TIMEOUT_EXIT_CODE) {
+                log.error("命令执行超时（{}秒），已终止命令启动的所有进程", timeoutSeconds);
+                buildLog.append("命令执行超时（" + timeoutSeconds + "秒），已终止");
                 return false;
             }
-            int exitCode = process.exitValue();
             if (exitCode == 0) {
                 log.info("命令执行成功: {}", command);
                 return true;
             } else {
-                log.error("命令执行失败，退出码: {}", exitCode);
+                log.error("命令执行失败，退出码: {}, 输出末尾:\n{}", exitCode, String.join("\n", buildLog.tail(20)));
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("执行命令被中断: {}", command);
+            return false;
         } catch (Exception e) {
             log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
+            buildLog.append("执行命令失败: " + e.getMessage());
             return false;
         }
     }
 
+    private static String normalize(String projectPath) {
+        return Paths.get(projectPath).toAbsolutePath().normalize().toString();
+    }
+
 }
@@ -0,0 +1,154 @@
+package com.wang.wangaicodemother.core.deploy;
+
+import com.wang.wangaicodemother.utils.ExecutableUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 部署时预压缩
+ * 为文本类文件生成 .br 和 .gz 变体，访问时按 Accept-Encoding 直接发送，不再逐请求压缩；
+ * gzip 在进程内生成，brotli 需要系统安装 brotli 命令，找不到时只生成 gzip
+ */
+@Slf4j
+public class Precompressor {
+
+    /**
+     * 预压缩变体，按优先级排列
+     *
+     * @param encoding Content-Encoding 取值
+     * @param suffix   变体文件后缀
+     */
+    public record Encoding(String encoding, String suffix) {
+    }
+
+    public static final Encoding BROTLI = new Encoding("br", ".br");
+
+    public static final Encoding GZIP = new Encoding("gzip", ".gz");
+
+    public static final List<Encoding> ENCODINGS = List.of(BROTLI, GZIP);
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "html", "htm", "js", "mjs", "css", "json", "map", "svg", "txt", "xml", "webmanifest", "wasm", "ico"
+    );
+
+    private static final long BROTLI_TIMEOUT_SECONDS = 30;
+
+    private final long minBytes;
+
+    /**
+     * brotli 命令路径，为空表示不可用
+     */
+    private final String brotli;
+
+    public Precompressor(long minBytes) {
+        this.minBytes = minBytes;
+        this.brotli = ExecutableUtil.find("brotli");
+        log.info("部署预压缩: gzip=true, brotli={}", brotli != null);
+    }
+
+    /**
+     * 文件类型是否值得压缩
+     */
+    public static boolean isCompressible(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 生成文件的压缩变体
+     *
+     * @param file             文件
+     * @param previousFile     上一版本中内容相同的文件，其变体直接硬链接复用，可为空
+     * @param providedBySource 变体后缀是否已由部署源提供（如构建插件生成），提供了则不再生成
+     */
+    public void writeVariants(Path file, Path previousFile, Predicate<String> providedBySource) throws IOException {
+        if (!isCompressible(file.getFileName().toString()) || Files.size(file) < minBytes) {
+            return;
+        }
+        for (Encoding encoding : ENCODINGS) {
+            if (providedBySource.test(encoding.suffix())) {
+                continue;
+            }
+            Path variant = file.resolveSibling(file.getFileName() + encoding.suffix());
+            if (previousFile != null && linkPreviousVariant(variant, previousFile.resolveSibling(previousFile.getFileName() + encoding.suffix()))) {
+                continue;
+            }
+            if (encoding == GZIP) {
+                gzip(file, variant);
+            } else if (brotli != null) {
+                brotli(file, variant);
+            }
+        }
+        // 压缩后没有变小的变体没有意义
+        for (Encoding encoding : ENCODINGS) {
+            Path variant = file.resolveSibling(file.getFileName() + encoding.suffix());
+            if (!providedBySource.test(encoding.suffix()) && Files.exists(variant) && Files.size(variant) >= Files.size(file)) {
+                Files.delete(variant);
+            }
+        }
+    }
+
+    private static boolean linkPreviousVariant(Path variant, Path previousVariant) {
+        if (!Files.isRegularFile(previousVariant)) {
+            return false;
+        }
+        try {
+            Files.createLink(variant, previousVariant);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            return false;
+        }
+    }
+
+    private static void gzip(Path file, Path variant) throws IOException {
+        // GZIPOutputStream 没有设置压缩级别的构造方法，通过子类设置
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(variant), 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(file, out);
+        }
+    }
+
+    private void brotli(Path file, Path variant) {
+        Path temp = variant.resolveSibling(variant.getFileName() + ".tmp");
+        try {
+            Process process = new ProcessBuilder(brotli, "-f", "-q", "11", "-o", temp.toString(), "--", file.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(BROTLI_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                log.warn("brotli 压缩超时，跳过: {}", file);
+                return;
+            }
+            if (process.exitValue() == 0) {
+                Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                log.warn("brotli 压缩失败，跳过: {}, 退出码: {}", file, process.exitValue());
+            }
+        } catch (IOException e) {
+            log.warn("brotli 压缩失败，跳过: {}, 错误: {}", file, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
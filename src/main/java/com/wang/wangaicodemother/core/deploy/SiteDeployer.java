@@ -0,0 +1,318 @@
+package com.wang.wangaicodemother.core.deploy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wang.wangaicodemother.config.DeployProperties;
+import com.wang.wangaicodemother.constants.AppConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 应用部署器
+ * 每次部署写入独立的版本目录 {deployKey}@{内容哈希}：与上一版本内容相同的文件以硬链接复用，只复制变化的文件；
+ * 写完后原子替换符号链接 {deployKey} 指向新版本，访问者不会看到复制了一半的站点。内容未变化的重复部署直接复用已有版本。
+ * 文本类文件在写入版本时预压缩（见 {@link Precompressor}），复用的文件连同压缩变体一起硬链接
+ */
+@Slf4j
+@Component
+public class SiteDeployer {
+
+    /**
+     * 版本目录中记录每个文件内容哈希的清单，下一次部署据此判断哪些文件可以复用
+     */
+    static final String MANIFEST_FILE = ".deploy-manifest.json";
+
+    /**
+     * 版本目录名中部署键与内容哈希的分隔符
+     */
+    private static final String VERSION_SEPARATOR = "@";
+
+    /**
+     * 版本哈希长度
+     */
+    private static final int VERSION_HASH_LENGTH = 12;
+
+    @Resource
+    private DeployProperties deployProperties;
+
+    private Path deployRoot;
+
+    /**
+     * 为空表示不预压缩
+     */
+    private Precompressor precompressor;
+
+    /**
+     * 同一应用的部署串行执行
+     */
+    private final Map<String, ReentrantLock> deployLocks = new ConcurrentHashMap<>();
+
+    public SiteDeployer() {
+    }
+
+    SiteDeployer(Path deployRoot, DeployProperties deployProperties) {
+        this.deployRoot = deployRoot;
+        this.deployProperties = deployProperties;
+        initPrecompressor();
+    }
+
+    @PostConstruct
+    public void init() {
+        deployRoot = Paths.get(AppConstant.CODE_DEPLOY_ROOT_DIR).toAbsolutePath().normalize();
+        initPrecompressor();
+    }
+
+    private void initPrecompressor() {
+        if (deployProperties.isPrecompress()) {
+            precompressor = new Precompressor(deployProperties.getPrecompressMinBytes());
+        }
+    }
+
+    public Path getDeployRoot() {
+        return deployRoot;
+    }
+
+    /**
+     * 部署目录内容
+     *
+     * @param source    要部署的目录
+     * @param deployKey 部署键，线上地址为 {deployKey}/
+     * @return 线上版本目录名
+     */
+    public String deploy(Path source, String deployKey) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, String> files = scan(source);
+        String version = deployKey + VERSION_SEPARATOR + versionHash(files);
+        ReentrantLock lock = deployLocks.computeIfAbsent(deployKey, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Files.createDirectories(deployRoot);
+            Path live = deployRoot.resolve(deployKey);
+            Path versionDir = deployRoot.resolve(version);
+            int[] stats = {0, 0};
+            if (Files.isRegularFile(versionDir.resolve(MANIFEST_FILE))) {
+                log.info("部署内容未变化，复用版本: {}", version);
+            } else {
+                stats = writeVersion(source, files, currentVersion(live), versionDir);
+            }
+            Files.setLastModifiedTime(versionDir, FileTime.fromMillis(System.currentTimeMillis()));
+            switchLive(live, version);
+            removeOldVersions(deployKey, version);
+            log.info("部署完成: {}, 复制文件: {}, 硬链接复用: {}, 耗时: {}ms",
+                    version, stats[0], stats[1], System.currentTimeMillis() - start);
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 线上链接当前指向的版本目录
+     *
+     * @return 版本目录，尚未部署或旧的非链接部署时返回 null
+     */
+    Path currentVersion(Path live) throws IOException {
+        if (!Files.isSymbolicLink(live)) {
+            return null;
+        }
+        return live.resolveSibling(Files.readSymbolicLink(live)).normalize();
+    }
+
+    /**
+     * 在临时目录中写出新版本，完成后原子重命名为版本目录
+     *
+     * @return {复制文件数, 硬链接文件数}
+     */
+    private int[] writeVersion(Path source, Map<String, String> files, Path previous, Path versionDir) throws IOException {
+        Map<String, String> previousFiles = previous == null ? Map.of() : readManifest(previous);
+        Path staging = deployRoot.resolve("." + versionDir.getFileName() + ".staging-" + IdUtil.fastSimpleUUID());
+        int[] stats = {0, 0};
+        try {
+            for (Map.Entry<String, String> entry : files.entrySet()) {
+                String relative = entry.getKey();
+                Path dest = staging.resolve(relative);
+                Files.createDirectories(dest.getParent());
+                Path reusedFrom = null;
+                if (entry.getValue().equals(previousFiles.get(relative)) && tryLink(dest, previous.resolve(relative))) {
+                    reusedFrom = previous.resolve(relative);
+                    stats[1]++;
+                } else {
+                    Files.copy(source.resolve(relative), dest, StandardCopyOption.COPY_ATTRIBUTES);
+                    stats[0]++;
+                }
+                if (precompressor != null) {
+                    precompressor.writeVariants(dest, reusedFrom, suffix -> files.containsKey(relative + suffix));
+                }
+            }
+            JSONObject manifest = new JSONObject();
+            manifest.set("files", files);
+            Files.writeString(staging.resolve(MANIFEST_FILE), manifest.toString());
+            try {
+                Files.move(staging, versionDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // 上次部署写到一半的残留目录，没有清单，替换掉
+                FileUtil.del(versionDir);
+                Files.move(staging, versionDir, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return stats;
+        } finally {
+            if (Files.exists(staging)) {
+                FileUtil.del(staging);
+            }
+        }
+    }
+
+    /**
+     * 从上一版本硬链接文件，文件不存在或不支持硬链接时返回 false，改为复制
+     */
+    private static boolean tryLink(Path dest, Path previousFile) {
+        try {
+            Files.createLink(dest, previousFile);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 将线上链接切换到新版本：先创建临时链接，再重命名覆盖，rename 对访问者是原子的
+     */
+    private void switchLive(Path live, String version) throws IOException {
+        if (Files.isDirectory(live) && !Files.isSymbolicLink(live)) {
+            // 旧的就地复制部署，移到一边作为普通版本目录，之后按保留策略清理
+            Path legacy = live.resolveSibling(live.getFileName() + VERSION_SEPARATOR + "legacy-" + System.currentTimeMillis());
+            Files.move(live, legacy, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Path link = live.resolveSibling("." + live.getFileName() + ".link-" + IdUtil.fastSimpleUUID());
+        try {
+            Files.createSymbolicLink(link, Paths.get(version));
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.warn("不支持符号链接，改为目录重命名切换: {}", e.getMessage());
+            renameSwap(live, live.resolveSibling(version));
+            return;
+        }
+        try {
+            Files.move(link, live, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(link);
+        }
+    }
+
+    /**
+     * 不支持符号链接时，用硬链接生成一份完整目录，再通过两次重命名替换线上目录
+     */
+    private void renameSwap(Path live, Path versionDir) throws IOException {
+        Path next = live.resolveSibling("." + live.getFileName() + ".next-" + IdUtil.fastSimpleUUID());
+        Path old = live.resolveSibling("." + live.getFileName() + ".old-" + IdUtil.fastSimpleUUID());
+        for (String relative : scan(versionDir).keySet()) {
+            Path dest = next.resolve(relative);
+            Files.createDirectories(dest.getParent());
+            if (!tryLink(dest, versionDir.resolve(relative))) {
+                Files.copy(versionDir.resolve(relative), dest);
+            }
+        }
+        if (Files.exists(live)) {
+            Files.move(live, old, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(next, live, StandardCopyOption.ATOMIC_MOVE);
+        FileUtil.del(old);
+    }
+
+    /**
+     * 只保留最近使用的若干个版本，线上版本始终保留
+     */
+    private void removeOldVersions(String deployKey, String liveVersion) throws IOException {
+        String prefix = deployKey + VERSION_SEPARATOR;
+        List<Path> versions = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(deployRoot)) {
+            entries.filter(path -> path.getFileName().toString().startsWith(prefix)).forEach(versions::add);
+        }
+        versions.sort(Comparator.comparing(SiteDeployer::lastModified).reversed());
+        int retain = Math.max(1, deployProperties.getRetainVersions());
+        for (int i = retain; i < versions.size(); i++) {
+            Path version = versions.get(i);
+            if (!version.getFileName().toString().equals(liveVersion)) {
+                log.info("删除旧部署版本: {}", version.getFileName());
+                FileUtil.del(version);
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static Map<String, String> readManifest(Path versionDir) {
+        Path manifestFile = versionDir.resolve(MANIFEST_FILE);
+        Map<String, String> files = new TreeMap<>();
+        try {
+            JSONUtil.parseObj(Files.readString(manifestFile)).getJSONObject("files")
+                    .forEach((path, hash) -> files.put(path, String.valueOf(hash)));
+        } catch (Exception e) {
+            log.warn("读取部署清单失败，全部文件重新复制: {}, 错误: {}", manifestFile, e.getMessage());
+        }
+        return files;
+    }
+
+    /**
+     * 版本哈希：所有文件的相对路径和内容哈希
+     */
+    static String versionHash(Map<String, String> files) {
+        StringBuilder all = new StringBuilder();
+        files.forEach((path, hash) -> all.append(path).append('\0').append(hash).append('\n'));
+        return DigestUtil.sha256Hex(all.toString()).substring(0, VERSION_HASH_LENGTH);
+    }
+
+    /**
+     * 扫描目录下所有文件的内容哈希
+     *
+     * @return 相对路径（以 / 分隔）到内容哈希，按路径排序
+     */
+    static Map<String, String> scan(Path dir) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relative = dir.relativize(file).toString().replace('\\', '/');
+                if (attrs.isRegularFile() && !relative.equals(MANIFEST_FILE)) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        files.put(relative, DigestUtil.sha256Hex(in));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+}
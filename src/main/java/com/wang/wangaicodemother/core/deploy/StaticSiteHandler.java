@@ -0,0 +1,318 @@
+package com.wang.wangaicodemother.core.deploy;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wang.wangaicodemother.config.DeployProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 部署站点静态文件处理
+ * 按 Accept-Encoding 发送部署时生成的 .br / .gz 变体；强 ETag（内容哈希）支持 304；
+ * Vite 构建产出的带哈希文件名资源设置一年的 immutable 缓存，其余文件每次协商；
+ * 小文件内容放入按总大小限制的内存缓存，大文件通过 sendfile 或 FileChannel.transferTo 零拷贝发送
+ */
+@Slf4j
+@Component
+public class StaticSiteHandler {
+
+    /**
+     * Vite 默认产物命名 assets/[name]-[hash].[ext]，内容变化时文件名随之变化
+     */
+    private static final Pattern HASHED_ASSET = Pattern.compile("(^|.*/)assets/[^/]+[-.][A-Za-z0-9_-]{8,}\\.[A-Za-z0-9]+$");
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Tomcat NIO 连接器的 sendfile 支持
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 缓存条目除内容外的估算开销
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    @Resource
+    private DeployProperties deployProperties;
+
+    @Resource
+    private SiteDeployer siteDeployer;
+
+    private Path deployRoot;
+
+    private long maxCachedFileBytes;
+
+    /**
+     * 文件真实路径到元数据（和小文件内容）；版本目录不可变，路径变化即内容变化，大小或修改时间变化时重新加载
+     */
+    private Cache<Path, CachedFile> files;
+
+    private record CachedFile(long size, long lastModified, String etag, byte[] content) {
+
+        int weight() {
+            return ENTRY_OVERHEAD_BYTES + (content == null ? 0 : content.length);
+        }
+    }
+
+    public StaticSiteHandler() {
+    }
+
+    StaticSiteHandler(Path deployRoot, DeployProperties deployProperties) {
+        this.deployProperties = deployProperties;
+        initCache(deployRoot);
+    }
+
+    @PostConstruct
+    public void init() {
+        initCache(siteDeployer.getDeployRoot());
+    }
+
+    private void initCache(Path root) {
+        try {
+            Files.createDirectories(root);
+            deployRoot = root.toRealPath();
+        } catch (IOException e) {
+            deployRoot = root.toAbsolutePath().normalize();
+        }
+        maxCachedFileBytes = deployProperties.getMemoryCacheFileMaxKb() * 1024;
+        files = Caffeine.newBuilder()
+                .maximumWeight(deployProperties.getMemoryCacheMb() * 1024 * 1024)
+                .weigher((Path path, CachedFile file) -> file.weight())
+                .build();
+    }
+
+    /**
+     * 发送部署目录下的文件
+     *
+     * @param encodedPath 相对于部署根目录的路径（URL 编码）
+     */
+    public void serve(String encodedPath, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = UriUtils.decode(encodedPath, StandardCharsets.UTF_8);
+        if (!isSafe(relative)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path path = deployRoot.resolve(relative).normalize();
+        if (Files.isDirectory(path)) {
+            if (!relative.isEmpty() && !relative.endsWith("/")) {
+                response.sendRedirect(request.getRequestURI() + "/");
+                return;
+            }
+            path = path.resolve("index.html");
+            relative = relative + "index.html";
+        }
+        Path real;
+        try {
+            real = path.toRealPath();
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // 符号链接只能指向部署目录内
+        if (!real.startsWith(deployRoot) || !Files.isRegularFile(real)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String fileName = real.getFileName().toString();
+        boolean compressible = Precompressor.isCompressible(fileName);
+        Path selected = real;
+        CachedFile file = null;
+        String contentEncoding = null;
+        if (compressible) {
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            for (Precompressor.Encoding encoding : Precompressor.ENCODINGS) {
+                if (!accepts(acceptEncoding, encoding.encoding())) {
+                    continue;
+                }
+                Path variant = real.resolveSibling(fileName + encoding.suffix());
+                file = load(variant);
+                if (file != null) {
+                    selected = variant;
+                    contentEncoding = encoding.encoding();
+                    break;
+                }
+            }
+        }
+        if (file == null) {
+            file = load(real);
+            if (file == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
+        response.setHeader(HttpHeaders.ETAG, file.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                HASHED_ASSET.matcher(relative).matches() ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        if (compressible) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), file.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(contentType(fileName));
+        if (contentEncoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        response.setContentLengthLong(file.size());
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+        if (file.content() != null) {
+            response.getOutputStream().write(file.content());
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由 Tomcat 在请求处理结束后用 sendfile 发送
+            request.setAttribute(SENDFILE_FILENAME, selected.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, file.size());
+        } else {
+            transfer(selected, file.size(), response);
+        }
+    }
+
+    /**
+     * 读取文件元数据，小文件同时缓存内容
+     *
+     * @return 文件不存在时返回 null
+     */
+    private CachedFile load(Path path) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        CachedFile cached = files.getIfPresent(path);
+        if (cached != null && cached.size() == attrs.size() && cached.lastModified() == lastModified) {
+            return cached;
+        }
+        CachedFile loaded;
+        if (attrs.size() <= maxCachedFileBytes) {
+            byte[] content = Files.readAllBytes(path);
+            loaded = new CachedFile(content.length, lastModified, etag(DigestUtil.sha256Hex(content)), content);
+        } else {
+            try (InputStream in = Files.newInputStream(path)) {
+                loaded = new CachedFile(attrs.size(), lastModified, etag(DigestUtil.sha256Hex(in)), null);
+            }
+        }
+        files.put(path, loaded);
+        return loaded;
+    }
+
+    private static void transfer(Path path, long size, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * 拒绝 ..、反斜杠和以 . 开头的路径段（部署清单、临时目录等）
+     */
+    static boolean isSafe(String relative) {
+        if (relative.indexOf('\\') >= 0 || relative.indexOf('\0') >= 0 || relative.startsWith("/")) {
+            return false;
+        }
+        for (String segment : relative.split("/")) {
+            if (segment.startsWith(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accept-Encoding 是否接受该编码（q=0 表示不接受）
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String etag(String sha256Hex) {
+        return "\"" + sha256Hex.substring(0, 32) + "\"";
+    }
+
+    private static String contentType(String fileName) {
+        MediaType mediaType = MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        if ("text".equals(mediaType.getType()) || fileName.endsWith(".js") || fileName.endsWith(".json")) {
+            return mediaType + ";charset=UTF-8";
+        }
+        return mediaType.toString();
+    }
+}
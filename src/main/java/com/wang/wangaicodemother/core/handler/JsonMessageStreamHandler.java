@@ -1,11 +1,11 @@
 package com.wang.wangaicodemother.core.handler;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.wang.wangaicodemother.ai.model.message.*;
 import com.wang.wangaicodemother.ai.tool.BaseTool;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
 import com.wang.wangaicodemother.constants.AppConstant;
 import com.wang.wangaicodemother.core.builder.VueProjectBuilder;
 import com.wang.wangaicodemother.enums.ChatHistoryMessageTypeEnum;
@@ -20,10 +20,8 @@ import reactor.core.publisher.Flux;
 import java.util.HashSet;
 import java.util.Set;
 
-import static com.wang.wangaicodemother.ai.model.message.StreamMessageTypeEnum.*;
-
 /**
- * JSON 消息流处理器
+ * 消息流处理器
  * 处理 VUE_PROJECT 类型的复杂流式响应，包含工具调用信息
  */
 @Slf4j
@@ -38,27 +36,28 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param coalesceWindow     SSE 帧合并窗口
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
+                               long appId, User loginUser,
+                               SseCoalesceProperties.Window coalesceWindow) {
         // 收集数据用于生成后端记忆格式
         StringBuilder chatHistoryStringBuilder = new StringBuilder();
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
-        return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
-                })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
+        // 处理每个消息并合并为 SSE 帧，工具调用消息立即发送
+        return StreamCoalescer.coalesce(originFlux,
+                        streamMessage -> handleStreamMessage(streamMessage, chatHistoryStringBuilder, seenToolIds),
+                        streamMessage -> !(streamMessage instanceof AiResponseMessage),
+                        coalesceWindow, "appId: " + appId)
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加 AI 消息到对话历史
                     String aiResponse = chatHistoryStringBuilder.toString();
@@ -67,6 +66,13 @@ public class JsonMessageStreamHandler {
                     String path = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
                     vueProjectBuilder.buildProjectAsync(path);
                 })
+                .doOnCancel(() -> {
+                    // 客户端断开，保存已生成的部分并标记为已取消
+                    String aiResponse = chatHistoryStringBuilder + AppConstant.GENERATION_CANCELLED_MARKER;
+                    chatHistoryService.addChatHistoryMessage(aiResponse, appId, loginUser.getId(),
+                            ChatHistoryMessageTypeEnum.AI.getValue());
+                    log.info("appId: {} 客户端断开，已取消生成", appId);
+                })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
@@ -77,49 +83,35 @@ public class JsonMessageStreamHandler {
     /**
      * 解析并收集 TokenStream 数据
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    private String handleStreamMessage(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+        return switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
-                return data;
+                yield data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
-                if (toolId != null && !seenToolIds.contains(toolId)) {
-                    // 第一次调用这个工具，记录 ID 并完整返回工具信息
-                    seenToolIds.add(toolId);
-                    // 根据工具名称获取工具调用信息
+                if (toolId != null && seenToolIds.add(toolId)) {
+                    // 第一次调用这个工具，根据工具名称获取工具调用信息并完整返回
                     BaseTool tool = toolManager.getTool(toolName);
-                    return tool.generateToolRequestResponse();
-                } else {
-                    // 不是第一次调用这个工具，直接返回空
-                    return "";
+                    yield tool.generateToolRequestResponse();
                 }
+                // 不是第一次调用这个工具，直接返回空
+                yield "";
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 String toolName = toolExecutedMessage.getName();
                 // 根据工具名称获取工具调用信息
                 BaseTool tool = toolManager.getTool(toolName);
-                String output = tool.generateToolExecutedResult(jsonObject);
-                String result=String.format("%s",output);
+                String result = tool.generateToolExecutedResult(jsonObject);
                 chatHistoryStringBuilder.append(result);
-                return result;
-            }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
+                yield result;
             }
-        }
+        };
     }
 }
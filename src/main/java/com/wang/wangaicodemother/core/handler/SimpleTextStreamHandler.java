@@ -1,5 +1,9 @@
 package com.wang.wangaicodemother.core.handler;
 
+import com.wang.wangaicodemother.ai.model.message.AiResponseMessage;
+import com.wang.wangaicodemother.ai.model.message.StreamMessage;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
+import com.wang.wangaicodemother.constants.AppConstant;
 import com.wang.wangaicodemother.enums.ChatHistoryMessageTypeEnum;
 import com.wang.wangaicodemother.model.entity.User;
 import com.wang.wangaicodemother.service.ChatHistoryService;
@@ -21,24 +25,36 @@ public class SimpleTextStreamHandler {
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param coalesceWindow     SSE 帧合并窗口
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
+                               long appId, User loginUser,
+                               SseCoalesceProperties.Window coalesceWindow) {
         StringBuilder aiResponseBuilder = new StringBuilder();
-        return originFlux
-                .map(chunk -> {
-                    // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
-                })
+        return StreamCoalescer.coalesce(originFlux.ofType(AiResponseMessage.class),
+                        aiResponseMessage -> {
+                            // 收集AI响应内容
+                            String chunk = aiResponseMessage.getData();
+                            aiResponseBuilder.append(chunk);
+                            return chunk;
+                        },
+                        aiResponseMessage -> false,
+                        coalesceWindow, "appId: " + appId)
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
                     String aiResponse = aiResponseBuilder.toString();
                     chatHistoryService.addChatHistoryMessage(aiResponse, appId, loginUser.getId(),
                             ChatHistoryMessageTypeEnum.AI.getValue());
                 })
+                .doOnCancel(() -> {
+                    // 客户端断开，保存已生成的部分并标记为已取消
+                    String aiResponse = aiResponseBuilder + AppConstant.GENERATION_CANCELLED_MARKER;
+                    chatHistoryService.addChatHistoryMessage(aiResponse, appId, loginUser.getId(),
+                            ChatHistoryMessageTypeEnum.AI.getValue());
+                    log.info("appId: {} 客户端断开，已取消生成", appId);
+                })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
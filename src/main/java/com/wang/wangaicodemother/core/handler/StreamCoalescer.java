@@ -0,0 +1,108 @@
+package com.wang.wangaicodemother.core.handler;
+
+import cn.hutool.core.util.StrUtil;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 流式片段合并器
+ * 将逐 token 的片段按时间窗口或字符数合并为一帧，减少 SSE 帧数和刷写次数；
+ * 刷写定时器只在缓冲区有数据时挂起（一次性），流空闲（如等待模型许可、工具执行）时不再周期性唤醒
+ */
+@Slf4j
+public class StreamCoalescer {
+
+    private StreamCoalescer() {
+    }
+
+    /**
+     * 合并流式片段
+     *
+     * @param source           原始流
+     * @param textMapper       元素转换为输出文本，空文本会被忽略
+     * @param flushImmediately 满足条件的元素输出后立即发送（如工具调用）
+     * @param window           合并窗口
+     * @param name             日志标识
+     * @return 合并后的流
+     */
+    public static <T> Flux<String> coalesce(Flux<T> source,
+                                            Function<T, String> textMapper,
+                                            Predicate<T> flushImmediately,
+                                            SseCoalesceProperties.Window window,
+                                            String name) {
+        if (window == null || !window.isEnabled()) {
+            return source.map(textMapper).filter(StrUtil::isNotEmpty);
+        }
+        long flushIntervalMs = window.getFlushIntervalMs();
+        int flushSize = window.getFlushSize();
+        return Flux.create(sink -> {
+            StringBuilder buffer = new StringBuilder();
+            int[] counter = new int[2];
+            // 当前挂起的一次性定时器及其序号（在 buffer 上同步），刷写后作废，过期的定时器触发时直接返回
+            Disposable[] timer = new Disposable[1];
+            long[] timerSeq = new long[1];
+            Runnable flush = () -> {
+                synchronized (buffer) {
+                    timer[0] = null;
+                    if (buffer.isEmpty()) {
+                        return;
+                    }
+                    String frame = buffer.toString();
+                    buffer.setLength(0);
+                    counter[1]++;
+                    sink.next(frame);
+                }
+            };
+            Runnable cancelTimer = () -> {
+                synchronized (buffer) {
+                    if (timer[0] != null) {
+                        timer[0].dispose();
+                        timer[0] = null;
+                    }
+                }
+            };
+            Disposable upstream = source.subscribe(item -> {
+                String text = textMapper.apply(item);
+                boolean flushNow = flushImmediately.test(item);
+                synchronized (buffer) {
+                    if (StrUtil.isNotEmpty(text)) {
+                        buffer.append(text);
+                        counter[0]++;
+                    }
+                    if (flushNow || buffer.length() >= flushSize) {
+                        flush.run();
+                    } else if (!buffer.isEmpty() && timer[0] == null) {
+                        long seq = ++timerSeq[0];
+                        timer[0] = Schedulers.parallel().schedule(() -> {
+                            synchronized (buffer) {
+                                if (timer[0] != null && timerSeq[0] == seq) {
+                                    flush.run();
+                                }
+                            }
+                        }, flushIntervalMs, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }, error -> {
+                cancelTimer.run();
+                flush.run();
+                sink.error(error);
+            }, () -> {
+                cancelTimer.run();
+                flush.run();
+                log.info("{} 流式输出完成，{} 个片段合并为 {} 帧", name, counter[0], counter[1]);
+                sink.complete();
+            });
+            sink.onDispose(() -> {
+                cancelTimer.run();
+                upstream.dispose();
+            });
+        });
+    }
+}
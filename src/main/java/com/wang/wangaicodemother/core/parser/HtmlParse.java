@@ -29,15 +29,17 @@ public class HtmlParse implements Parse<HtmlCodeResult>{
 
 
     /**
-     * 提取HTML代码内容
+     * 提取HTML代码内容，取第一个非空代码块（与 {@link StreamingCodeParser} 一致）
      *
      * @param content 原始内容
      * @return HTML代码
      */
     private static String extractHtmlCode(String content) {
         Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
+        while (matcher.find()) {
+            if (!matcher.group(1).trim().isEmpty()) {
+                return matcher.group(1);
+            }
         }
         return null;
     }
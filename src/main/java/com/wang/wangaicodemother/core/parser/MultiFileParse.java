@@ -44,7 +44,7 @@ public class MultiFileParse implements Parse<MultiFileCodeResult>{
 
 
     /**
-     * 根据正则模式提取代码
+     * 根据正则模式提取代码，取第一个非空代码块（与 {@link StreamingCodeParser} 一致）
      *
      * @param content 原始内容
      * @param pattern 正则模式
@@ -52,8 +52,10 @@ public class MultiFileParse implements Parse<MultiFileCodeResult>{
      */
     private static String extractCodeByPattern(String content, Pattern pattern) {
         Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
+        while (matcher.find()) {
+            if (!matcher.group(1).trim().isEmpty()) {
+                return matcher.group(1);
+            }
         }
         return null;
     }
@@ -0,0 +1,213 @@
+package com.wang.wangaicodemother.core.parser;
+
+import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 流式代码解析器（HTML、MULTI_FILE）
+ * 逐块消费模型输出，用状态机识别 ```html / ```css / ```js 代码块的开闭，
+ * 每闭合一个代码块立即回调，不再缓存完整响应，也不再对完整响应做正则扫描
+ * <p>
+ * 与 {@link HtmlParse}、{@link MultiFileParse} 保持一致的语义：
+ * 每种语言只取第一个非空代码块；HTML 模式下没有找到代码块时，整个响应作为 HTML
+ * <p>
+ * 非线程安全，一次生成对应一个实例
+ */
+public class StreamingCodeParser {
+
+    /**
+     * 代码块语言标识的最大长度，超过则认为不是代码块
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    private static final String FENCE_HTML = "html";
+    private static final String FENCE_CSS = "css";
+    private static final String FENCE_JS = "js";
+
+    private enum State {
+        /**
+         * 代码块之外
+         */
+        TEXT,
+        /**
+         * 读取 ``` 之后的语言标识
+         */
+        INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    /**
+     * 需要解析的语言
+     */
+    private final Set<String> languages;
+
+    /**
+     * 未找到代码块时的兜底语言，为空则不兜底
+     */
+    private final String fallbackLanguage;
+
+    /**
+     * 代码块闭合回调（语言，代码）
+     */
+    private final BiConsumer<String, String> blockConsumer;
+
+    /**
+     * 已经输出过的语言
+     */
+    private final Set<String> emittedLanguages = new HashSet<>();
+
+    private final StringBuilder info = new StringBuilder();
+
+    private final StringBuilder code = new StringBuilder();
+
+    /**
+     * 兜底用的原始响应，只在还没有输出兜底语言的代码块时保留
+     */
+    private StringBuilder raw;
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号的数量
+     */
+    private int tickRun;
+
+    /**
+     * 当前代码块的语言，为空表示不需要收集的代码块
+     */
+    private String currentLanguage;
+
+    public StreamingCodeParser(CodeGenTypeEnum codeGenTypeEnum, BiConsumer<String, String> blockConsumer) {
+        switch (codeGenTypeEnum) {
+            case HTML -> {
+                this.languages = Set.of(FENCE_HTML);
+                this.fallbackLanguage = FENCE_HTML;
+                this.raw = new StringBuilder();
+            }
+            case MULTI_FILE -> {
+                this.languages = Set.of(FENCE_HTML, FENCE_CSS, FENCE_JS);
+                this.fallbackLanguage = null;
+            }
+            default -> throw new RuntimeException("不支持的生成类型");
+        }
+        this.blockConsumer = blockConsumer;
+    }
+
+    /**
+     * 追加一段模型输出
+     *
+     * @param chunk 输出片段
+     */
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (raw != null) {
+            raw.append(chunk);
+        }
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> onText(c);
+                case INFO -> onInfo(c);
+                case CODE -> onCode(c);
+            }
+        }
+    }
+
+    /**
+     * 输出结束，未闭合的代码块直接丢弃；需要兜底时输出整个响应
+     */
+    public void finish() {
+        if (raw != null && !emittedLanguages.contains(fallbackLanguage)) {
+            String content = raw.toString().trim();
+            raw = null;
+            blockConsumer.accept(fallbackLanguage, content);
+        }
+        state = State.TEXT;
+        code.setLength(0);
+    }
+
+    private void onText(char c) {
+        if (c == '`') {
+            if (++tickRun == 3) {
+                tickRun = 0;
+                info.setLength(0);
+                state = State.INFO;
+            }
+            return;
+        }
+        tickRun = 0;
+    }
+
+    private void onInfo(char c) {
+        if (c == '\n') {
+            currentLanguage = resolveLanguage(info.toString().trim());
+            code.setLength(0);
+            tickRun = 0;
+            state = State.CODE;
+            return;
+        }
+        info.append(c);
+        if (c == '`' || info.length() > MAX_INFO_LENGTH) {
+            // 不是代码块的开头
+            state = State.TEXT;
+        }
+    }
+
+    private void onCode(char c) {
+        if (c == '`') {
+            if (++tickRun == 3) {
+                tickRun = 0;
+                closeBlock();
+            }
+            return;
+        }
+        if (currentLanguage != null) {
+            for (; tickRun > 0; tickRun--) {
+                code.append('`');
+            }
+            code.append(c);
+        }
+        tickRun = 0;
+    }
+
+    private void closeBlock() {
+        state = State.TEXT;
+        String language = currentLanguage;
+        currentLanguage = null;
+        if (language == null) {
+            return;
+        }
+        String content = code.toString().trim();
+        code.setLength(0);
+        if (content.isEmpty() || !emittedLanguages.add(language)) {
+            return;
+        }
+        if (language.equals(fallbackLanguage)) {
+            // 已经拿到代码块，不再需要保留原始响应
+            raw = null;
+        }
+        blockConsumer.accept(language, content);
+    }
+
+    /**
+     * 语言标识转换为需要解析的语言，不需要解析则返回 null
+     */
+    private String resolveLanguage(String fenceInfo) {
+        String language = fenceInfo.toLowerCase();
+        if ("javascript".equals(language)) {
+            language = FENCE_JS;
+        }
+        if (!languages.contains(language) || emittedLanguages.contains(language)) {
+            return null;
+        }
+        return language;
+    }
+}
@@ -0,0 +1,71 @@
+package com.wang.wangaicodemother.core.run;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 生成任务事件
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationEvent {
+
+    /**
+     * 任务开始，数据为任务 ID
+     */
+    public static final String RUN = "run";
+
+    /**
+     * 排队位置，数据为前面还有几个任务，0 表示开始生成
+     */
+    public static final String QUEUE = "queue";
+
+    /**
+     * 模型调用排队状态，数据为 {"position":前面的请求数,"etaMs":预计等待毫秒}
+     */
+    public static final String ADMISSION = "admission";
+
+    /**
+     * 回放的事件不连续，之前的事件已超出日志上限被丢弃，数据为 {"from":第一个丢失的事件 ID,"to":最后一个丢失的事件 ID}
+     */
+    public static final String GAP = "gap";
+
+    /**
+     * 生成完成
+     */
+    public static final String DONE = "done";
+
+    /**
+     * 生成失败，数据为错误信息
+     */
+    public static final String ERROR = "error";
+
+    /**
+     * 生成被取消
+     */
+    public static final String CANCELLED = "cancelled";
+
+    /**
+     * 事件 ID，同一任务内单调递增，从 1 开始
+     */
+    private long id;
+
+    /**
+     * 事件类型，为空表示普通的内容片段
+     */
+    private String event;
+
+    /**
+     * 事件数据
+     */
+    private String data;
+
+    /**
+     * 是否是结束事件
+     */
+    public boolean isTerminal() {
+        return DONE.equals(event) || ERROR.equals(event) || CANCELLED.equals(event);
+    }
+}
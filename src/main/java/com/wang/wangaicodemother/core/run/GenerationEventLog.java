@@ -0,0 +1,63 @@
+package com.wang.wangaicodemother.core.run;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 生成任务事件日志，每个任务保留有界的事件序列用于断线续传
+ */
+public interface GenerationEventLog {
+
+    /**
+     * 追加事件，事件 ID 由调用方保证递增
+     *
+     * @param runId 任务 ID
+     * @param event 事件
+     */
+    void append(String runId, GenerationEvent event);
+
+    /**
+     * 按顺序追加一批事件，默认逐个追加
+     *
+     * @param runId  任务 ID
+     * @param events 事件，ID 递增
+     */
+    default void appendAll(String runId, List<GenerationEvent> events) {
+        for (GenerationEvent event : events) {
+            append(runId, event);
+        }
+    }
+
+    /**
+     * 读取指定事件之后的所有事件
+     *
+     * @param runId       任务 ID
+     * @param lastEventId 客户端收到的最后一个事件 ID，0 表示从头读取
+     * @return 按 ID 升序排列的事件
+     */
+    List<GenerationEvent> readAfter(String runId, long lastEventId);
+
+    /**
+     * 任务的事件日志是否存在
+     *
+     * @param runId 任务 ID
+     * @return 是否存在
+     */
+    boolean exists(String runId);
+
+    /**
+     * 任务结束后设置日志的保留时间
+     *
+     * @param runId     任务 ID
+     * @param retention 保留时间
+     */
+    void expire(String runId, Duration retention);
+
+    /**
+     * 任务进行中定期调用，延长日志的过期时间；运行任务的实例宕机后日志随之过期，其他实例的续传据此结束
+     *
+     * @param runId 任务 ID
+     */
+    default void keepAlive(String runId) {
+    }
+}
@@ -0,0 +1,357 @@
+package com.wang.wangaicodemother.core.run;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 生成任务
+ * 任务自己订阅生成流，与 SSE 连接解耦；每个事件分配递增 ID 并写入事件日志，
+ * 连接断开后可以从任意事件 ID 重新连接，先回放错过的事件再接上实时事件。
+ * 事件日志由单个写入线程在锁外批量写入，生成流不会因为写日志（如 Redis XADD）而阻塞，也不会挡住连接和取消；
+ * 尚未写入日志的事件保留在内存中，回放时与日志中的事件拼接。要回放的事件已被日志裁掉时先发送 gap 事件
+ */
+@Slf4j
+public class GenerationRun {
+
+    @Getter
+    private final String runId;
+
+    @Getter
+    private final Long appId;
+
+    /**
+     * 提交键（用户 + 提示词摘要），用于识别重复提交
+     */
+    @Getter
+    private final String submitKey;
+
+    /**
+     * 提交时间，超过重复提交窗口后相同的提交作为新的轮次
+     */
+    @Getter
+    private final long submittedAt = System.currentTimeMillis();
+
+    /**
+     * 单次批量写入事件日志的最大事件数
+     */
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    /**
+     * 任务进行中续期事件日志的间隔
+     */
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofMinutes(1);
+
+    private final GenerationEventLog eventLog;
+
+    private final Duration detachTimeout;
+
+    /**
+     * 任务结束后事件日志的保留时间
+     */
+    private final Duration retention;
+
+    private final Consumer<GenerationRun> onFinish;
+
+    /**
+     * 当前连接的订阅者，每个订阅者一个缓冲队列
+     */
+    private final List<Sinks.Many<GenerationEvent>> listeners = new ArrayList<>();
+
+    private long sequence;
+
+    /**
+     * 尚未写入事件日志的事件，按 ID 升序
+     */
+    private final List<GenerationEvent> unpersisted = new ArrayList<>();
+
+    /**
+     * 已写入事件日志的最大事件 ID
+     */
+    private long persistedId;
+
+    /**
+     * 是否有写入线程在运行
+     */
+    private boolean writing;
+
+    private Disposable keepAlive;
+
+    /**
+     * 最近一次没有任何连接的时间
+     */
+    private long idleSince = System.currentTimeMillis();
+
+    @Getter
+    private volatile boolean finished;
+
+    private Disposable upstream;
+
+    GenerationRun(String runId, Long appId, String submitKey, GenerationEventLog eventLog, Duration detachTimeout,
+                  Duration retention, Consumer<GenerationRun> onFinish) {
+        this.runId = runId;
+        this.appId = appId;
+        this.submitKey = submitKey;
+        this.eventLog = eventLog;
+        this.detachTimeout = detachTimeout;
+        this.retention = retention;
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * 创建任务，此时客户端已经可以连接
+     */
+    void open() {
+        // 排队或等待模型许可时可能长时间没有事件，定期续期，其他实例续传时据此判断任务仍在进行
+        keepAlive = Schedulers.boundedElastic().schedulePeriodically(this::keepAlive,
+                KEEP_ALIVE_INTERVAL.toMillis(), KEEP_ALIVE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        append(GenerationEvent.RUN, runId);
+        // 创建后还没有人连接时，同样按断线处理
+        scheduleDetachCheck();
+    }
+
+    /**
+     * 更新排队位置
+     *
+     * @param position 前面还有几个任务，0 表示开始生成
+     */
+    void updateQueuePosition(int position) {
+        append(GenerationEvent.QUEUE, String.valueOf(position));
+    }
+
+    /**
+     * 更新模型调用的排队状态
+     *
+     * @param position 前面还有几个请求，0 表示开始调用模型
+     * @param etaMs    预计等待时间（毫秒）
+     */
+    public void reportAdmission(int position, long etaMs) {
+        append(GenerationEvent.ADMISSION, JSONUtil.toJsonStr(Map.of("position", position, "etaMs", etaMs)));
+    }
+
+    /**
+     * 开始订阅生成流
+     */
+    void start(Flux<String> contentFlux) {
+        if (finished) {
+            return;
+        }
+        Disposable disposable = contentFlux.subscribe(
+                chunk -> append(null, chunk),
+                error -> {
+                    log.error("生成任务 {} 失败：{}", runId, error.getMessage());
+                    append(GenerationEvent.ERROR, error.getMessage());
+                },
+                () -> append(GenerationEvent.DONE, ""));
+        synchronized (this) {
+            if (!finished) {
+                upstream = disposable;
+                return;
+            }
+        }
+        // 开始之前已被取消
+        disposable.dispose();
+    }
+
+    /**
+     * 连接到任务
+     *
+     * @param lastEventId 客户端收到的最后一个事件 ID，0 表示从头开始
+     * @return 错过的事件 + 实时事件，任务结束时完成；错过的事件已被裁掉时先发送 gap 事件
+     */
+    public Flux<GenerationEvent> attach(long lastEventId) {
+        return Flux.defer(() -> {
+            Sinks.Many<GenerationEvent> listener = Sinks.many().unicast().onBackpressureBuffer();
+            List<GenerationEvent> pending;
+            long persisted;
+            long latest;
+            boolean done;
+            synchronized (this) {
+                // 在同一把锁内取得未写入日志的事件并注册，保证回放和实时事件之间不丢事件、不重复
+                pending = new ArrayList<>(unpersisted);
+                persisted = persistedId;
+                latest = sequence;
+                done = finished;
+                if (!done) {
+                    listeners.add(listener);
+                }
+            }
+            List<GenerationEvent> missed = new ArrayList<>();
+            try {
+                if (lastEventId < persisted) {
+                    // 日志读取在锁外进行，只取快照时已写入的部分，之后写入的在 pending 中
+                    for (GenerationEvent event : eventLog.readAfter(runId, lastEventId)) {
+                        if (event.getId() <= persisted) {
+                            missed.add(event);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                detach(listener);
+                throw e;
+            }
+            for (GenerationEvent event : pending) {
+                if (event.getId() > lastEventId) {
+                    missed.add(event);
+                }
+            }
+            long firstAvailable = missed.isEmpty() ? latest + 1 : missed.get(0).getId();
+            Flux<GenerationEvent> replay = Flux.fromIterable(withGap(missed, lastEventId, firstAvailable));
+            if (done) {
+                return replay;
+            }
+            return replay.concatWith(listener.asFlux())
+                    .doFinally(signalType -> detach(listener));
+        });
+    }
+
+    /**
+     * 回放的第一个事件不是客户端期望的下一个事件时（事件日志超出上限被裁掉），在前面加一个 gap 事件，
+     * 客户端据此知道内容不完整，需要在结束后重新加载对话记录
+     *
+     * @param events         回放的事件
+     * @param lastEventId    客户端收到的最后一个事件 ID
+     * @param firstAvailable 第一个仍然可以发送的事件 ID
+     * @return 需要时加上 gap 事件后的事件
+     */
+    static List<GenerationEvent> withGap(List<GenerationEvent> events, long lastEventId, long firstAvailable) {
+        if (firstAvailable <= lastEventId + 1) {
+            return events;
+        }
+        List<GenerationEvent> result = new ArrayList<>(events.size() + 1);
+        result.add(new GenerationEvent(firstAvailable - 1, GenerationEvent.GAP,
+                JSONUtil.toJsonStr(Map.of("from", lastEventId + 1, "to", firstAvailable - 1))));
+        result.addAll(events);
+        return result;
+    }
+
+    /**
+     * 取消生成
+     */
+    public void cancel() {
+        Disposable disposable;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            disposable = upstream;
+        }
+        if (disposable != null) {
+            // 取消订阅会一直传递到模型请求
+            disposable.dispose();
+        }
+        append(GenerationEvent.CANCELLED, "");
+    }
+
+    private void append(String type, String data) {
+        List<Sinks.Many<GenerationEvent>> completed = null;
+        boolean startWriter;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            GenerationEvent event = new GenerationEvent(++sequence, type, data);
+            unpersisted.add(event);
+            for (Sinks.Many<GenerationEvent> listener : listeners) {
+                listener.tryEmitNext(event);
+            }
+            if (event.isTerminal()) {
+                finished = true;
+                completed = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            startWriter = !writing;
+            writing = true;
+        }
+        if (startWriter) {
+            Schedulers.boundedElastic().schedule(this::writeEvents);
+        }
+        if (completed != null) {
+            completed.forEach(Sinks.Many::tryEmitComplete);
+            log.info("生成任务 {} 结束：{}，共 {} 个事件", runId, type, sequence);
+            onFinish.accept(this);
+        }
+    }
+
+    /**
+     * 单个写入线程：把未写入的事件分批写入日志，写完后退出，下次追加事件时再启动
+     * 写入失败的事件直接丢弃，续传时表现为 gap；结束事件写入后设置日志的保留时间
+     */
+    private void writeEvents() {
+        while (true) {
+            List<GenerationEvent> batch;
+            synchronized (this) {
+                if (unpersisted.isEmpty()) {
+                    writing = false;
+                    return;
+                }
+                batch = new ArrayList<>(unpersisted.subList(0, Math.min(unpersisted.size(), WRITE_BATCH_SIZE)));
+            }
+            try {
+                eventLog.appendAll(runId, batch);
+            } catch (Exception e) {
+                log.warn("生成任务 {} 写入事件日志失败，丢弃 {} 个事件：{}", runId, batch.size(), e.getMessage());
+            }
+            GenerationEvent last = batch.get(batch.size() - 1);
+            synchronized (this) {
+                unpersisted.subList(0, batch.size()).clear();
+                persistedId = last.getId();
+            }
+            if (last.isTerminal()) {
+                if (keepAlive != null) {
+                    keepAlive.dispose();
+                }
+                try {
+                    eventLog.expire(runId, retention);
+                } catch (Exception e) {
+                    log.warn("生成任务 {} 设置事件日志保留时间失败：{}", runId, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void keepAlive() {
+        try {
+            eventLog.keepAlive(runId);
+        } catch (Exception e) {
+            log.warn("生成任务 {} 续期事件日志失败：{}", runId, e.getMessage());
+        }
+    }
+
+    private void detach(Sinks.Many<GenerationEvent> listener) {
+        synchronized (this) {
+            listeners.remove(listener);
+            if (finished || !listeners.isEmpty()) {
+                return;
+            }
+            idleSince = System.currentTimeMillis();
+        }
+        log.info("生成任务 {} 的连接已全部断开，{} 秒内未重连将取消", runId, detachTimeout.toSeconds());
+        scheduleDetachCheck();
+    }
+
+    private void scheduleDetachCheck() {
+        Schedulers.parallel().schedule(() -> {
+            synchronized (this) {
+                if (finished || !listeners.isEmpty()
+                        || System.currentTimeMillis() - idleSince < detachTimeout.toMillis()) {
+                    // 已经重连过，由最近一次断开时安排的检查处理
+                    return;
+                }
+            }
+            log.info("生成任务 {} 长时间无连接，取消生成", runId);
+            cancel();
+        }, detachTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,316 @@
+package com.wang.wangaicodemother.core.run;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.wang.wangaicodemother.config.GenerationRunProperties;
+import com.wang.wangaicodemother.exception.BusinessException;
+import com.wang.wangaicodemother.exception.ErrorCode;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 生成任务管理器
+ * 负责创建任务、同一应用的轮次调度、按 Last-Event-ID 续传以及任务结束后的清理
+ */
+@Slf4j
+@Component
+public class GenerationRunManager {
+
+    /**
+     * 跨实例续传时轮询事件日志的间隔
+     */
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(200);
+
+    /**
+     * 跨实例续传时连续多少次没有新事件后检查一次事件日志是否还存在
+     */
+    private static final int LIVENESS_CHECK_POLLS = 25;
+
+    /**
+     * 本机正在运行或刚结束的任务
+     */
+    private final Map<String, GenerationRun> runs = new ConcurrentHashMap<>();
+
+    /**
+     * 每个应用的邮箱
+     */
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    @Resource
+    private GenerationEventLog generationEventLog;
+
+    @Resource
+    private GenerationRunProperties generationRunProperties;
+
+    /**
+     * 提交生成任务
+     * 每个应用一个邮箱，轮次严格按提交顺序逐个执行：同一用户在重复提交窗口内提交相同的提示词时连接到已有任务，
+     * 其余提交按配置的策略排队、拒绝或取消之前的任务
+     *
+     * @param appId           应用 ID
+     * @param userId          提交的用户 ID
+     * @param prompt          提示词
+     * @param contentSupplier 生成流，轮到该任务时才调用，参数为该任务
+     * @return 生成任务，可能是已有任务
+     */
+    public GenerationRun submit(Long appId, Long userId, String prompt, Function<GenerationRun, Flux<String>> contentSupplier) {
+        String submitKey = userId + ":" + DigestUtil.md5Hex(prompt);
+        long duplicateWindowMillis = generationRunProperties.getDuplicateWindowSeconds() * 1000;
+        GenerationRunProperties.ConcurrentPromptPolicy policy = generationRunProperties.getConcurrentPolicy();
+        GenerationRun[] result = new GenerationRun[1];
+        boolean[] created = new boolean[1];
+        List<GenerationRun> superseded = new ArrayList<>();
+        mailboxes.compute(appId, (key, current) -> {
+            Mailbox mailbox = current == null ? new Mailbox() : current;
+            synchronized (mailbox) {
+                GenerationRun existing = mailbox.find(submitKey, System.currentTimeMillis() - duplicateWindowMillis);
+                if (existing != null) {
+                    // 重复提交
+                    result[0] = existing;
+                    return mailbox;
+                }
+                if (mailbox.running != null || !mailbox.pending.isEmpty()) {
+                    if (policy == GenerationRunProperties.ConcurrentPromptPolicy.REJECT) {
+                        throw new BusinessException(ErrorCode.OPERATION_ERROR, "应用正在生成中，请稍后再试");
+                    }
+                    if (policy == GenerationRunProperties.ConcurrentPromptPolicy.SUPERSEDE) {
+                        mailbox.pending.forEach(turn -> superseded.add(turn.run()));
+                        if (mailbox.running != null) {
+                            superseded.add(mailbox.running.run());
+                        }
+                    }
+                }
+                GenerationRun run = newRun(appId, submitKey);
+                mailbox.pending.addLast(new Turn(run, contentSupplier));
+                result[0] = run;
+                created[0] = true;
+                return mailbox;
+            }
+        });
+        GenerationRun run = result[0];
+        if (!created[0]) {
+            log.info("应用 {} 重复提交，连接到生成任务 {}", appId, run.getRunId());
+            return run;
+        }
+        runs.put(run.getRunId(), run);
+        run.open();
+        // 先取消排在前面的任务，再尝试调度，被取消的任务结束时会继续调度
+        for (GenerationRun previous : superseded) {
+            log.info("应用 {} 收到新的提示词，取消生成任务 {}", appId, previous.getRunId());
+            previous.cancel();
+        }
+        dispatch(appId, null);
+        return run;
+    }
+
+    /**
+     * 取消应用正在运行的任务
+     *
+     * @param appId       应用 ID
+     * @param withPending 是否同时取消排队中的任务
+     * @return 是否取消了任务
+     */
+    public boolean cancel(Long appId, boolean withPending) {
+        List<GenerationRun> toCancel = new ArrayList<>();
+        Mailbox mailbox = mailboxes.get(appId);
+        if (mailbox != null) {
+            synchronized (mailbox) {
+                if (withPending) {
+                    mailbox.pending.forEach(turn -> toCancel.add(turn.run()));
+                }
+                if (mailbox.running != null) {
+                    toCancel.add(mailbox.running.run());
+                }
+            }
+        }
+        toCancel.forEach(GenerationRun::cancel);
+        return !toCancel.isEmpty();
+    }
+
+    /**
+     * 获取应用正在运行的任务
+     *
+     * @param appId 应用 ID
+     * @return 正在运行的任务，没有则返回 null
+     */
+    public GenerationRun getActiveRun(Long appId) {
+        Mailbox mailbox = mailboxes.get(appId);
+        if (mailbox == null) {
+            return null;
+        }
+        synchronized (mailbox) {
+            return mailbox.running == null ? null : mailbox.running.run();
+        }
+    }
+
+    /**
+     * 邮箱调度：移除已结束的任务，空闲时取出下一个任务开始执行，并通知排队中的任务新的位置
+     *
+     * @param appId    应用 ID
+     * @param finished 刚结束的任务，可为空
+     */
+    private void dispatch(Long appId, GenerationRun finished) {
+        Turn[] next = new Turn[1];
+        List<GenerationRun> waiting = new ArrayList<>();
+        mailboxes.computeIfPresent(appId, (key, mailbox) -> {
+            synchronized (mailbox) {
+                if (mailbox.running != null && (mailbox.running.run() == finished || mailbox.running.run().isFinished())) {
+                    mailbox.running = null;
+                }
+                mailbox.pending.removeIf(turn -> turn.run().isFinished());
+                if (mailbox.running == null && !mailbox.pending.isEmpty()) {
+                    mailbox.running = mailbox.pending.pollFirst();
+                    next[0] = mailbox.running;
+                }
+                mailbox.pending.forEach(turn -> waiting.add(turn.run()));
+                return mailbox.running == null ? null : mailbox;
+            }
+        });
+        if (next[0] != null) {
+            next[0].run().updateQueuePosition(0);
+            GenerationRun run = next[0].run();
+            run.start(Flux.defer(() -> next[0].contentSupplier().apply(run)));
+        }
+        for (int i = 0; i < waiting.size(); i++) {
+            waiting.get(i).updateQueuePosition(i + 1);
+        }
+    }
+
+    /**
+     * 续传生成任务
+     *
+     * @param appId       应用 ID，用于校验任务归属
+     * @param runId       任务 ID
+     * @param lastEventId 客户端收到的最后一个事件 ID
+     * @return 错过的事件 + 实时事件
+     */
+    public Flux<GenerationEvent> resume(Long appId, String runId, long lastEventId) {
+        if (StrUtil.isBlank(runId) || !runId.startsWith(appId + "_")) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成任务不属于该应用");
+        }
+        GenerationRun run = runs.get(runId);
+        if (run != null) {
+            return run.attach(lastEventId);
+        }
+        if (!generationEventLog.exists(runId)) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "生成任务不存在或已过期");
+        }
+        // 任务在其他实例上，轮询共享的事件日志直到结束事件
+        // 排队或等待模型许可时可以很久没有事件，不按事件间隔超时；运行任务的实例定期续期日志，日志过期说明该实例已宕机
+        AtomicLong cursor = new AtomicLong(lastEventId);
+        AtomicLong idlePolls = new AtomicLong();
+        return Flux.interval(Duration.ZERO, POLL_INTERVAL, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .concatMapIterable(tick -> {
+                    List<GenerationEvent> events = generationEventLog.readAfter(runId, cursor.get());
+                    if (events.isEmpty()) {
+                        if (idlePolls.incrementAndGet() % LIVENESS_CHECK_POLLS == 0 && !generationEventLog.exists(runId)) {
+                            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "生成任务已中断");
+                        }
+                        return events;
+                    }
+                    idlePolls.set(0);
+                    List<GenerationEvent> result = GenerationRun.withGap(events, cursor.get(), events.get(0).getId());
+                    cursor.set(events.get(events.size() - 1).getId());
+                    return result;
+                })
+                .takeUntil(GenerationEvent::isTerminal);
+    }
+
+    /**
+     * 任务是否可以续传（在本实例运行中，或其他实例的事件日志仍然存在）
+     *
+     * @param runId 任务 ID
+     */
+    public boolean isResumable(String runId) {
+        return runs.containsKey(runId) || generationEventLog.exists(runId);
+    }
+
+    /**
+     * 解析 SSE 事件 ID（{runId}:{eventId}）
+     *
+     * @param lastEventId Last-Event-ID
+     * @return [runId, eventId]，格式不正确返回 null
+     */
+    public static String[] parseEventId(String lastEventId) {
+        if (StrUtil.isBlank(lastEventId)) {
+            return null;
+        }
+        int index = lastEventId.lastIndexOf(':');
+        if (index <= 0 || !StrUtil.isNumeric(lastEventId.substring(index + 1))) {
+            return null;
+        }
+        return new String[]{lastEventId.substring(0, index), lastEventId.substring(index + 1)};
+    }
+
+    /**
+     * 生成 SSE 事件 ID
+     */
+    public static String formatEventId(String runId, long eventId) {
+        return runId + ":" + eventId;
+    }
+
+    private GenerationRun newRun(Long appId, String submitKey) {
+        String runId = appId + "_" + IdUtil.fastSimpleUUID();
+        return new GenerationRun(runId, appId, submitKey, generationEventLog,
+                Duration.ofSeconds(generationRunProperties.getDetachTimeoutSeconds()),
+                Duration.ofSeconds(generationRunProperties.getRetentionSeconds()), this::onFinish);
+    }
+
+    private void onFinish(GenerationRun run) {
+        dispatch(run.getAppId(), run);
+        // 事件日志的保留时间由任务在结束事件写入日志后设置
+        Duration retention = Duration.ofSeconds(generationRunProperties.getRetentionSeconds());
+        Schedulers.parallel().schedule(() -> runs.remove(run.getRunId()), retention.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 应用的邮箱：一个运行中的轮次 + 排队中的轮次
+     */
+    private static class Mailbox {
+
+        private Turn running;
+
+        private final Deque<Turn> pending = new ArrayDeque<>();
+
+        /**
+         * 查找重复提交对应的任务
+         *
+         * @param submitKey      提交键
+         * @param submittedAfter 只匹配该时间之后提交的任务
+         */
+        private GenerationRun find(String submitKey, long submittedAfter) {
+            if (running != null && isDuplicate(running.run(), submitKey, submittedAfter)) {
+                return running.run();
+            }
+            for (Turn turn : pending) {
+                if (isDuplicate(turn.run(), submitKey, submittedAfter)) {
+                    return turn.run();
+                }
+            }
+            return null;
+        }
+
+        private static boolean isDuplicate(GenerationRun run, String submitKey, long submittedAfter) {
+            return run.getSubmitKey().equals(submitKey) && run.getSubmittedAt() >= submittedAfter && !run.isFinished();
+        }
+    }
+
+    private record Turn(GenerationRun run, Function<GenerationRun, Flux<String>> contentSupplier) {
+    }
+}
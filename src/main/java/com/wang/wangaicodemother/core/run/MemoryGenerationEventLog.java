@@ -0,0 +1,68 @@
+package com.wang.wangaicodemother.core.run;
+
+import com.wang.wangaicodemother.config.GenerationRunProperties;
+import jakarta.annotation.Resource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存事件日志，每个任务一个有界队列，只能在发起生成的实例上续传
+ */
+@Component
+@ConditionalOnProperty(prefix = "generation.run", name = "event-log", havingValue = "memory", matchIfMissing = true)
+public class MemoryGenerationEventLog implements GenerationEventLog {
+
+    private final Map<String, Deque<GenerationEvent>> logs = new ConcurrentHashMap<>();
+
+    @Resource
+    private GenerationRunProperties generationRunProperties;
+
+    @Override
+    public void append(String runId, GenerationEvent event) {
+        Deque<GenerationEvent> events = logs.computeIfAbsent(runId, key -> new ArrayDeque<>());
+        synchronized (events) {
+            if (events.size() >= generationRunProperties.getMaxEvents()) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    @Override
+    public List<GenerationEvent> readAfter(String runId, long lastEventId) {
+        Deque<GenerationEvent> events = logs.get(runId);
+        if (events == null) {
+            return Collections.emptyList();
+        }
+        List<GenerationEvent> result = new ArrayList<>();
+        synchronized (events) {
+            for (GenerationEvent event : events) {
+                if (event.getId() > lastEventId) {
+                    result.add(event);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean exists(String runId) {
+        return logs.containsKey(runId);
+    }
+
+    @Override
+    public void expire(String runId, Duration retention) {
+        Schedulers.parallel().schedule(() -> logs.remove(runId), retention.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,112 @@
+package com.wang.wangaicodemother.core.run;
+
+import cn.hutool.core.util.StrUtil;
+import com.wang.wangaicodemother.config.GenerationRunProperties;
+import jakarta.annotation.Resource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis Streams 事件日志
+ * 事件 ID 直接作为 Stream 记录 ID（{id}-0），续传时按 ID 范围读取，任意实例都可以续传
+ */
+@Component
+@ConditionalOnProperty(prefix = "generation.run", name = "event-log", havingValue = "redis")
+public class RedisGenerationEventLog implements GenerationEventLog {
+
+    private static final String KEY_PREFIX = "generation:run:";
+
+    private static final String FIELD_EVENT = "e";
+
+    private static final String FIELD_DATA = "d";
+
+    /**
+     * 任务进行中日志的过期时间，由运行任务的实例定期续期
+     */
+    private static final Duration LIVE_TTL = Duration.ofMinutes(10);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private GenerationRunProperties generationRunProperties;
+
+    @Override
+    public void append(String runId, GenerationEvent event) {
+        appendAll(runId, List.of(event));
+    }
+
+    /**
+     * 一批事件在一次往返中写入：XADD、跨过 100 的整数倍时近似裁剪、续期
+     */
+    @Override
+    public void appendAll(String runId, List<GenerationEvent> events) {
+        String key = KEY_PREFIX + runId;
+        long firstId = events.get(0).getId();
+        long lastId = events.get(events.size() - 1).getId();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (GenerationEvent event : events) {
+                Map<String, String> fields = new HashMap<>(2);
+                fields.put(FIELD_EVENT, StrUtil.nullToEmpty(event.getEvent()));
+                fields.put(FIELD_DATA, StrUtil.nullToEmpty(event.getData()));
+                stringConnection.xAdd(StreamRecords.newRecord()
+                        .in(key)
+                        .withId(RecordId.of(event.getId(), 0))
+                        .ofStrings(fields));
+            }
+            if (lastId / 100 > (firstId - 1) / 100) {
+                // 近似裁剪，摊薄 XTRIM 的开销
+                stringConnection.xTrim(key, generationRunProperties.getMaxEvents(), true);
+            }
+            // 实例宕机时也不会永久残留
+            stringConnection.expire(key, LIVE_TTL.toSeconds());
+            return null;
+        });
+    }
+
+    @Override
+    public List<GenerationEvent> readAfter(String runId, long lastEventId) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(KEY_PREFIX + runId, Range.rightUnbounded(Range.Bound.inclusive((lastEventId + 1) + "-0")));
+        List<GenerationEvent> events = new ArrayList<>();
+        if (records == null) {
+            return events;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            String event = (String) fields.get(FIELD_EVENT);
+            events.add(new GenerationEvent(record.getId().getTimestamp(),
+                    StrUtil.emptyToNull(event), (String) fields.get(FIELD_DATA)));
+        }
+        return events;
+    }
+
+    @Override
+    public boolean exists(String runId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_PREFIX + runId));
+    }
+
+    @Override
+    public void expire(String runId, Duration retention) {
+        stringRedisTemplate.expire(KEY_PREFIX + runId, retention);
+    }
+
+    @Override
+    public void keepAlive(String runId) {
+        stringRedisTemplate.expire(KEY_PREFIX + runId, LIVE_TTL);
+    }
+}
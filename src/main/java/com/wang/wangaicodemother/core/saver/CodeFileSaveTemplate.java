@@ -28,6 +28,24 @@ public abstract class CodeFileSaveTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个代码块（流式解析时每闭合一个代码块调用一次）
+     *
+     * @param language 代码块语言
+     * @param code     代码内容
+     * @param appId    应用id
+     * @return 保存的文件，不需要保存的语言返回 null
+     */
+    public final File saveBlock(String language, String code, String appId) {
+        String fileName = getFileName(language);
+        if (fileName == null) {
+            return null;
+        }
+        String baseDirPath = buildUniqueDirPath(appId);
+        writeFile(baseDirPath, fileName, code);
+        return new File(baseDirPath, fileName);
+    }
+
 
 
     private String buildUniqueDirPath(String appId) {
@@ -63,4 +81,12 @@ public abstract class CodeFileSaveTemplate<T> {
 
 
     protected abstract void saveFile(String baseDirPath, T result);
+
+    /**
+     * 获取代码块语言对应的文件名
+     *
+     * @param language 代码块语言
+     * @return 文件名，不需要保存返回 null
+     */
+    protected abstract String getFileName(String language);
 }
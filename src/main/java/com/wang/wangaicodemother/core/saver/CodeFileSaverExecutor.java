@@ -34,4 +34,20 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 执行单个代码块的保存（流式解析）
+     *
+     * @param language    代码块语言
+     * @param code        代码内容
+     * @param codeGenType 代码生成类型
+     * @return 保存的文件
+     */
+    public static File executeBlockSaver(String language, String code, CodeGenTypeEnum codeGenType, String appId) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.saveBlock(language, code, appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.saveBlock(language, code, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
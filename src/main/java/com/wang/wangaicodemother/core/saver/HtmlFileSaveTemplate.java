@@ -13,4 +13,9 @@ public class HtmlFileSaveTemplate extends CodeFileSaveTemplate<HtmlCodeResult>{
     protected void saveFile(String baseDirPath, HtmlCodeResult result) {
         writeFile(baseDirPath,"index.html",result.getHtmlCode());
     }
+
+    @Override
+    protected String getFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
 }
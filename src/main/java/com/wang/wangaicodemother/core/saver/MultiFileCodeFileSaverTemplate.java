@@ -25,4 +25,14 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaveTemplate<MultiFi
         writeFile(baseDirPath, "script.js", result.getJsCode());
     }
 
+    @Override
+    protected String getFileName(String language) {
+        return switch (language) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js" -> "script.js";
+            default -> null;
+        };
+    }
+
 }
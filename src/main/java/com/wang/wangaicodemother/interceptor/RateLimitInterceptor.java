@@ -0,0 +1,84 @@
+package com.wang.wangaicodemother.interceptor;
+
+import cn.hutool.extra.servlet.JakartaServletUtil;
+import cn.hutool.json.JSONUtil;
+import com.wang.wangaicodemother.common.ResultUtils;
+import com.wang.wangaicodemother.core.run.GenerationRunManager;
+import com.wang.wangaicodemother.exception.ErrorCode;
+import com.wang.wangaicodemother.manager.RateLimitManager;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 用户限流拦截器
+ * 按 JwtInterceptor 写入的 userId 限流，白名单接口没有 userId 时按 IP 限流；
+ * 超出请求次数或模型 token 额度时返回 429 和 Retry-After；
+ * EventSource 带 Last-Event-ID 重连续传已有的生成任务时不计数也不检查额度，续传只回放事件，不会调用模型
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    @Resource
+    private RateLimitManager rateLimitManager;
+
+    @Resource
+    private GenerationRunManager generationRunManager;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            return true;
+        }
+        if (isResume(request)) {
+            return true;
+        }
+        String key = resolveKey(request);
+        long retryAfter = rateLimitManager.checkTokenBudget(key);
+        String message = "模型调用额度已用完，请稍后再试";
+        if (retryAfter == 0) {
+            retryAfter = rateLimitManager.tryAcquireRequest(key);
+            message = "请求过于频繁，请稍后再试";
+        }
+        if (retryAfter == 0) {
+            return true;
+        }
+        log.info("限流：{} {}，{} 秒后重试", key, request.getRequestURI(), retryAfter);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSONUtil.toJsonStr(ResultUtils.error(ErrorCode.TOO_MANY_REQUEST, message)));
+        return false;
+    }
+
+    /**
+     * 是否为续传已有生成任务的重连，返回 429 时 EventSource 不会再重连，续传就断了
+     */
+    private boolean isResume(HttpServletRequest request) {
+        String[] resumeFrom = GenerationRunManager.parseEventId(request.getHeader(LAST_EVENT_ID));
+        return resumeFrom != null && generationRunManager.isResumable(resumeFrom[0]);
+    }
+
+    /**
+     * 获取限流对象
+     */
+    public static String resolveKey(HttpServletRequest request) {
+        Object userId = request.getAttribute("userId");
+        if (userId != null) {
+            return RateLimitManager.userKey((Long) userId);
+        }
+        return "ip:" + JakartaServletUtil.getClientIP(request);
+    }
+}
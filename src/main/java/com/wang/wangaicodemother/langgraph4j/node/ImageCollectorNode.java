@@ -1,5 +1,6 @@
 package com.wang.wangaicodemother.langgraph4j.node;
 
+import com.wang.wangaicodemother.core.admission.ModelAdmissionScheduler;
 import com.wang.wangaicodemother.langgraph4j.ai.ImageCollectionService;
 import com.wang.wangaicodemother.langgraph4j.state.WorkflowContext;
 import com.wang.wangaicodemother.utils.SpringContextUtil;
@@ -20,7 +21,9 @@ public class ImageCollectorNode {
             try {
                 //收集图片
                 ImageCollectionService imageCollectionService = SpringContextUtil.getBean(ImageCollectionService.class);
-                imageListStr = imageCollectionService.collectImages(originalPrompt);
+                ModelAdmissionScheduler scheduler = SpringContextUtil.getBean(ModelAdmissionScheduler.class);
+                imageListStr = scheduler.call(ModelAdmissionScheduler.OPENAI_CHAT_MODEL, null,
+                        () -> imageCollectionService.collectImages(originalPrompt));
             } catch (Exception e) {
                 log.error("图片收集失败: {}", e.getMessage(), e);
             }
@@ -1,5 +1,6 @@
 package com.wang.wangaicodemother.langgraph4j.node;
 
+import com.wang.wangaicodemother.core.builder.BuildResult;
 import com.wang.wangaicodemother.core.builder.VueProjectBuilder;
 import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
@@ -29,11 +30,11 @@ public class ProjectBuilderNode {
             try {
                 VueProjectBuilder vueBuilder = SpringContextUtil.getBean(VueProjectBuilder.class);
                 // 执行 Vue 项目构建（npm install + npm run build）
-                boolean buildSuccess = vueBuilder.buildProject(generatedCodeDir);
-                if (buildSuccess) {
+                BuildResult buildResult = vueBuilder.buildProject(generatedCodeDir);
+                if (buildResult.isSuccess()) {
                     // 构建成功，返回 dist 目录路径
                     buildResultDir = generatedCodeDir + File.separator + "dist";
-                    log.info("Vue 项目构建成功，dist 目录: {}", buildResultDir);
+                    log.info("Vue 项目{}，dist 目录: {}", buildResult.getText(), buildResultDir);
                 } else {
                     throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败");
                 }
@@ -0,0 +1,469 @@
+package com.wang.wangaicodemother.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wang.wangaicodemother.model.entity.ChatHistory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 对话历史写缓冲
+ * 消息先追加到当前日志段并进入内存，刷写时切换日志段，按段的先后顺序批量写库，写库成功后删除日志段。
+ * 写库失败时日志段保留在磁盘上，按指数退避重试（包括下次启动后补写），退避期间先写后面的日志段，
+ * 单个无法写入的日志段不会挡住之后所有的消息；查询按创建时间和 ID 排序，写库先后不影响展示顺序。
+ * 连续失败达到上限的日志段移入死信目录，记录错误日志等待人工处理。
+ * 删除对话历史前先丢弃该应用尚未写库的消息，退避中的日志段不会在删除之后把消息写回。
+ */
+@Slf4j
+public class ChatHistoryWriteBehindBuffer {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+
+    private static final long INITIAL_RETRY_BACKOFF_MS = 200;
+
+    private static final long MAX_RETRY_BACKOFF_MS = 60_000;
+
+    private final File journalDir;
+
+    private final int batchSize;
+
+    /**
+     * 单个日志段最多尝试写库的次数，超过后移入死信目录
+     */
+    private final int maxAttempts;
+
+    /**
+     * 批量写库
+     */
+    private final Consumer<List<ChatHistory>> batchWriter;
+
+    /**
+     * 查询已经写入的 ID，补写日志段时用于去重
+     */
+    private final Function<List<Long>, Set<Long>> existingIdsLoader;
+
+    private final Object appendLock = new Object();
+
+    /**
+     * 保证同一时刻只有一个刷写在执行，段按顺序写库
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private List<ChatHistory> pending = new ArrayList<>();
+
+    private File segmentFile;
+
+    private BufferedWriter segmentWriter;
+
+    private long segmentSeq;
+
+    /**
+     * 写库失败的日志段，只在刷写锁内访问
+     */
+    private final Map<String, SegmentFailure> failures = new HashMap<>();
+
+    /**
+     * @param attempts    已失败次数
+     * @param nextRetryAt 下次重试的时间
+     */
+    private record SegmentFailure(int attempts, long nextRetryAt) {
+    }
+
+    public ChatHistoryWriteBehindBuffer(File journalDir, int batchSize, int maxAttempts,
+                                        Consumer<List<ChatHistory>> batchWriter,
+                                        Function<List<Long>, Set<Long>> existingIdsLoader) {
+        this.journalDir = journalDir;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.batchWriter = batchWriter;
+        this.existingIdsLoader = existingIdsLoader;
+        FileUtil.mkdir(journalDir);
+        List<File> segments = listSegments();
+        this.segmentSeq = segments.isEmpty() ? 0 : parseSeq(segments.getLast());
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param chatHistory 已分配 ID 和创建时间的消息
+     * @return 缓冲区是否已达到批量大小
+     */
+    public boolean append(ChatHistory chatHistory) {
+        synchronized (appendLock) {
+            try {
+                if (segmentWriter == null) {
+                    openSegment();
+                }
+                segmentWriter.write(toJournalLine(chatHistory));
+                segmentWriter.newLine();
+                segmentWriter.flush();
+            } catch (IOException e) {
+                // 日志段写失败只影响异常退出后的补写，不影响本次写库
+                log.warn("对话历史日志段写入失败，appId: {}, error: {}", chatHistory.getAppId(), e.getMessage());
+            }
+            pending.add(chatHistory);
+            return pending.size() >= batchSize;
+        }
+    }
+
+    /**
+     * 是否有尚未写库的消息
+     */
+    public boolean hasPending() {
+        File openFile;
+        synchronized (appendLock) {
+            if (!pending.isEmpty()) {
+                return true;
+            }
+            openFile = segmentFile;
+        }
+        return listSegments().stream().anyMatch(file -> !file.equals(openFile));
+    }
+
+    /**
+     * 切换日志段并按顺序写库，失败的日志段退避重试，不影响之后的日志段
+     *
+     * @return 是否全部写库成功
+     */
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            List<ChatHistory> rolled = null;
+            File rolledFile = null;
+            File openFile;
+            synchronized (appendLock) {
+                if (!pending.isEmpty()) {
+                    rolled = pending;
+                    rolledFile = segmentFile;
+                    pending = new ArrayList<>();
+                    closeSegment();
+                }
+                openFile = segmentFile;
+            }
+            boolean allWritten = true;
+            for (File segment : listSegments()) {
+                if (segment.equals(openFile)) {
+                    continue;
+                }
+                SegmentFailure failure = failures.get(segment.getName());
+                if (failure != null && System.currentTimeMillis() < failure.nextRetryAt()) {
+                    allWritten = false;
+                    continue;
+                }
+                boolean fromMemory = segment.equals(rolledFile);
+                List<ChatHistory> batch = fromMemory ? rolled : readSegment(segment);
+                try {
+                    writeInBatches(batch, !fromMemory);
+                } catch (Exception e) {
+                    allWritten = false;
+                    recordFailure(segment, failure == null ? 1 : failure.attempts() + 1, e);
+                    continue;
+                }
+                failures.remove(segment.getName());
+                FileUtil.del(segment);
+            }
+            if (rolledFile == null && rolled != null) {
+                // 日志段没有打开成功，只能直接写库
+                try {
+                    writeInBatches(rolled, false);
+                } catch (Exception e) {
+                    log.error("对话历史批量写库失败，{} 条消息等待重试，error: {}", rolled.size(), e.getMessage());
+                    requeueIfNotJournaled(rolled, rolledFile);
+                    return false;
+                }
+            }
+            return allWritten;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃某个应用尚未写库的消息，包括缓冲区、日志段和死信目录中的消息，删除对话历史前调用，
+     * 避免退避中的日志段在删除之后把消息重新写回
+     *
+     * @param appId 应用 ID
+     * @return 丢弃的消息条数
+     */
+    public int discard(long appId) {
+        flushLock.lock();
+        try {
+            int discarded = 0;
+            File openFile;
+            synchronized (appendLock) {
+                List<ChatHistory> kept = withoutApp(pending, appId);
+                discarded += pending.size() - kept.size();
+                if (discarded > 0) {
+                    if (segmentFile != null) {
+                        // 重写打开中的日志段，内容与缓冲区保持一致；重写失败时什么都没有改变
+                        File file = segmentFile;
+                        rewriteSegment(file, kept);
+                        closeSegment();
+                        if (!kept.isEmpty() && !reopenSegment(file)) {
+                            // 剩余消息已在日志段中，按已关闭的日志段补写
+                            kept = List.of();
+                        }
+                    }
+                    pending = new ArrayList<>(kept);
+                }
+                openFile = segmentFile;
+            }
+            List<File> segments = new ArrayList<>(listSegments());
+            File[] deadLetters = new File(journalDir, DEAD_LETTER_DIR).listFiles();
+            if (deadLetters != null) {
+                segments.addAll(Arrays.asList(deadLetters));
+            }
+            for (File segment : segments) {
+                if (segment.equals(openFile)) {
+                    continue;
+                }
+                List<ChatHistory> messages = readSegment(segment);
+                List<ChatHistory> kept = withoutApp(messages, appId);
+                if (kept.size() == messages.size()) {
+                    continue;
+                }
+                discarded += messages.size() - kept.size();
+                rewriteSegment(segment, kept);
+                if (kept.isEmpty()) {
+                    failures.remove(segment.getName());
+                }
+            }
+            return discarded;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 某个应用尚未写库的消息（刷写失败、仍在退避重试的日志段和缓冲区中的消息）
+     *
+     * @param appId 应用 ID
+     * @return 按写入顺序排列的消息
+     */
+    public List<ChatHistory> unwritten(long appId) {
+        flushLock.lock();
+        try {
+            File openFile;
+            List<ChatHistory> inMemory;
+            synchronized (appendLock) {
+                openFile = segmentFile;
+                inMemory = pending.stream().filter(history -> isApp(history, appId)).toList();
+            }
+            List<ChatHistory> result = new ArrayList<>();
+            for (File segment : listSegments()) {
+                if (!segment.equals(openFile)) {
+                    readSegment(segment).stream().filter(history -> isApp(history, appId)).forEach(result::add);
+                }
+            }
+            result.addAll(inMemory);
+            return result;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭当前日志段，未写库的消息保留在磁盘上
+     */
+    public void close() {
+        synchronized (appendLock) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * 记录日志段写库失败：未达到上限时按指数退避安排重试，达到上限后移入死信目录
+     */
+    private void recordFailure(File segment, int attempts, Exception error) {
+        if (attempts < maxAttempts) {
+            long backoff = Math.min(MAX_RETRY_BACKOFF_MS, INITIAL_RETRY_BACKOFF_MS << Math.min(attempts - 1, 20));
+            failures.put(segment.getName(), new SegmentFailure(attempts, System.currentTimeMillis() + backoff));
+            log.error("对话历史批量写库失败，日志段 {} 第 {} 次失败，{}ms 后重试，error: {}",
+                    segment.getName(), attempts, backoff, error.getMessage());
+            return;
+        }
+        failures.remove(segment.getName());
+        File deadLetterDir = new File(journalDir, DEAD_LETTER_DIR);
+        try {
+            FileUtil.mkdir(deadLetterDir);
+            Files.move(segment.toPath(), deadLetterDir.toPath().resolve(segment.getName()), StandardCopyOption.REPLACE_EXISTING);
+            log.error("对话历史日志段 {} 连续 {} 次写库失败，已移入死信目录 {}，需人工处理，error: {}",
+                    segment.getName(), attempts, deadLetterDir.getAbsolutePath(), error.getMessage());
+        } catch (IOException e) {
+            failures.put(segment.getName(), new SegmentFailure(attempts, System.currentTimeMillis() + MAX_RETRY_BACKOFF_MS));
+            log.error("对话历史日志段 {} 移入死信目录失败，error: {}", segment.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 没有日志段兜底的消息放回缓冲区头部，等待下次刷写
+     */
+    private void requeueIfNotJournaled(List<ChatHistory> rolled, File rolledFile) {
+        if (rolled == null || rolledFile != null) {
+            return;
+        }
+        synchronized (appendLock) {
+            List<ChatHistory> merged = new ArrayList<>(rolled);
+            merged.addAll(pending);
+            pending = merged;
+        }
+    }
+
+    private void writeInBatches(List<ChatHistory> batch, boolean dedupe) {
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<ChatHistory> chunk = batch.subList(from, Math.min(batch.size(), from + batchSize));
+            if (dedupe) {
+                // 补写的日志段可能已经部分写入，跳过已存在的 ID
+                Set<Long> existing = existingIdsLoader.apply(chunk.stream().map(ChatHistory::getId).toList());
+                chunk = chunk.stream().filter(history -> !existing.contains(history.getId())).toList();
+            }
+            if (!chunk.isEmpty()) {
+                batchWriter.accept(chunk);
+            }
+        }
+    }
+
+    private static List<ChatHistory> withoutApp(List<ChatHistory> messages, long appId) {
+        return messages.stream().filter(history -> !isApp(history, appId)).toList();
+    }
+
+    private static boolean isApp(ChatHistory history, long appId) {
+        return history.getAppId() != null && history.getAppId() == appId;
+    }
+
+    /**
+     * 用剩余的消息覆盖日志段，没有剩余消息时删除
+     */
+    private static void rewriteSegment(File segment, List<ChatHistory> messages) {
+        if (messages.isEmpty()) {
+            FileUtil.del(segment);
+            return;
+        }
+        File temp = new File(segment.getParentFile(), segment.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (ChatHistory history : messages) {
+                writer.write(toJournalLine(history));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            FileUtil.del(temp);
+            throw new IllegalStateException("重写对话历史日志段失败：" + segment.getName(), e);
+        }
+        try {
+            Files.move(temp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            FileUtil.del(temp);
+            throw new IllegalStateException("重写对话历史日志段失败：" + segment.getName(), e);
+        }
+    }
+
+    private boolean reopenSegment(File file) {
+        try {
+            segmentWriter = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            segmentFile = file;
+            return true;
+        } catch (IOException e) {
+            log.warn("重新打开对话历史日志段失败：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentSeq++;
+        File file = new File(journalDir, String.format("%s%020d%s", SEGMENT_PREFIX, segmentSeq, SEGMENT_SUFFIX));
+        segmentWriter = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        segmentFile = file;
+    }
+
+    private void closeSegment() {
+        if (segmentWriter != null) {
+            try {
+                segmentWriter.close();
+            } catch (IOException e) {
+                log.warn("关闭对话历史日志段失败：{}", e.getMessage());
+            }
+        }
+        segmentWriter = null;
+        segmentFile = null;
+    }
+
+    private List<File> listSegments() {
+        File[] files = journalDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return List.of();
+        }
+        return Arrays.stream(files).sorted(Comparator.comparing(File::getName)).toList();
+    }
+
+    private static long parseSeq(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static List<ChatHistory> readSegment(File segment) {
+        List<ChatHistory> result = new ArrayList<>();
+        for (String line : FileUtil.readUtf8Lines(segment)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                result.add(fromJournalLine(line));
+            } catch (Exception e) {
+                // 进程退出时最后一行可能只写了一半
+                log.warn("跳过无法解析的对话历史日志：{}", segment.getName());
+            }
+        }
+        return result;
+    }
+
+    static String toJournalLine(ChatHistory chatHistory) {
+        JSONObject json = new JSONObject();
+        json.set("id", chatHistory.getId());
+        json.set("appId", chatHistory.getAppId());
+        json.set("userId", chatHistory.getUserId());
+        json.set("messageType", chatHistory.getMessageType());
+        json.set("message", chatHistory.getMessage());
+        json.set("createTime", Timestamp.valueOf(chatHistory.getCreateTime()).getTime());
+        return json.toString();
+    }
+
+    static ChatHistory fromJournalLine(String line) {
+        JSONObject json = JSONUtil.parseObj(line);
+        LocalDateTime createTime = new Timestamp(json.getLong("createTime")).toLocalDateTime();
+        return ChatHistory.builder()
+                .id(json.getLong("id"))
+                .appId(json.getLong("appId"))
+                .userId(json.getLong("userId"))
+                .messageType(json.getStr("messageType"))
+                .message(json.getStr("message"))
+                .createTime(createTime)
+                .updateTime(createTime)
+                .isDelete(0)
+                .build();
+    }
+}
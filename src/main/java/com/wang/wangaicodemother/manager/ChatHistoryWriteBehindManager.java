@@ -0,0 +1,145 @@
+package com.wang.wangaicodemother.manager;
+
+import cn.hutool.core.util.IdUtil;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.wang.wangaicodemother.config.ChatHistoryWriteBehindProperties;
+import com.wang.wangaicodemother.mapper.ChatHistoryMapper;
+import com.wang.wangaicodemother.model.entity.ChatHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 对话历史异步批量写入
+ * 流式回调线程只负责追加到缓冲区，由单个刷写线程按间隔或条数批量插入（多行 INSERT），
+ * 进程异常退出后未写库的消息在下次启动时从日志段补写
+ */
+@Slf4j
+@Component
+public class ChatHistoryWriteBehindManager {
+
+    @Resource
+    private ChatHistoryWriteBehindProperties chatHistoryWriteBehindProperties;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    private ChatHistoryWriteBehindBuffer buffer;
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        if (!chatHistoryWriteBehindProperties.isEnabled()) {
+            return;
+        }
+        buffer = new ChatHistoryWriteBehindBuffer(new File(chatHistoryWriteBehindProperties.getJournalDir()),
+                chatHistoryWriteBehindProperties.getBatchSize(),
+                chatHistoryWriteBehindProperties.getMaxAttempts(),
+                chatHistoryMapper::insertBatch,
+                ids -> LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryMapper.selectListByIds(ids))
+                        .stream()
+                        .map(ChatHistory::getId)
+                        .collect(Collectors.toSet()));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-history-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, chatHistoryWriteBehindProperties.getFlushIntervalMs());
+        // 首次刷写会补写上次退出时遗留的日志段
+        flusher.scheduleWithFixedDelay(buffer::flush, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 是否开启异步批量写入
+     */
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * 消息进入写缓冲，不等待写库
+     * 在这里分配 ID 和创建时间，保证批量写入后同一应用内的先后顺序与调用顺序一致
+     *
+     * @param chatHistory 消息
+     */
+    public void enqueue(ChatHistory chatHistory) {
+        LocalDateTime now = LocalDateTime.now();
+        chatHistory.setId(IdUtil.getSnowflakeNextId());
+        chatHistory.setCreateTime(now);
+        chatHistory.setUpdateTime(now);
+        chatHistory.setIsDelete(0);
+        if (buffer.append(chatHistory)) {
+            flusher.execute(buffer::flush);
+        }
+    }
+
+    /**
+     * 同步写入所有待写消息，读取对话历史前调用，保证读到最新数据
+     *
+     * @return 是否全部写库；为 false 时仍有日志段在退避重试，未写库的消息可通过 {@link #unwritten(long)} 获取
+     */
+    public boolean flushPending() {
+        if (buffer == null || !buffer.hasPending()) {
+            return true;
+        }
+        boolean allWritten = buffer.flush();
+        if (!allWritten) {
+            log.warn("对话历史仍有日志段未写库，等待退避重试");
+        }
+        return allWritten;
+    }
+
+    /**
+     * 某个应用尚未写库的消息
+     *
+     * @param appId 应用 ID
+     * @return 按写入顺序排列的消息
+     */
+    public List<ChatHistory> unwritten(long appId) {
+        return buffer == null ? List.of() : buffer.unwritten(appId);
+    }
+
+    /**
+     * 丢弃某个应用尚未写库的消息，删除对话历史前调用，避免删除后又被写回
+     *
+     * @param appId 应用 ID
+     */
+    public void discard(long appId) {
+        if (buffer == null) {
+            return;
+        }
+        int discarded = buffer.discard(appId);
+        if (discarded > 0) {
+            log.info("删除对话历史，丢弃未写库的消息 {} 条，appId: {}", discarded, appId);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (buffer == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.flush()) {
+            log.warn("退出前对话历史未能全部写库，将在下次启动时从日志段补写");
+        }
+        buffer.close();
+    }
+}
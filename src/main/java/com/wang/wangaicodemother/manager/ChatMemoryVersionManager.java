@@ -0,0 +1,103 @@
+package com.wang.wangaicodemother.manager;
+
+import com.wang.wangaicodemother.ai.memory.RedisListChatMemoryStore;
+import com.wang.wangaicodemother.config.RedisChatMemoryStoreConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 对话记忆版本管理
+ * 每个应用在 Redis 中记录对话历史的版本号（删除历史等记忆无法感知的修改时递增），
+ * 记忆从数据库加载后记下当时的版本号；两者一致且记忆不为空时认为 Redis 中的记忆是最新的，无需再查数据库
+ */
+@Slf4j
+@Component
+public class ChatMemoryVersionManager {
+
+    private static final String HISTORY_VERSION_KEY_PREFIX = "chat:history:ver:";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    /**
+     * 检查 Redis 中的记忆是否可以直接使用，一次往返读取记忆长度、记忆版本和历史版本
+     *
+     * @param appId 应用 ID
+     * @return 记忆状态
+     */
+    public MemoryState check(long appId) {
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.lLen(RedisListChatMemoryStore.listKey(appId));
+                stringConnection.get(RedisListChatMemoryStore.versionKey(appId));
+                stringConnection.get(historyVersionKey(appId));
+                return null;
+            });
+            Long size = (Long) results.get(0);
+            String memoryVersion = (String) results.get(1);
+            String historyVersion = Objects.requireNonNullElse((String) results.get(2), "0");
+            boolean warm = size != null && size > 0 && historyVersion.equals(memoryVersion);
+            return new MemoryState(warm, historyVersion);
+        } catch (Exception e) {
+            log.warn("读取对话记忆版本失败，appId: {}, error: {}", appId, e.getMessage());
+            return new MemoryState(false, null);
+        }
+    }
+
+    /**
+     * 记忆从数据库加载完成后记下对应的历史版本
+     *
+     * @param appId 应用 ID
+     * @param state 加载前读取的记忆状态
+     */
+    public void markLoaded(long appId, MemoryState state) {
+        if (state.historyVersion() == null) {
+            return;
+        }
+        String key = RedisListChatMemoryStore.versionKey(appId);
+        long ttl = redisChatMemoryStoreConfig.getTtl();
+        if (ttl > 0) {
+            stringRedisTemplate.opsForValue().set(key, state.historyVersion(), Duration.ofSeconds(ttl));
+        } else {
+            stringRedisTemplate.opsForValue().set(key, state.historyVersion());
+        }
+    }
+
+    /**
+     * 对话历史发生了记忆无法感知的修改（如删除），使 Redis 中的记忆失效
+     *
+     * @param appId 应用 ID
+     */
+    public void bumpHistoryVersion(long appId) {
+        try {
+            stringRedisTemplate.opsForValue().increment(historyVersionKey(appId));
+        } catch (Exception e) {
+            log.warn("更新对话历史版本失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    private static String historyVersionKey(long appId) {
+        return HISTORY_VERSION_KEY_PREFIX + appId;
+    }
+
+    /**
+     * 记忆状态
+     *
+     * @param warm           Redis 中的记忆是否可以直接使用
+     * @param historyVersion 当前的历史版本，读取失败时为空
+     */
+    public record MemoryState(boolean warm, String historyVersion) {
+    }
+}
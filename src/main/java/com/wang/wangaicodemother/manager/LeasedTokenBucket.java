@@ -0,0 +1,147 @@
+package com.wang.wangaicodemother.manager;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 本地令牌桶
+ * 令牌以租约的形式从全局计数（Redis）批量预取，本地扣减不需要网络请求；
+ * 剩余不足一半时异步续租，全局额度用完后直到窗口结束前都不再请求全局计数
+ * <p>
+ * 线程安全，续租由调用方在锁外执行；同一时刻只有一个续租请求，本地令牌不足时等待进行中的续租，不重复预留全局额度
+ */
+public class LeasedTokenBucket {
+
+    private final long windowMillis;
+
+    private final long leaseSize;
+
+    /**
+     * 租约回调：(窗口序号, 申请数量) -> 实际获得的数量
+     */
+    private final LongBinaryOperator leaser;
+
+    private long window = -1;
+
+    private long available;
+
+    private boolean exhausted;
+
+    private boolean leasing;
+
+    public LeasedTokenBucket(long windowMillis, long leaseSize, LongBinaryOperator leaser) {
+        this.windowMillis = windowMillis;
+        this.leaseSize = leaseSize;
+        this.leaser = leaser;
+    }
+
+    /**
+     * 尝试获取令牌
+     *
+     * @param permits 数量
+     * @return 0 表示成功，否则为建议的重试等待时间（秒）
+     */
+    public long tryAcquire(long permits) {
+        long now = System.currentTimeMillis();
+        long currentWindow;
+        boolean prefetch;
+        synchronized (this) {
+            currentWindow = roll(now);
+            // 本地令牌不足且有续租进行中（包括异步预取），等它的结果而不是再租一批
+            while (available < permits && leasing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return retryAfterSeconds(now);
+                }
+                now = System.currentTimeMillis();
+                currentWindow = roll(now);
+            }
+            if (available < permits && exhausted) {
+                return retryAfterSeconds(now);
+            }
+            if (available >= permits) {
+                available -= permits;
+                prefetch = true;
+                if (exhausted || leasing || available >= leaseSize / 2) {
+                    return 0;
+                }
+            } else {
+                prefetch = false;
+            }
+            leasing = true;
+        }
+        long leaseWindow = currentWindow;
+        if (prefetch) {
+            Thread.startVirtualThread(() -> lease(leaseWindow, leaseSize));
+            return 0;
+        }
+        // 本地令牌不足，同步续租
+        lease(leaseWindow, Math.max(leaseSize, permits));
+        synchronized (this) {
+            roll(now);
+            if (available >= permits) {
+                available -= permits;
+                return 0;
+            }
+            return retryAfterSeconds(now);
+        }
+    }
+
+    /**
+     * 扣减令牌，允许扣成负数（用于事后才知道用量的场景，如模型 token）
+     *
+     * @param permits 数量
+     */
+    public void consume(long permits) {
+        long currentWindow;
+        long deficit;
+        synchronized (this) {
+            currentWindow = roll(System.currentTimeMillis());
+            available -= permits;
+            if (available >= 0 || exhausted || leasing) {
+                return;
+            }
+            leasing = true;
+            deficit = -available;
+        }
+        // 把超出租约的部分登记到全局计数，顺便预取下一批
+        Thread.startVirtualThread(() -> lease(currentWindow, deficit + leaseSize));
+    }
+
+    private void lease(long leaseWindow, long permits) {
+        long granted = 0;
+        try {
+            granted = leaser.applyAsLong(leaseWindow, permits);
+        } finally {
+            synchronized (this) {
+                leasing = false;
+                notifyAll();
+                if (leaseWindow == window) {
+                    available += granted;
+                    if (granted < permits) {
+                        exhausted = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 进入新窗口时清空本地令牌，需要持有锁
+     */
+    private long roll(long now) {
+        long currentWindow = now / windowMillis;
+        if (currentWindow != window) {
+            window = currentWindow;
+            available = 0;
+            exhausted = false;
+        }
+        return currentWindow;
+    }
+
+    private long retryAfterSeconds(long now) {
+        long windowEnd = (now / windowMillis + 1) * windowMillis;
+        return Math.max(1, (windowEnd - now + 999) / 1000);
+    }
+}
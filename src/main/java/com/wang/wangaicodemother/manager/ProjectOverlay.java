@@ -0,0 +1,221 @@
+package com.wang.wangaicodemother.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 项目内存覆盖层
+ * 一次生成过程中文件工具的读写都在内存中进行：读取优先返回本轮的改动，其次返回缓存的磁盘内容；
+ * 写入、修改、删除只记录为改动，轮次结束时一次性提交到磁盘。
+ * 轮次结束时覆盖层关闭，之后到达的写入（如取消时仍在执行的工具调用）抛出 {@link ClosedException}，由调用方改为直接落盘
+ */
+public class ProjectOverlay {
+
+    /**
+     * 提交时先写入同目录的临时文件再重命名，临时文件以 .tmp 结尾，不会进入项目文件树索引
+     */
+    private static final String TEMP_SUFFIX = ".overlay.tmp";
+
+    private final Path root;
+
+    /**
+     * 本轮的改动，content 为空表示删除
+     */
+    private final Map<Path, Change> changes = new ConcurrentHashMap<>();
+
+    /**
+     * 已读取过的磁盘内容
+     */
+    private final Map<Path, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 保护 closed 与记录改动的原子性；commit 持有对象锁写磁盘，写入改动不需要等待提交
+     */
+    private final Object stateLock = new Object();
+
+    private boolean closed;
+
+    /**
+     * 覆盖层已关闭，改动不会再被提交
+     */
+    public static class ClosedException extends IllegalStateException {
+
+        public ClosedException(Path root) {
+            super("项目覆盖层已关闭: " + root);
+        }
+    }
+
+    private record Change(String content) {
+
+        private static final Change DELETED = new Change(null);
+
+        boolean deleted() {
+            return content == null;
+        }
+    }
+
+    public ProjectOverlay(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 读取文件内容
+     *
+     * @param path 文件路径
+     * @return 文件内容，文件不存在或不是文件时返回 null
+     */
+    public String read(Path path) throws IOException {
+        Path key = normalize(path);
+        Change change = changes.get(key);
+        if (change != null) {
+            return change.content();
+        }
+        String cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (!Files.isRegularFile(key)) {
+            return null;
+        }
+        String content = Files.readString(key);
+        cache.put(key, content);
+        return content;
+    }
+
+    /**
+     * 写入文件内容（覆盖）
+     */
+    public void write(Path path, String content) {
+        record(normalize(path), new Change(content));
+    }
+
+    /**
+     * 删除文件
+     *
+     * @return 文件存在并被删除时返回 true
+     */
+    public boolean delete(Path path) throws IOException {
+        if (read(path) == null) {
+            return false;
+        }
+        record(normalize(path), Change.DELETED);
+        return true;
+    }
+
+    private void record(Path key, Change change) {
+        synchronized (stateLock) {
+            if (closed) {
+                throw new ClosedException(root);
+            }
+            changes.put(key, change);
+        }
+        cache.remove(key);
+    }
+
+    /**
+     * 未提交的改动数
+     */
+    public int pendingCount() {
+        return changes.size();
+    }
+
+    /**
+     * 把未提交的改动应用到项目文件树索引
+     */
+    public void replayTo(ProjectTreeIndex index) {
+        changes.forEach((path, change) -> {
+            if (change.deleted()) {
+                index.remove(path);
+            } else {
+                index.addFile(path);
+            }
+        });
+    }
+
+    /**
+     * 把改动提交到磁盘
+     * 每个文件先写临时文件再原子重命名，读取方不会看到写了一半的文件；
+     * 某个文件失败时已提交的改动不回滚，未提交的改动保留，下次提交时重试
+     *
+     * @return 提交的文件数
+     */
+    public synchronized int commit() throws IOException {
+        int committed = 0;
+        for (Map.Entry<Path, Change> entry : changes.entrySet()) {
+            Path path = entry.getKey();
+            Change change = entry.getValue();
+            if (change.deleted()) {
+                Files.deleteIfExists(path);
+            } else {
+                writeAtomically(path, change.content());
+                cache.put(path, change.content());
+            }
+            // 提交过程中同一文件又被改动时保留新的改动
+            changes.remove(path, change);
+            committed++;
+        }
+        return committed;
+    }
+
+    /**
+     * 关闭覆盖层并提交改动，之后的写入抛出 {@link ClosedException}；提交失败时重新打开，保留的改动下次提交时重试
+     *
+     * @return 提交的文件数
+     */
+    public synchronized int closeAndCommit() throws IOException {
+        synchronized (stateLock) {
+            closed = true;
+        }
+        try {
+            return commit();
+        } catch (IOException | RuntimeException e) {
+            synchronized (stateLock) {
+                closed = false;
+            }
+            throw e;
+        }
+    }
+
+    public boolean isClosed() {
+        synchronized (stateLock) {
+            return closed;
+        }
+    }
+
+    /**
+     * 等待进行中的 {@link #closeAndCommit()} 结束
+     *
+     * @return 覆盖层是否已关闭并提交完成；为 false 表示提交失败后已重新打开，可以继续写入覆盖层
+     */
+    public synchronized boolean awaitClosed() {
+        return isClosed();
+    }
+
+    private static void writeAtomically(Path path, String content) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,146 @@
+package com.wang.wangaicodemother.manager;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 项目内存覆盖层管理器
+ * Vue 项目生成开始时为应用打开覆盖层，文件工具的读写都经过覆盖层，生成正常完成时一次性提交到磁盘，
+ * 预览和构建不会看到写了一半的项目。生成出错或取消时覆盖层不提交，保留到下一轮生成继续使用，
+ * 下一轮完成时一起提交，对话记忆中的工具结果与覆盖层一致。没有覆盖层时，工具的改动立即提交；
+ * 覆盖层提交后仍在执行的工具调用，在提交完成后直接落盘
+ */
+@Slf4j
+@Component
+public class ProjectOverlayManager {
+
+    @Resource
+    private ProjectTreeIndexManager projectTreeIndexManager;
+
+    /**
+     * 进行中的生成对应的覆盖层
+     */
+    private final Map<Long, ProjectOverlay> overlays = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    private interface OverlayAction<T> {
+        T apply(ProjectOverlay overlay) throws IOException;
+    }
+
+    /**
+     * 开始一轮生成，打开应用的覆盖层；上一轮出错、取消或提交失败遗留的覆盖层继续使用，上一轮正在关闭的覆盖层不再使用
+     */
+    public void begin(long appId) {
+        overlays.compute(appId, (id, existing) -> existing == null || existing.isClosed()
+                ? new ProjectOverlay(ProjectTreeIndexManager.projectRoot(id)) : existing);
+    }
+
+    /**
+     * 结束一轮生成，提交改动并关闭覆盖层；提交失败时保留覆盖层，下一轮结束时重试
+     * 提交完成前覆盖层保留在表中，仍在执行的工具调用能看到它已关闭并等待提交完成，见 withOverlay
+     */
+    public void commit(long appId) {
+        ProjectOverlay overlay = overlays.get(appId);
+        if (overlay != null && commit(appId, overlay)) {
+            overlays.remove(appId, overlay);
+        }
+    }
+
+    /**
+     * 读取文件
+     *
+     * @return 文件内容，文件不存在或不是文件时返回 null
+     */
+    public String readFile(long appId, Path path) throws IOException {
+        return withOverlay(appId, overlay -> overlay.read(path));
+    }
+
+    /**
+     * 写入文件（覆盖）
+     */
+    public void writeFile(long appId, Path path, String content) throws IOException {
+        withOverlay(appId, overlay -> {
+            overlay.write(path, content);
+            return null;
+        });
+        projectTreeIndexManager.fileChanged(appId, path);
+    }
+
+    /**
+     * 删除文件
+     *
+     * @return 文件存在并被删除时返回 true
+     */
+    public boolean deleteFile(long appId, Path path) throws IOException {
+        boolean deleted = withOverlay(appId, overlay -> overlay.delete(path));
+        if (deleted) {
+            projectTreeIndexManager.fileDeleted(appId, path);
+        }
+        return deleted;
+    }
+
+    /**
+     * 列出目录下的所有文件（包括尚未提交的改动），按相对深度、再按路径排序
+     *
+     * @return 相对于 dir 的路径，dir 不在项目内时返回 null
+     */
+    public List<String> listFiles(long appId, Path dir) throws IOException {
+        return projectTreeIndexManager.listFiles(appId, dir, index -> {
+            ProjectOverlay overlay = overlays.get(appId);
+            if (overlay != null) {
+                overlay.replayTo(index);
+            }
+        });
+    }
+
+    /**
+     * 退出时提交所有覆盖层：覆盖层只在内存中，丢弃后对话记忆里的工具结果就和磁盘对不上了
+     */
+    @PreDestroy
+    public void destroy() {
+        overlays.forEach((appId, overlay) -> commit(appId, overlay));
+        overlays.clear();
+    }
+
+    private <T> T withOverlay(long appId, OverlayAction<T> action) throws IOException {
+        ProjectOverlay overlay = overlays.get(appId);
+        if (overlay != null) {
+            try {
+                return action.apply(overlay);
+            } catch (ProjectOverlay.ClosedException e) {
+                // 生成已结束而工具调用仍在执行：等关闭时的提交完成后再落盘，不会被提交的旧内容覆盖
+                if (!overlay.awaitClosed()) {
+                    return action.apply(overlay);
+                }
+                log.info("项目覆盖层已关闭，改动直接落盘，appId: {}", appId);
+            }
+        }
+        // 不在生成过程中，直接落盘
+        ProjectOverlay transientOverlay = new ProjectOverlay(ProjectTreeIndexManager.projectRoot(appId));
+        T result = action.apply(transientOverlay);
+        transientOverlay.commit();
+        return result;
+    }
+
+    private boolean commit(long appId, ProjectOverlay overlay) {
+        long start = System.currentTimeMillis();
+        try {
+            int committed = overlay.closeAndCommit();
+            if (committed > 0) {
+                log.info("项目改动已提交，appId: {}, 文件数: {}, 耗时: {}ms", appId, committed, System.currentTimeMillis() - start);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("项目改动提交失败，appId: {}, 未提交: {}, error: {}", appId, overlay.pendingCount(), e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.wang.wangaicodemother.manager;
+
+import com.wang.wangaicodemother.core.builder.SourceManifest;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 项目文件树索引
+ * 保存项目根目录下所有未被忽略的文件（相对路径，以 / 分隔，按字典序排列），
+ * 工具写入、删除文件时增量更新，读取某个目录时直接截取有序区间，不再遍历磁盘
+ * <p>
+ * 增量更新与全量重建在同一把锁上串行执行，重建扫描期间的更新不会被扫描结果覆盖；读取不加锁
+ */
+public class ProjectTreeIndex {
+
+    /**
+     * 需要忽略的文件和目录，目录被忽略时整个子树都不进入索引
+     */
+    private static final Set<String> IGNORED_NAMES = Set.of(
+            "node_modules", ".git", "dist", "build", ".DS_Store",
+            ".env", "target", ".mvn", ".idea", ".vscode", "coverage", SourceManifest.FILE_NAME
+    );
+
+    /**
+     * 需要忽略的文件扩展名
+     */
+    private static final Set<String> IGNORED_EXTENSIONS = Set.of(
+            ".log", ".tmp", ".cache", ".lock"
+    );
+
+    private final Path root;
+
+    private final NavigableSet<String> files = new ConcurrentSkipListSet<>();
+
+    /**
+     * 已知的目录（绝对路径），用于判断哪些目录需要注册监听
+     */
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 监听事件丢失（OVERFLOW）后标记为过期，下次读取前全量重建
+     */
+    private volatile boolean stale = true;
+
+    public ProjectTreeIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public void markStale() {
+        stale = true;
+    }
+
+    /**
+     * 全量扫描磁盘重建索引
+     *
+     * @return 扫描到的所有目录
+     */
+    public synchronized List<Path> rebuild() throws IOException {
+        NavigableSet<String> scanned = new TreeSet<>();
+        List<Path> scannedDirs = new ArrayList<>();
+        if (Files.isDirectory(root)) {
+            walk(root, scanned, scannedDirs);
+        }
+        files.addAll(scanned);
+        files.retainAll(scanned);
+        directories.retainAll(scannedDirs);
+        directories.addAll(scannedDirs);
+        stale = false;
+        return scannedDirs;
+    }
+
+    /**
+     * 文件或目录被创建、写入后加入索引
+     *
+     * @param path 文件或目录
+     * @return 新发现的目录（包括新建的上级目录）
+     */
+    public synchronized List<Path> add(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        String relative = relativize(absolute);
+        if (relative == null) {
+            return List.of();
+        }
+        List<Path> newDirs = new ArrayList<>();
+        for (Path dir = Files.isDirectory(absolute) ? absolute : absolute.getParent();
+             dir != null && dir.startsWith(root); dir = dir.getParent()) {
+            if (directories.add(dir)) {
+                newDirs.add(dir);
+            }
+        }
+        if (Files.isDirectory(absolute)) {
+            List<Path> scannedDirs = new ArrayList<>();
+            walk(absolute, files, scannedDirs);
+            for (Path dir : scannedDirs) {
+                if (directories.add(dir)) {
+                    newDirs.add(dir);
+                }
+            }
+        } else if (Files.isRegularFile(absolute)) {
+            files.add(relative);
+        }
+        return newDirs;
+    }
+
+    /**
+     * 文件被写入后加入索引，不检查磁盘（文件可能只存在于内存覆盖层中）
+     * 新建的目录在提交到磁盘后由监听发现
+     *
+     * @param path 文件
+     */
+    public synchronized void addFile(Path path) {
+        String relative = relativize(path.toAbsolutePath().normalize());
+        if (relative != null) {
+            files.add(relative);
+        }
+    }
+
+    /**
+     * 文件或目录被删除后从索引中移除，目录连同子树一起移除
+     *
+     * @param path 文件或目录
+     */
+    public synchronized void remove(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        String relative = relativize(absolute);
+        if (relative == null) {
+            return;
+        }
+        files.remove(relative);
+        files.subSet(relative + "/", true, relative + "0", false).clear();
+        directories.removeIf(dir -> dir.startsWith(absolute));
+    }
+
+    /**
+     * 列出目录下的所有文件，按相对深度、再按路径排序
+     *
+     * @param dir 目录
+     * @return 相对于 dir 的路径，dir 不在项目内时返回 null
+     */
+    public List<String> list(Path dir) {
+        Path absolute = dir.toAbsolutePath().normalize();
+        if (!absolute.startsWith(root)) {
+            return null;
+        }
+        String relative = joinNames(root.relativize(absolute));
+        NavigableSet<String> subtree = relative.isEmpty()
+                ? files
+                : files.subSet(relative + "/", true, relative + "0", false);
+        int prefixLength = relative.isEmpty() ? 0 : relative.length() + 1;
+        // 区间本身按路径有序，按深度分桶即可得到 (深度, 路径) 顺序
+        List<List<String>> byDepth = new ArrayList<>();
+        for (String file : subtree) {
+            String path = file.substring(prefixLength);
+            int depth = depthOf(path);
+            while (byDepth.size() <= depth) {
+                byDepth.add(new ArrayList<>());
+            }
+            byDepth.get(depth).add(path);
+        }
+        List<String> result = new ArrayList<>(subtree.size());
+        byDepth.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * 路径中 / 的个数，即相对深度
+     */
+    public static int depthOf(String relativePath) {
+        int depth = 0;
+        for (int i = 0; i < relativePath.length(); i++) {
+            if (relativePath.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * 判断是否应该忽略该文件或目录
+     */
+    public static boolean shouldIgnore(String fileName) {
+        if (IGNORED_NAMES.contains(fileName)) {
+            return true;
+        }
+        return IGNORED_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+    }
+
+    /**
+     * 转为相对根目录的路径，不在项目内或任意一级被忽略时返回 null
+     */
+    private String relativize(Path absolute) {
+        if (!absolute.startsWith(root) || absolute.equals(root)) {
+            return null;
+        }
+        Path relative = root.relativize(absolute);
+        for (Path name : relative) {
+            if (shouldIgnore(name.toString())) {
+                return null;
+            }
+        }
+        return joinNames(relative);
+    }
+
+    private static String joinNames(Path relative) {
+        StringBuilder joined = new StringBuilder();
+        for (Path name : relative) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            if (!joined.isEmpty()) {
+                joined.append('/');
+            }
+            joined.append(name);
+        }
+        return joined.toString();
+    }
+
+    private void walk(Path start, Set<String> target, List<Path> dirs) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(start) && shouldIgnore(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dirs.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relative = relativize(file);
+                if (relative != null) {
+                    target.add(relative);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // 遍历过程中被删除的文件直接跳过
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,210 @@
+package com.wang.wangaicodemother.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.wang.wangaicodemother.constants.AppConstant;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 项目文件树索引管理器
+ * 每个 Vue 项目一个索引，首次读取目录时构建；文件工具写入、删除文件时同步更新索引，
+ * 其他途径的改动（构建、手动修改等）由 WatchService 兜底。索引随应用的 AI 服务记忆绑定一起解绑
+ */
+@Slf4j
+@Component
+public class ProjectTreeIndexManager {
+
+    private final Cache<Long, ProjectTreeIndex> indexes = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .removalListener((Long appId, ProjectTreeIndex index, RemovalCause cause) -> {
+                log.debug("项目文件树索引移除，appId:{},原因:{}", appId, cause);
+                if (index != null) {
+                    unwatch(index);
+                }
+            })
+            .build();
+
+    /**
+     * 监听键到所属索引和目录的映射
+     */
+    private final Map<WatchKey, WatchedDir> watchedDirs = new ConcurrentHashMap<>();
+
+    /**
+     * 为空表示当前平台不支持监听，只依赖工具同步更新
+     */
+    private WatchService watchService;
+
+    private record WatchedDir(ProjectTreeIndex index, Path dir) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread.ofVirtual().name("project-tree-watcher").start(this::watchLoop);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("项目文件树监听不可用，仅由文件工具更新索引: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        indexes.invalidateAll();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("关闭项目文件树监听失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Vue 项目根目录
+     */
+    public static Path projectRoot(long appId) {
+        return Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + appId);
+    }
+
+    /**
+     * 列出目录下的所有文件，按相对深度、再按路径排序
+     *
+     * @param appId 应用 id
+     * @param dir   目录
+     * @return 相对于 dir 的路径，dir 不在项目内时返回 null
+     */
+    public List<String> listFiles(long appId, Path dir) throws IOException {
+        return listFiles(appId, dir, null);
+    }
+
+    /**
+     * 列出目录下的所有文件，按相对深度、再按路径排序
+     *
+     * @param appId        应用 id
+     * @param dir          目录
+     * @param afterRebuild 索引从磁盘重建后执行，用于补上尚未提交到磁盘的改动，可为空
+     * @return 相对于 dir 的路径，dir 不在项目内时返回 null
+     */
+    public List<String> listFiles(long appId, Path dir, Consumer<ProjectTreeIndex> afterRebuild) throws IOException {
+        ProjectTreeIndex index = indexes.get(appId, id -> new ProjectTreeIndex(projectRoot(id)));
+        if (index.isStale()) {
+            synchronized (index) {
+                if (index.isStale()) {
+                    watch(index, index.rebuild());
+                    if (afterRebuild != null) {
+                        afterRebuild.accept(index);
+                    }
+                    log.info("项目文件树索引构建完成，appId: {}", appId);
+                }
+            }
+        }
+        return index.list(dir);
+    }
+
+    /**
+     * 文件被写入或修改后更新索引，索引尚未构建时忽略
+     */
+    public void fileChanged(long appId, Path path) {
+        ProjectTreeIndex index = indexes.getIfPresent(appId);
+        if (index != null) {
+            index.addFile(path);
+        }
+    }
+
+    /**
+     * 文件被删除后更新索引，索引尚未构建时忽略
+     */
+    public void fileDeleted(long appId, Path path) {
+        ProjectTreeIndex index = indexes.getIfPresent(appId);
+        if (index != null) {
+            index.remove(path);
+        }
+    }
+
+    /**
+     * 移除应用的索引
+     */
+    public void evict(long appId) {
+        indexes.invalidate(appId);
+    }
+
+    private void watch(ProjectTreeIndex index, List<Path> dirs) {
+        if (watchService == null) {
+            return;
+        }
+        for (Path dir : dirs) {
+            try {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, new WatchedDir(index, dir));
+            } catch (IOException | ClosedWatchServiceException e) {
+                log.debug("注册目录监听失败，dir: {}, error: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private void unwatch(ProjectTreeIndex index) {
+        watchedDirs.entrySet().removeIf(entry -> {
+            if (entry.getValue().index() != index) {
+                return false;
+            }
+            entry.getKey().cancel();
+            return true;
+        });
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            WatchedDir watchedDir = watchedDirs.get(key);
+            if (watchedDir == null) {
+                key.cancel();
+                continue;
+            }
+            ProjectTreeIndex index = watchedDir.index();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    index.markStale();
+                    continue;
+                }
+                Path child = watchedDir.dir().resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    index.remove(child);
+                } else {
+                    try {
+                        watch(index, index.add(child));
+                    } catch (IOException e) {
+                        index.markStale();
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // 目录已被删除
+                watchedDirs.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.wang.wangaicodemother.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wang.wangaicodemother.config.RateLimitProperties;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 限流管理器
+ * 每个用户一个请求次数桶和一个模型 token 桶，本地扣减，按租约批量同步到 Redis 的窗口计数
+ */
+@Slf4j
+@Component
+public class RateLimitManager {
+
+    private static final String REQUEST_KEY_PREFIX = "rate:req:";
+
+    private static final String TOKEN_KEY_PREFIX = "rate:tok:";
+
+    private final Cache<String, LeasedTokenBucket> buckets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(2))
+            .build();
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 用户的限流对象
+     *
+     * @param userId 用户 ID
+     * @return 限流对象
+     */
+    public static String userKey(Long userId) {
+        return "user:" + userId;
+    }
+
+    /**
+     * 请求次数限流
+     *
+     * @param key 限流对象（用户 ID 或 IP）
+     * @return 0 表示放行，否则为建议的重试等待时间（秒）
+     */
+    public long tryAcquireRequest(String key) {
+        return requestBucket(key).tryAcquire(1);
+    }
+
+    /**
+     * 检查模型 token 额度是否还有剩余，不扣减
+     *
+     * @param key 限流对象
+     * @return 0 表示放行，否则为建议的重试等待时间（秒）
+     */
+    public long checkTokenBudget(String key) {
+        LeasedTokenBucket bucket = tokenBucket(key);
+        long retryAfter = bucket.tryAcquire(1);
+        if (retryAfter == 0) {
+            // 只是检查，归还刚才取走的一个
+            bucket.consume(-1);
+        }
+        return retryAfter;
+    }
+
+    /**
+     * 记录实际消耗的模型 token
+     *
+     * @param key    限流对象
+     * @param tokens token 数
+     */
+    public void consumeTokens(String key, long tokens) {
+        if (tokens > 0) {
+            tokenBucket(key).consume(tokens);
+        }
+    }
+
+    private LeasedTokenBucket requestBucket(String key) {
+        return buckets.get(REQUEST_KEY_PREFIX + key, bucketKey -> new LeasedTokenBucket(
+                rateLimitProperties.getRequestWindowSeconds() * 1000,
+                rateLimitProperties.getRequestLease(),
+                (window, permits) -> lease(bucketKey, window, permits,
+                        rateLimitProperties.getRequestLimit(), rateLimitProperties.getRequestWindowSeconds())));
+    }
+
+    private LeasedTokenBucket tokenBucket(String key) {
+        return buckets.get(TOKEN_KEY_PREFIX + key, bucketKey -> new LeasedTokenBucket(
+                rateLimitProperties.getTokenWindowSeconds() * 1000,
+                rateLimitProperties.getTokenLease(),
+                (window, permits) -> lease(bucketKey, window, permits,
+                        rateLimitProperties.getTokenLimit(), rateLimitProperties.getTokenWindowSeconds())));
+    }
+
+    /**
+     * 从 Redis 的窗口计数中租用额度
+     *
+     * @return 实际获得的数量，超出全局额度的部分不计入
+     */
+    private long lease(String bucketKey, long window, long permits, long limit, long windowSeconds) {
+        String redisKey = bucketKey + ":" + window;
+        try {
+            Long total = stringRedisTemplate.opsForValue().increment(redisKey, permits);
+            if (total == null) {
+                return permits;
+            }
+            if (total == permits) {
+                stringRedisTemplate.expire(redisKey, Duration.ofSeconds(windowSeconds * 2));
+            }
+            long before = total - permits;
+            return Math.max(0, Math.min(permits, limit - before));
+        } catch (Exception e) {
+            // Redis 不可用时放行，避免限流影响正常使用
+            log.warn("限流计数同步失败，暂时放行：{}", e.getMessage());
+            return permits;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.wang.wangaicodemother.manager;
 
 import com.wang.wangaicodemother.ai.tool.BaseTool;
+import com.wang.wangaicodemother.ai.tool.BaseToolExecutor;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +31,11 @@ public class ToolManager {
     @Resource
     private BaseTool[] tools;
 
+    /**
+     * 工具定义到执行器的映射，执行器声明调用涉及的文件，供工具循环并发执行互不冲突的调用
+     */
+    private Map<ToolSpecification, ToolExecutor> toolExecutors;
+
     /**
      * 初始化工具映射
      */
@@ -37,6 +45,7 @@ public class ToolManager {
             toolMap.put(tool.getToolName(), tool);
             log.info("注册工具: {} -> {}", tool.getToolName(), tool.getDisplayName());
         }
+        toolExecutors = BaseToolExecutor.forTools(tools);
         log.info("工具管理器初始化完成，共注册 {} 个工具", toolMap.size());
     }
 
@@ -58,4 +67,13 @@ public class ToolManager {
     public BaseTool[] getAllTools() {
         return tools;
     }
+
+    /**
+     * 获取工具定义和执行器
+     *
+     * @return 工具定义到执行器的映射
+     */
+    public Map<ToolSpecification, ToolExecutor> getToolExecutors() {
+        return toolExecutors;
+    }
 }
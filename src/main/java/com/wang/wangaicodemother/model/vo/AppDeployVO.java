@@ -0,0 +1,26 @@
+package com.wang.wangaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class AppDeployVO implements Serializable {
+
+    /**
+     * 部署访问地址
+     */
+    private String deployUrl;
+
+    /**
+     * 构建结果（REBUILT / UP_TO_DATE），不需要构建的应用为空
+     */
+    private String buildResult;
+
+    /**
+     * 构建结果说明
+     */
+    private String buildResultText;
+
+    private static final long serialVersionUID = 1L;
+}
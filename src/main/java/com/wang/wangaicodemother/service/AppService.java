@@ -2,13 +2,17 @@ package com.wang.wangaicodemother.service;
 
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
+import com.wang.wangaicodemother.core.admission.AdmissionStatus;
 import com.wang.wangaicodemother.model.dto.AppQueryRequest;
 import com.wang.wangaicodemother.model.entity.App;
 import com.wang.wangaicodemother.model.entity.User;
+import com.wang.wangaicodemother.model.vo.AppDeployVO;
 import com.wang.wangaicodemother.model.vo.AppVO;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 应用 服务层。
@@ -30,9 +34,12 @@ public interface AppService extends IService<App> {
      * @param userMessage
      * @param appId
      * @param loginUser
+     * @param coalesceWindow 请求指定的 SSE 帧合并窗口，可为空
+     * @param admissionListener 模型调用排队状态回调，可为空
      * @return
      */
-    Flux<String> chatToGenCode(String userMessage, String appId, User loginUser);
+    Flux<String> chatToGenCode(String userMessage, String appId, User loginUser, SseCoalesceProperties.Window coalesceWindow,
+                               Consumer<AdmissionStatus> admissionListener);
 
 
     /**
@@ -40,9 +47,9 @@ public interface AppService extends IService<App> {
      *
      * @param appId
      * @param loginUser
-     * @return
+     * @return 部署地址和构建结果
      */
-    String deployApp(Long appId, User loginUser);
+    AppDeployVO deployApp(Long appId, User loginUser);
 
 
     /**
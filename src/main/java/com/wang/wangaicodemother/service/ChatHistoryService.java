@@ -6,7 +6,7 @@ import com.mybatisflex.core.service.IService;
 import com.wang.wangaicodemother.model.dto.ChatHistoryQueryRequest;
 import com.wang.wangaicodemother.model.entity.ChatHistory;
 import com.wang.wangaicodemother.model.entity.User;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 
@@ -59,5 +59,5 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      * @param maxCount
      * @return
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
 }
@@ -2,23 +2,31 @@ package com.wang.wangaicodemother.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.wang.wangaicodemother.ai.model.message.StreamMessage;
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
 import com.wang.wangaicodemother.constants.AppConstant;
 import com.wang.wangaicodemother.core.AiCodeGeneratorFacade;
+import com.wang.wangaicodemother.core.admission.AdmissionStatus;
+import com.wang.wangaicodemother.core.admission.ModelAdmissionScheduler;
+import com.wang.wangaicodemother.core.builder.BuildLog;
+import com.wang.wangaicodemother.core.builder.BuildResult;
 import com.wang.wangaicodemother.core.builder.VueProjectBuilder;
+import com.wang.wangaicodemother.core.deploy.SiteDeployer;
 import com.wang.wangaicodemother.core.handler.StreamHandlerExecutor;
 import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
 import com.wang.wangaicodemother.exception.ErrorCode;
 import com.wang.wangaicodemother.exception.ThrowUtils;
+import com.wang.wangaicodemother.manager.RateLimitManager;
 import com.wang.wangaicodemother.mapper.AppMapper;
 import com.wang.wangaicodemother.model.dto.AppQueryRequest;
 import com.wang.wangaicodemother.model.entity.App;
 import com.wang.wangaicodemother.model.entity.User;
+import com.wang.wangaicodemother.model.vo.AppDeployVO;
 import com.wang.wangaicodemother.model.vo.AppVO;
 import com.wang.wangaicodemother.model.vo.UserVO;
 import com.wang.wangaicodemother.service.AppService;
@@ -36,6 +44,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -62,9 +71,21 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private VueProjectBuilder vueProjectBuilder;
 
+    @Resource
+    private SiteDeployer siteDeployer;
+
     @Resource
     private ScreenshotService screenshotService;
 
+    @Resource
+    private SseCoalesceProperties sseCoalesceProperties;
+
+    @Resource
+    private ModelAdmissionScheduler modelAdmissionScheduler;
+
+    @Resource
+    private RateLimitManager rateLimitManager;
+
 
     /**
      * 获取App信息和关联的用户信息
@@ -139,7 +160,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     }
 
     @Override
-    public Flux<String> chatToGenCode(String userMessage, String appId, User loginUser) {
+    public Flux<String> chatToGenCode(String userMessage, String appId, User loginUser, SseCoalesceProperties.Window coalesceWindow,
+                                      Consumer<AdmissionStatus> admissionListener) {
         if (appId == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用id不能为空");
         }
@@ -157,12 +179,17 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
         String codeType = app.getCodeGenType();
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeType);
-        Flux<String> streamFlux = aiCodeGeneratorFacade.generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId);
-        return streamHandlerExecutor.doExecute(streamFlux, chatHistoryService, Long.parseLong(appId), loginUser, codeGenTypeEnum);
+        // 所有生成类型都使用推理模型，获得调用许可后才真正请求模型
+        Flux<StreamMessage> streamFlux = modelAdmissionScheduler.admit(ModelAdmissionScheduler.REASONING_STREAMING_MODEL, loginUser,
+                () -> aiCodeGeneratorFacade.generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId,
+                        tokenUsage -> rateLimitManager.consumeTokens(RateLimitManager.userKey(loginUser.getId()), tokenUsage.totalTokenCount())),
+                admissionListener);
+        SseCoalesceProperties.Window window = sseCoalesceProperties.resolve(codeGenTypeEnum, coalesceWindow);
+        return streamHandlerExecutor.doExecute(streamFlux, chatHistoryService, Long.parseLong(appId), loginUser, codeGenTypeEnum, window);
     }
 
     @Override
-    public String deployApp(Long appId, User loginUser) {
+    public AppDeployVO deployApp(Long appId, User loginUser) {
         //校验参数
         if (appId == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用id不能为空");
@@ -201,25 +228,33 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
         // 7. Vue 项目特殊处理：执行构建
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeType);
+        BuildResult buildResult = null;
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
             // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDir);
-            ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败，请检查代码和依赖");
+            buildResult = vueProjectBuilder.buildProject(sourceDir);
+            if (!buildResult.isSuccess()) {
+                // 附上构建输出末尾，便于定位失败原因
+                BuildLog buildLog = vueProjectBuilder.getBuildLog(sourceDir);
+                String tail = buildLog == null ? "" : String.join("\n", buildLog.tail(10));
+                log.error("Vue 项目构建失败，appId: {}, 输出末尾:\n{}", appId, tail);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR,
+                        StrUtil.isBlank(tail) ? "Vue 项目构建失败，请检查代码和依赖" : "Vue 项目构建失败，请检查代码和依赖：\n" + tail);
+            }
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDir, "dist");
             ThrowUtils.throwIf(!distDir.exists(), ErrorCode.SYSTEM_ERROR, "Vue 项目构建完成但未生成 dist 目录");
             // 将 dist 目录作为部署源
             file = distDir;
-            log.info("Vue 项目构建成功，将部署 dist 目录: {}", distDir.getAbsolutePath());
+            log.info("Vue 项目{}，将部署 dist 目录: {}", buildResult.getText(), distDir.getAbsolutePath());
         }
 
 
-        //复制文件到部署目录
-        String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + File.separator + deployKey;
+        //写入新的部署版本并原子切换线上版本，未变化的文件从上一版本硬链接
         try {
-            FileUtil.copyContent(file, new File(deployDirPath), true);
+            siteDeployer.deploy(file.toPath(), deployKey);
         } catch (Exception e) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码复制失败");
+            log.error("应用部署失败，appId: {}, error: {}", appId, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码部署失败");
         }
         //更新app部署状态
         App update = new App();
@@ -233,7 +268,13 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         String appDeployUrl = String.format("%s/%s/index.html", AppConstant.CODE_DEPLOY_HOST, deployKey);
         //异步生成截图
         generateAppScreenshotAsync(appId, appDeployUrl);
-        return appDeployUrl;
+        AppDeployVO appDeployVO = new AppDeployVO();
+        appDeployVO.setDeployUrl(appDeployUrl);
+        if (buildResult != null) {
+            appDeployVO.setBuildResult(buildResult.name());
+            appDeployVO.setBuildResultText(buildResult.getText());
+        }
+        return appDeployVO;
     }
 
 
@@ -9,6 +9,8 @@ import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.wang.wangaicodemother.enums.ChatHistoryMessageTypeEnum;
 import com.wang.wangaicodemother.exception.BusinessException;
 import com.wang.wangaicodemother.exception.ErrorCode;
+import com.wang.wangaicodemother.manager.ChatHistoryWriteBehindManager;
+import com.wang.wangaicodemother.manager.ChatMemoryVersionManager;
 import com.wang.wangaicodemother.mapper.ChatHistoryMapper;
 import com.wang.wangaicodemother.model.dto.ChatHistoryQueryRequest;
 import com.wang.wangaicodemother.model.entity.App;
@@ -18,14 +20,17 @@ import com.wang.wangaicodemother.service.AppService;
 import com.wang.wangaicodemother.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 对话历史 服务层实现。
@@ -36,6 +41,13 @@ import java.util.List;
 @Slf4j
 @Lazy
 public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatHistory> implements ChatHistoryService {
+
+    @Resource
+    private ChatHistoryWriteBehindManager chatHistoryWriteBehindManager;
+
+    @Resource
+    private ChatMemoryVersionManager chatMemoryVersionManager;
+
     @Override
     public boolean addChatHistoryMessage(String userMessage, Long appId, Long userId, String chatType) {
         if (StrUtil.isBlank(userMessage)) {
@@ -60,6 +72,11 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                 .appId(appId)
                 .userId(userId)
                 .build();
+        // 异步批量写库，不阻塞流式回调线程
+        if (chatHistoryWriteBehindManager.isEnabled()) {
+            chatHistoryWriteBehindManager.enqueue(chatHistory);
+            return true;
+        }
         return save(chatHistory);
     }
 
@@ -99,7 +116,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             queryWrapper.orderBy(sortField, "ascend".equals(sortOrder));
         } else {
             // 默认按创建时间降序排列
-            queryWrapper.orderBy("createTime", true);
+            queryWrapper.orderBy("createTime", true).orderBy("id", true);
         }
         return queryWrapper;
     }
@@ -116,6 +133,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         chatHistoryQueryRequest.setAppId(appId);
         chatHistoryQueryRequest.setLastCreateTime(time);
         QueryWrapper queryWrapper = getQueryWrapper(chatHistoryQueryRequest);
+        chatHistoryWriteBehindManager.flushPending();
         return this.page(Page.of(1, pageSize), queryWrapper);
     }
 
@@ -123,18 +141,32 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     public boolean deleteByAppId(long appId) {
         QueryWrapper queryWrapper = new QueryWrapper();
         queryWrapper.where("appId", appId);
-        return remove(queryWrapper);
+        // 先丢弃缓冲和日志段中该应用的消息，避免退避重试的日志段在删除后又写回
+        chatHistoryWriteBehindManager.discard(appId);
+        boolean removed = remove(queryWrapper);
+        // Redis 中的对话记忆随之失效，下次对话重新从数据库加载
+        chatMemoryVersionManager.bumpHistoryVersion(appId);
+        return removed;
     }
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
         try {
+            // 最新的用户消息可能还在写缓冲中，先写库再查询
+            boolean allWritten = chatHistoryWriteBehindManager.flushPending();
             // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
+            // createTime 只精确到秒，同一秒内的消息按 ID（雪花算法，按写入顺序递增）排序
+            // 走 idx_appId_createTime 索引（二级索引隐含主键 id），按索引顺序倒序扫描，无需额外排序
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
                     .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
+                    .orderBy(ChatHistory::getId, false)
+                    .limit(allWritten ? 1 : 0, allWritten ? maxCount : maxCount + 1);
             List<ChatHistory> historyList = this.list(queryWrapper);
+            if (!allWritten) {
+                // 还有日志段在退避重试，合并其中未写库的消息后再排除最新的一条
+                historyList = mergeUnwritten(historyList, chatHistoryWriteBehindManager.unwritten(appId), maxCount);
+            }
             if (CollUtil.isEmpty(historyList)) {
                 return 0;
             }
@@ -162,4 +194,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    /**
+     * 合并数据库中的消息和尚未写库的消息，按创建时间和 ID 倒序，跳过最新的一条后取 maxCount 条
+     */
+    private static List<ChatHistory> mergeUnwritten(List<ChatHistory> saved, List<ChatHistory> unwritten, int maxCount) {
+        Map<Long, ChatHistory> merged = new HashMap<>();
+        saved.forEach(history -> merged.put(history.getId(), history));
+        unwritten.forEach(history -> merged.putIfAbsent(history.getId(), history));
+        return merged.values().stream()
+                // 数据库中的 createTime 只精确到秒，比较时同样截断
+                .sorted(Comparator.comparing((ChatHistory history) -> history.getCreateTime().withNano(0))
+                        .thenComparing(ChatHistory::getId)
+                        .reversed())
+                .skip(1)
+                .limit(maxCount)
+                .toList();
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.wang.wangaicodemother.utils;
+
+import java.io.File;
+
+/**
+ * 系统命令查找工具
+ */
+public class ExecutableUtil {
+
+    private ExecutableUtil() {
+    }
+
+    /**
+     * 在 PATH 中查找可执行文件
+     *
+     * @param name 命令名
+     * @return 绝对路径，找不到时返回 null
+     */
+    public static String find(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            File file = new File(dir, name);
+            if (file.isFile() && file.canExecute()) {
+                return file.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+}
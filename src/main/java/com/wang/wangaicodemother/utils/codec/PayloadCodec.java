@@ -0,0 +1,29 @@
+package com.wang.wangaicodemother.utils.codec;
+
+/**
+ * 压缩编解码器
+ * 每个实现有固定的 ID，写入数据头部；实现一旦上线不能修改，调整算法或字典必须新增 ID
+ */
+public interface PayloadCodec {
+
+    /**
+     * 编解码器 ID，两个字符
+     */
+    String id();
+
+    /**
+     * 压缩
+     *
+     * @param data 原始数据
+     * @return 压缩后的数据
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压
+     *
+     * @param data 压缩后的数据
+     * @return 原始数据
+     */
+    byte[] decompress(byte[] data);
+}
@@ -0,0 +1,81 @@
+package com.wang.wangaicodemother.utils.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * 文本压缩编码
+ * 编码结果为 "\u0001" + 编解码器 ID + ":" + Base64(压缩数据)，没有这个头部的文本按原文处理，
+ * 因此旧数据无需迁移；以 "\u0001" 开头的原文总是会被编码，避免和编码结果混淆
+ */
+@Slf4j
+public final class PayloadCodecs {
+
+    private static final char MARKER = '\u0001';
+
+    private static final int HEADER_LENGTH = 4;
+
+    /**
+     * 小于该字节数的文本不压缩
+     */
+    private static final int MIN_COMPRESS_BYTES = 256;
+
+    /**
+     * Redis 热数据：最快的压缩级别
+     */
+    public static final PayloadCodec FAST = new DeflatePayloadCodec("f1", Deflater.BEST_SPEED);
+
+    private static final Map<String, PayloadCodec> CODECS = Map.of(
+            FAST.id(), FAST
+    );
+
+    private PayloadCodecs() {
+    }
+
+    /**
+     * 压缩文本，压缩后没有变小时返回原文
+     *
+     * @param text  原文
+     * @param codec 编解码器
+     * @return 编码后的文本
+     */
+    public static String encode(String text, PayloadCodec codec) {
+        if (text == null) {
+            return null;
+        }
+        boolean mustEncode = isEncoded(text);
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        if (!mustEncode && data.length < MIN_COMPRESS_BYTES) {
+            return text;
+        }
+        String encoded = MARKER + codec.id() + ":" + Base64.getEncoder().encodeToString(codec.compress(data));
+        return mustEncode || encoded.length() < text.length() ? encoded : text;
+    }
+
+    /**
+     * 解码文本，未编码的文本原样返回
+     *
+     * @param stored 存储的文本
+     * @return 原文
+     */
+    public static String decode(String stored) {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        PayloadCodec codec = CODECS.get(stored.substring(1, 3));
+        if (codec == null || stored.charAt(3) != ':') {
+            log.warn("未知的压缩格式：{}", stored.substring(0, Math.min(stored.length(), HEADER_LENGTH)));
+            return stored;
+        }
+        byte[] data = Base64.getDecoder().decode(stored.substring(HEADER_LENGTH));
+        return new String(codec.decompress(data), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isEncoded(String text) {
+        return text != null && text.length() >= HEADER_LENGTH && text.charAt(0) == MARKER;
+    }
+}
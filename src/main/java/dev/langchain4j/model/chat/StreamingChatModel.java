@@ -74,6 +74,11 @@ public interface StreamingChatModel {
                 ChatModelListenerUtils.onError(error, finalChatRequest, provider(), attributes, listeners);
                 handler.onError(error);
             }
+
+            @Override
+            public boolean isCancelled() {
+                return handler.isCancelled();
+            }
         };
 
         onRequest(finalChatRequest, provider(), attributes, listeners);
@@ -59,4 +59,15 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Whether the consumer of this stream has gone away (e.g. the client disconnected).
+     * The model implementation polls this flag while reading the response and aborts the HTTP request once it
+     * returns {@code true}; no further callbacks should be expected after that.
+     *
+     * @return {@code true} if the streaming should be aborted
+     */
+    default boolean isCancelled() {
+        return false;
+    }
 }
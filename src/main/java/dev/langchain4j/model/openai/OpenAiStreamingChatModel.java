@@ -1,7 +1,14 @@
 package dev.langchain4j.model.openai;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
 import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
 import dev.langchain4j.internal.ExceptionMapper;
 import dev.langchain4j.internal.ToolExecutionRequestBuilder;
 import dev.langchain4j.model.ModelProvider;
@@ -18,6 +25,9 @@ import dev.langchain4j.model.openai.internal.chat.*;
 import dev.langchain4j.model.openai.internal.shared.StreamOptions;
 import dev.langchain4j.model.openai.spi.OpenAiStreamingChatModelBuilderFactory;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +46,11 @@ import static java.time.Duration.ofSeconds;
  */
 public class OpenAiStreamingChatModel implements StreamingChatModel {
 
+    /**
+     * Handler of the request being sent on the current thread, captured by {@link CancellableHttpClient}.
+     */
+    private static final ThreadLocal<StreamingChatResponseHandler> CURRENT_HANDLER = new ThreadLocal<>();
+
     private final OpenAiClient client;
     private final OpenAiChatRequestParameters defaultRequestParameters;
     private final Boolean strictJsonSchema;
@@ -44,7 +59,8 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
 
     public OpenAiStreamingChatModel(OpenAiStreamingChatModelBuilder builder) {
         this.client = OpenAiClient.builder()
-                .httpClientBuilder(builder.httpClientBuilder)
+                .httpClientBuilder(new CancellableHttpClientBuilder(
+                        getOrDefault(builder.httpClientBuilder, HttpClientBuilderLoader::loadHttpClientBuilder)))
                 .baseUrl(getOrDefault(builder.baseUrl, DEFAULT_OPENAI_URL))
                 .apiKey(builder.apiKey)
                 .organizationId(builder.organizationId)
@@ -122,6 +138,22 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
 
+        if (handler.isCancelled()) {
+            return;
+        }
+
+        CURRENT_HANDLER.set(handler);
+        try {
+            doChat(openAiRequest, openAiResponseBuilder, toolBuilder, handler);
+        } finally {
+            CURRENT_HANDLER.remove();
+        }
+    }
+
+    private void doChat(ChatCompletionRequest openAiRequest,
+                        OpenAiStreamingResponseBuilder openAiResponseBuilder,
+                        ToolExecutionRequestBuilder toolBuilder,
+                        StreamingChatResponseHandler handler) {
         client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
                     openAiResponseBuilder.append(partialResponse);
@@ -225,6 +257,104 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         return OPEN_AI;
     }
 
+    /**
+     * Wraps the HTTP client so that the SSE response body is closed as soon as the handler reports
+     * {@link StreamingChatResponseHandler#isCancelled()}. The upstream {@code ResponseHandle.cancel()} is not
+     * supported, so aborting the read is the only way to stop a running request.
+     */
+    private static class CancellableHttpClientBuilder implements HttpClientBuilder {
+
+        private final HttpClientBuilder delegate;
+
+        private CancellableHttpClientBuilder(HttpClientBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            delegate.connectTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            delegate.readTimeout(timeout);
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return new CancellableHttpClient(delegate.build());
+        }
+    }
+
+    private static class CancellableHttpClient implements HttpClient {
+
+        private final HttpClient delegate;
+
+        private CancellableHttpClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException, RuntimeException {
+            return delegate.execute(request);
+        }
+
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            StreamingChatResponseHandler handler = CURRENT_HANDLER.get();
+            if (handler == null) {
+                delegate.execute(request, parser, listener);
+                return;
+            }
+            // Parsing happens on the HTTP client's thread, so capture the handler here
+            delegate.execute(request,
+                    (inputStream, parserListener) -> parser.parse(new CancellableInputStream(inputStream, handler), parserListener),
+                    listener);
+        }
+    }
+
+    private static class CancellableInputStream extends FilterInputStream {
+
+        private final StreamingChatResponseHandler handler;
+
+        private CancellableInputStream(InputStream in, StreamingChatResponseHandler handler) {
+            super(in);
+            this.handler = handler;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        private void checkCancelled() throws IOException {
+            if (handler.isCancelled()) {
+                // Closing the body drops the connection; the parser stops on the IOException
+                close();
+                throw new IOException("Streaming cancelled");
+            }
+        }
+    }
+
     public static OpenAiStreamingChatModelBuilder builder() {
         for (OpenAiStreamingChatModelBuilderFactory factory : loadFactories(OpenAiStreamingChatModelBuilderFactory.class)) {
             return factory.get();
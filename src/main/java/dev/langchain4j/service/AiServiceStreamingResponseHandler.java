@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -35,6 +36,7 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 @Internal
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AiServiceStreamingResponseHandler.class);
+    private static final String CANCELLED_TOOL_RESULT = "Cancelled by user, tool was not executed";
 
     private final ChatExecutor chatExecutor;
     private final AiServiceContext context;
@@ -57,6 +59,7 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Map<String, ToolExecutor> toolExecutors;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final AtomicBoolean cancelled;
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -73,7 +76,8 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            AtomicBoolean cancelled) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -93,10 +97,19 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.cancelled = ensureNotNull(cancelled, "cancelled");
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
     }
 
     @Override
     public void onPartialResponse(String partialResponse) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         if (hasOutputGuardrails) {
             responseBuffer.add(partialResponse);
@@ -113,14 +126,28 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
+        if (isCancelled()) {
+            // The consumer is gone: do not record a half-finished turn and do not start the next round
+            LOG.debug("Streaming cancelled, dropping complete response for memory {}", memoryId);
+            return;
+        }
+
         AiMessage aiMessage = completeResponse.aiMessage();
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            // Independent calls run concurrently, results are added to memory in request order
+            ToolCallBatch batch = ToolCallBatch.dispatch(
+                    toolExecutionRequests, toolExecutors, memoryId, this::isCancelled, CANCELLED_TOOL_RESULT);
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+                String toolExecutionResult = batch.result(i);
+                if (CANCELLED_TOOL_RESULT.equals(toolExecutionResult)) {
+                    // Every tool call in memory must be followed by its result, otherwise the next request is rejected
+                    addToMemory(ToolExecutionResultMessage.from(toolExecutionRequest, CANCELLED_TOOL_RESULT));
+                    continue;
+                }
                 ToolExecutionResultMessage toolExecutionResultMessage =
                         ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
                 addToMemory(toolExecutionResultMessage);
@@ -134,6 +161,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                 }
             }
 
+            if (isCancelled()) {
+                LOG.debug("Streaming cancelled, skipping remaining tool executions for memory {}", memoryId);
+                return;
+            }
+
             ChatRequest chatRequest = ChatRequest.builder()
                     .messages(messagesToSend(memoryId))
                     .toolSpecifications(toolSpecifications)
@@ -154,7 +186,8 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolSpecifications,
                     toolExecutors,
                     commonGuardrailParams,
-                    methodKey);
+                    methodKey,
+                    cancelled);
 
             context.streamingChatModel.chat(chatRequest, handler);
         } else {
@@ -217,6 +250,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onError(Throwable error) {
+        if (isCancelled()) {
+            // Aborting the HTTP request surfaces as an I/O error, which nobody is listening to anymore
+            LOG.debug("Ignored error after streaming was cancelled: {}", error.toString());
+            return;
+        }
         if (errorHandler != null) {
             try {
                 errorHandler.accept(error);
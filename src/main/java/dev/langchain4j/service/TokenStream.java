@@ -80,4 +80,13 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the token stream: the in-flight LLM request is aborted, pending tool executions are skipped
+     * and no further callbacks will be invoked.
+     * <p>
+     * Safe to call multiple times and before {@link #start()}.
+     */
+    default void cancel() {
+    }
 }
@@ -0,0 +1,118 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.Internal;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.tool.ConflictAwareToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Executes the tool calls returned in one model turn. Calls that do not conflict run concurrently on virtual threads;
+ * calls that share a conflict key (see {@link ConflictAwareToolExecutor}) run in the order the model requested them.
+ * Results are always consumed in request order.
+ */
+@Internal
+class ToolCallBatch {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<CompletableFuture<String>> results;
+
+    private ToolCallBatch(List<CompletableFuture<String>> results) {
+        this.results = results;
+    }
+
+    /**
+     * Dispatches all requests. A call that has not started when {@code cancelled} turns true yields
+     * {@code cancelledResult} instead of being executed.
+     */
+    static ToolCallBatch dispatch(List<ToolExecutionRequest> requests,
+                                  Map<String, ToolExecutor> toolExecutors,
+                                  Object memoryId,
+                                  BooleanSupplier cancelled,
+                                  String cancelledResult) {
+        List<CompletableFuture<String>> results = new ArrayList<>(requests.size());
+        if (requests.size() == 1) {
+            // Nothing to overlap with, keep the call on the callback thread
+            ToolExecutionRequest request = requests.get(0);
+            results.add(CompletableFuture.completedFuture(
+                    cancelled.getAsBoolean() ? cancelledResult : execute(toolExecutors, request, memoryId)));
+            return new ToolCallBatch(results);
+        }
+        Map<String, CompletableFuture<?>> lastByKey = new HashMap<>();
+        List<CompletableFuture<?>> sinceBarrier = new ArrayList<>();
+        CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);
+        for (ToolExecutionRequest request : requests) {
+            Set<String> keys = conflictKeys(toolExecutors.get(request.name()), request, memoryId);
+            List<CompletableFuture<?>> dependencies = new ArrayList<>();
+            dependencies.add(barrier);
+            if (keys == null) {
+                dependencies.addAll(sinceBarrier);
+            } else {
+                for (String key : keys) {
+                    CompletableFuture<?> previous = lastByKey.get(key);
+                    if (previous != null) {
+                        dependencies.add(previous);
+                    }
+                }
+            }
+            CompletableFuture<String> result = CompletableFuture
+                    .allOf(dependencies.toArray(CompletableFuture[]::new))
+                    // A failed predecessor must not prevent later calls from running
+                    .handle((ignored, error) -> null)
+                    .thenApplyAsync(ignored -> cancelled.getAsBoolean()
+                            ? cancelledResult
+                            : execute(toolExecutors, request, memoryId), EXECUTOR);
+            results.add(result);
+            if (keys == null) {
+                barrier = result;
+                sinceBarrier.clear();
+                lastByKey.clear();
+            } else {
+                sinceBarrier.add(result);
+                for (String key : keys) {
+                    lastByKey.put(key, result);
+                }
+            }
+        }
+        return new ToolCallBatch(results);
+    }
+
+    /**
+     * Waits for the result of the call at {@code index}, rethrowing whatever the tool executor threw.
+     */
+    String result(int index) {
+        try {
+            return results.get(index).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static String execute(Map<String, ToolExecutor> toolExecutors, ToolExecutionRequest request, Object memoryId) {
+        return toolExecutors.get(request.name()).execute(request, memoryId);
+    }
+
+    private static Set<String> conflictKeys(ToolExecutor toolExecutor, ToolExecutionRequest request, Object memoryId) {
+        if (toolExecutor instanceof ConflictAwareToolExecutor conflictAware) {
+            return conflictAware.conflictKeys(request, memoryId);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package dev.langchain4j.service.tool;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+
+import java.util.Set;
+
+/**
+ * A {@link ToolExecutor} that declares which resources a call touches, so that independent calls returned in the
+ * same model turn can be executed concurrently. Calls sharing at least one key keep the order in which the model
+ * requested them. Executors that do not implement this interface conflict with every other call.
+ */
+public interface ConflictAwareToolExecutor extends ToolExecutor {
+
+    /**
+     * @param request  the tool execution request
+     * @param memoryId the memory id of the current invocation
+     * @return keys of the resources touched by this call, an empty set if it touches nothing shared,
+     * or {@code null} if it conflicts with every other call
+     */
+    Set<String> conflictKeys(ToolExecutionRequest request, Object memoryId);
+}
@@ -0,0 +1,116 @@
+package com.wang.wangaicodemother.ai;
+
+import com.wang.wangaicodemother.ai.tool.BaseToolExecutor;
+import com.wang.wangaicodemother.ai.tool.FileDeleteTool;
+import com.wang.wangaicodemother.ai.tool.FileDirReadTool;
+import com.wang.wangaicodemother.ai.tool.FileModifyTool;
+import com.wang.wangaicodemother.ai.tool.FileReadTool;
+import com.wang.wangaicodemother.ai.tool.FileWriteTool;
+import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对比冷启动应用首条消息的延迟：每个应用单独构建 AI 服务 vs 共享模板 + 按 appId 绑定记忆
+ * 模型响应用本地桩代替，只统计服务构建和记忆绑定的开销；耗时只输出日志，默认不执行
+ */
+@Slf4j
+@Tag("benchmark")
+class AICodeServiceFactoryBenchmarkTest {
+
+    private static final int APPS = 200;
+
+    private static final Map<ToolSpecification, ToolExecutor> TOOLS = BaseToolExecutor.forTools(
+            new FileWriteTool(), new FileReadTool(), new FileModifyTool(), new FileDeleteTool(), new FileDirReadTool());
+
+    /**
+     * 立即返回一个片段并结束的模型
+     */
+    private static final StreamingChatModel STUB_MODEL = new StreamingChatModel() {
+        @Override
+        public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            handler.onPartialResponse("ok");
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("ok")).build());
+        }
+    };
+
+    @Test
+    void compareColdAppFirstMessageLatency() throws InterruptedException {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        // 原流程：每个应用从原型 Bean 创建模型客户端，并重新构建带工具的 AI 服务
+        LongFunction<Assistant> perApp = appId -> {
+            OpenAiStreamingChatModel.builder()
+                    .baseUrl("http://localhost:1")
+                    .apiKey("benchmark")
+                    .modelName("benchmark")
+                    .build();
+            MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                    .id(appId)
+                    .maxMessages(35)
+                    .chatMemoryStore(store)
+                    .build();
+            return AICodeServiceFactory.buildTemplate(CodeGenTypeEnum.VUE_PROJECT, null, STUB_MODEL, TOOLS, memoryId -> chatMemory);
+        };
+        // 现流程：模板启动时创建一次，每个应用只绑定记忆
+        Assistant template = AICodeServiceFactory.buildTemplate(CodeGenTypeEnum.VUE_PROJECT, null, STUB_MODEL, TOOLS,
+                memoryId -> MessageWindowChatMemory.builder().id(memoryId).maxMessages(35).chatMemoryStore(store).build());
+        LongFunction<Assistant> shared = appId -> template;
+
+        measure("per-app", perApp, 1_000_000);
+        measure("template", shared, 2_000_000);
+        measure("per-app", perApp, 3_000_000);
+        measure("template", shared, 4_000_000);
+        // 共享模板时每个应用仍然写入自己的记忆
+        for (long appId = 4_000_000; appId < 4_000_000 + APPS; appId++) {
+            assertEquals(2, store.getMessages(appId).stream().filter(message -> !(message instanceof SystemMessage)).count());
+        }
+    }
+
+    private static long measure(String name, LongFunction<Assistant> serviceFactory, long firstAppId) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < APPS; i++) {
+            long appId = firstAppId + i;
+            CountDownLatch firstToken = new CountDownLatch(1);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            long start = System.nanoTime();
+            serviceFactory.apply(appId)
+                    .generateVueProjectCodeStream(appId, "做一个待办清单")
+                    .onPartialResponse(partial -> firstToken.countDown())
+                    .onCompleteResponse(response -> {
+                    })
+                    .onError(throwable -> {
+                        error.set(throwable);
+                        firstToken.countDown();
+                    })
+                    .start();
+            assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+            assertNull(error.get(), () -> "appId " + appId + " 生成失败：" + error.get());
+            total += System.nanoTime() - start;
+        }
+        long average = total / APPS;
+        log.info("{}: 冷启动应用首个片段平均 {} us", name, average / 1000);
+        return average;
+    }
+}
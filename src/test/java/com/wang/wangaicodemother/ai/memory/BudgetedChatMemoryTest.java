@@ -0,0 +1,121 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BudgetedChatMemoryTest {
+
+    private static final String FILE = "<div class=\"card\">card</div>\n".repeat(100);
+
+    @Test
+    void stripsStaleFilesThenEvictsAndSummarizesOldTurns() {
+        List<List<ChatMessage>> summarized = new ArrayList<>();
+        BudgetedChatMemory chatMemory = BudgetedChatMemory.builder()
+                .id(1L)
+                .store(new InMemoryChatMemoryStore())
+                .maxMessages(12)
+                .tokenBudget(2000)
+                .staleContentMinChars(200)
+                .summarizer((previous, evicted) -> {
+                    summarized.add(evicted);
+                    return (previous == null ? "" : previous + "；") + "第" + summarized.size() + "次摘要";
+                })
+                .build();
+        for (int turn = 0; turn < 5; turn++) {
+            chatMemory.add(SystemMessage.from("系统提示词"));
+            chatMemory.add(UserMessage.from("第 " + turn + " 轮"));
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call_" + turn)
+                    .name("writeFile")
+                    .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + FILE.replace("\"", "\\\"").replace("\n", "\\n") + "\"}")
+                    .build();
+            chatMemory.add(AiMessage.from(request));
+            chatMemory.add(ToolExecutionResultMessage.from(request, "文件写入成功: src/App.vue"));
+            chatMemory.add(AiMessage.from("完成"));
+        }
+        chatMemory.summaryFuture().join();
+
+        List<ChatMessage> messages = chatMemory.messages();
+        assertTrue(chatMemory.estimatedTokens() <= 2000);
+        assertTrue(messages.size() - 1 <= 12);
+        assertTrue(chatMemory.savedTokens() > 0);
+        assertFalse(summarized.isEmpty());
+        // 系统消息只有一条，摘要追加在末尾
+        SystemMessage systemMessage = assertInstanceOf(SystemMessage.class, messages.getFirst());
+        assertTrue(systemMessage.text().startsWith("系统提示词" + BudgetedChatMemory.SUMMARY_HEADER));
+        assertEquals(1, messages.stream().filter(SystemMessage.class::isInstance).count());
+        // 最新一轮保持完整，更早的轮次只保留文件引用
+        AiMessage latestWrite = (AiMessage) messages.get(messages.size() - 3);
+        assertTrue(latestWrite.toolExecutionRequests().getFirst().arguments().length() > FILE.length());
+        for (ChatMessage message : messages.subList(1, messages.size() - 4)) {
+            if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                assertTrue(aiMessage.toolExecutionRequests().getFirst().arguments().contains("内容已省略"));
+            }
+        }
+        // 每一轮都以用户消息开始，工具调用和结果不会被拆开
+        assertInstanceOf(UserMessage.class, messages.get(1));
+    }
+
+    @Test
+    void summaryPendingDuringClearIsDropped() {
+        CountDownLatch summarizing = new CountDownLatch(1);
+        CountDownLatch cleared = new CountDownLatch(1);
+        BudgetedChatMemory chatMemory = BudgetedChatMemory.builder()
+                .id(3L)
+                .store(new InMemoryChatMemoryStore())
+                .maxMessages(2)
+                .tokenBudget(10_000)
+                .summarizer((previous, evicted) -> {
+                    summarizing.countDown();
+                    try {
+                        cleared.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "旧对话摘要";
+                })
+                .build();
+        chatMemory.add(UserMessage.from("第 1 轮"));
+        chatMemory.add(AiMessage.from("完成"));
+        chatMemory.add(UserMessage.from("第 2 轮"));
+        assertDoesNotThrow(() -> summarizing.await());
+        chatMemory.clear();
+        cleared.countDown();
+        chatMemory.summaryFuture().join();
+        assertTrue(chatMemory.messages().isEmpty());
+    }
+
+    @Test
+    void systemMessageIsNotRewrittenWhenUnchanged() {
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        BudgetedChatMemory chatMemory = BudgetedChatMemory.builder()
+                .id(2L)
+                .store(store)
+                .maxMessages(35)
+                .tokenBudget(10_000)
+                .build();
+        chatMemory.add(SystemMessage.from("A"));
+        chatMemory.add(UserMessage.from("hi"));
+        store.updateMessages(2L, List.of(SystemMessage.from(BudgetedChatMemory.withSummary("A", "摘要")), UserMessage.from("hi")));
+        chatMemory.add(SystemMessage.from("A"));
+        assertEquals("A" + BudgetedChatMemory.SUMMARY_HEADER + "摘要", ((SystemMessage) chatMemory.messages().getFirst()).text());
+        chatMemory.add(SystemMessage.from("B"));
+        assertEquals("B" + BudgetedChatMemory.SUMMARY_HEADER + "摘要", ((SystemMessage) chatMemory.messages().getFirst()).text());
+    }
+}
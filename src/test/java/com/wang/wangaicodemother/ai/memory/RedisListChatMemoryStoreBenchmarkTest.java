@@ -0,0 +1,101 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对比每轮对话写入 Redis 的字节数：整体重写 JSON（RedisChatMemoryStore）vs 列表增量追加
+ */
+@Slf4j
+class RedisListChatMemoryStoreBenchmarkTest {
+
+    private static final int TURNS = 30;
+
+    @Test
+    void compareBytesWrittenPerTurn() {
+        RecordingStore store = new RecordingStore();
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .id(1L)
+                .maxMessages(35)
+                .chatMemoryStore(store)
+                .build();
+        String file = "<template><div class=\"page\">内容</div></template>\n".repeat(200);
+        for (int turn = 0; turn < TURNS; turn++) {
+            chatMemory.add(SystemMessage.from("你是一个 Vue 项目生成助手"));
+            chatMemory.add(UserMessage.from("第 " + turn + " 轮：修改首页"));
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call_" + turn)
+                    .name("writeFile")
+                    .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + file.replace("\"", "\\\"").replace("\n", "\\n") + "\"}")
+                    .build();
+            chatMemory.add(AiMessage.from(request));
+            chatMemory.add(ToolExecutionResultMessage.from(request, "文件写入成功: src/App.vue"));
+            chatMemory.add(AiMessage.from("已完成第 " + turn + " 轮修改。" + "说明".repeat(300)));
+        }
+        log.info("整体重写: {} KB/轮，列表追加: {} KB/轮",
+                store.rewriteBytes / TURNS / 1024, store.appendBytes / TURNS / 1024);
+        assertTrue(store.appendBytes * 5 < store.rewriteBytes);
+    }
+
+    /**
+     * 按计划模拟 Redis 列表，同时统计两种写法的字节数，并校验增量结果与完整列表一致
+     */
+    private static class RecordingStore implements ChatMemoryStore {
+
+        private List<ChatMessage> messages = new ArrayList<>();
+
+        private RedisListChatMemoryStore.Snapshot snapshot;
+
+        private final List<String> redisList = new ArrayList<>();
+
+        private long rewriteBytes;
+
+        private long appendBytes;
+
+        @Override
+        public List<ChatMessage> getMessages(Object memoryId) {
+            return messages;
+        }
+
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            this.messages = new ArrayList<>(messages);
+            rewriteBytes += ChatMessageSerializer.messagesToJson(messages).getBytes(StandardCharsets.UTF_8).length;
+            RedisListChatMemoryStore.Snapshot next = RedisListChatMemoryStore.Snapshot.of(messages);
+            RedisListChatMemoryStore.Plan plan = RedisListChatMemoryStore.plan(snapshot, next);
+            appendBytes += plan.payloadBytes();
+            if (plan.isRewrite()) {
+                redisList.clear();
+            } else {
+                assertEquals(snapshot.items().size(), redisList.size());
+                redisList.subList(0, plan.drop()).clear();
+            }
+            redisList.addAll(plan.appended());
+            assertEquals(next.items(), redisList);
+            snapshot = next;
+        }
+
+        @Override
+        public void deleteMessages(Object memoryId) {
+            messages = new ArrayList<>();
+            snapshot = null;
+            redisList.clear();
+        }
+    }
+}
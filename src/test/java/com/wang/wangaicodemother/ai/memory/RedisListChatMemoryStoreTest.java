@@ -0,0 +1,109 @@
+package com.wang.wangaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RedisListChatMemoryStoreTest {
+
+    private static final int WINDOW = 4;
+
+    @Test
+    void staleWriterOnFullWindowRewritesInsteadOfInterleaving() {
+        FakeRedis redis = new FakeRedis();
+        RedisListChatMemoryStore first = new RedisListChatMemoryStore(redis, 0);
+        RedisListChatMemoryStore second = new RedisListChatMemoryStore(redis, 0);
+        first.updateMessages(1L, messages(1, 4));
+        first.getMessages(1L);
+        second.getMessages(1L);
+
+        // 窗口已满，两个实例各自裁掉最旧的一条再追加一条，写入前后列表长度相同
+        first.updateMessages(1L, append(messages(2, 4), "m5"));
+        List<ChatMessage> stale = append(messages(2, 4), "m6");
+        second.updateMessages(1L, stale);
+
+        // 第二个实例的增量基于旧内容，必须整体重写，而不是在新内容上再裁一条、追加一条
+        assertEquals(texts(stale), texts(first.getMessages(1L)));
+        assertEquals(WINDOW, redis.lists.get(RedisListChatMemoryStore.listKey(1L)).size());
+
+        // 重新读取后恢复增量写入
+        List<ChatMessage> next = append(messages(3, 4), "m6", "m7");
+        first.updateMessages(1L, next);
+        assertEquals(texts(next), texts(second.getMessages(1L)));
+    }
+
+    private static List<ChatMessage> messages(int from, int to) {
+        return IntStream.rangeClosed(from, to).<ChatMessage>mapToObj(i -> UserMessage.from("m" + i)).toList();
+    }
+
+    private static List<ChatMessage> append(List<ChatMessage> messages, String... texts) {
+        List<ChatMessage> result = new ArrayList<>(messages);
+        for (String text : texts) {
+            result.add(UserMessage.from(text));
+        }
+        return result;
+    }
+
+    private static List<String> texts(List<ChatMessage> messages) {
+        return messages.stream().map(message -> ((UserMessage) message).singleText()).toList();
+    }
+
+    /**
+     * 按 UPDATE_SCRIPT 的参数约定在内存中模拟 Redis
+     */
+    private static class FakeRedis extends StringRedisTemplate {
+
+        private final Map<String, String> strings = new HashMap<>();
+
+        private final Map<String, List<String>> lists = new HashMap<>();
+
+        private String lastKey;
+
+        @Override
+        public List<Object> executePipelined(RedisCallback<?> action) {
+            // getMessages 依次读取修订号、系统消息、消息列表
+            String key = lastKey;
+            List<Object> results = new ArrayList<>();
+            results.add(strings.get(key + ":rev"));
+            results.add(strings.get(key + ":sys"));
+            results.add(new ArrayList<>(lists.getOrDefault(key, List.of())));
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            String list = keys.get(0);
+            lastKey = list;
+            long expected = Long.parseLong((String) args[0]);
+            long revision = Long.parseLong(strings.getOrDefault(keys.get(3), "0"));
+            if (expected >= 0 && revision != expected) {
+                return (T) Long.valueOf(0);
+            }
+            List<String> items = expected < 0 ? new ArrayList<>() : lists.computeIfAbsent(list, k -> new ArrayList<>());
+            items.subList(0, Integer.parseInt((String) args[1])).clear();
+            for (int i = 5; i < args.length; i++) {
+                items.add((String) args[i]);
+            }
+            lists.put(list, items);
+            if ("set".equals(args[3])) {
+                strings.put(keys.get(1), (String) args[4]);
+            } else if ("del".equals(args[3])) {
+                strings.remove(keys.get(1));
+            }
+            strings.put(keys.get(3), String.valueOf(revision + 1));
+            return (T) Long.valueOf(revision + 1);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.wang.wangaicodemother.ai.model.message;
+
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 对比每个 token 经过 JSON 往返和直接传递消息对象的 CPU 与内存分配，只输出日志，默认不执行
+ */
+@Slf4j
+@Tag("benchmark")
+class StreamMessageBenchmarkTest {
+
+    private static final int TOKENS = 200_000;
+
+    private static final String TOKEN = "<div class=\"card\">";
+
+    @Test
+    void compareJsonRoundTripWithTypedMessage() {
+        // 原流程：外观类序列化一次，处理器先解析类型再解析具体消息
+        Function<String, String> jsonRoundTrip = token -> {
+            String chunk = JSONUtil.toJsonStr(new AiResponseMessage(token));
+            String type = JSONUtil.parseObj(chunk).getStr("type");
+            assertEquals(StreamMessageTypeEnum.AI_RESPONSE.getValue(), type);
+            return JSONUtil.toBean(chunk, AiResponseMessage.class).getData();
+        };
+        // 现流程：直接传递消息对象，按类型匹配
+        Function<String, String> typed = token -> {
+            StreamMessage streamMessage = new AiResponseMessage(token);
+            return switch (streamMessage) {
+                case AiResponseMessage aiResponseMessage -> aiResponseMessage.getData();
+                case ToolRequestMessage toolRequestMessage -> toolRequestMessage.getName();
+                case ToolExecutedMessage toolExecutedMessage -> toolExecutedMessage.getName();
+            };
+        };
+        measure("json", jsonRoundTrip, TOKENS / 10);
+        measure("typed", typed, TOKENS / 10);
+        measure("json", jsonRoundTrip, TOKENS);
+        measure("typed", typed, TOKENS);
+    }
+
+    private static void measure(String name, Function<String, String> path, int tokens) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long cpuBefore = threadMXBean.getCurrentThreadCpuTime();
+        long length = 0;
+        for (int i = 0; i < tokens; i++) {
+            length += path.apply(TOKEN).length();
+        }
+        long cpu = threadMXBean.getCurrentThreadCpuTime() - cpuBefore;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertEquals((long) TOKEN.length() * tokens, length);
+        log.info("{}: {} ns/token, {} B/token", name, cpu / tokens, allocated / tokens);
+    }
+}
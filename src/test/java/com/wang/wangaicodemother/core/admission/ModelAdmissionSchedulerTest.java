@@ -0,0 +1,91 @@
+package com.wang.wangaicodemother.core.admission;
+
+import com.wang.wangaicodemother.config.AdmissionProperties;
+import com.wang.wangaicodemother.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelAdmissionSchedulerTest {
+
+    /**
+     * 用户 A 先提交 4 个请求，用户 B 随后提交 1 个，B 不需要等 A 的请求全部完成
+     */
+    @Test
+    void heavyUserDoesNotStarveOthers() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.getModels().put("model", 1);
+        ModelAdmissionScheduler scheduler = new ModelAdmissionScheduler();
+        ReflectionTestUtils.setField(scheduler, "admissionProperties", properties);
+
+        List<String> order = new ArrayList<>();
+        List<Sinks.Many<String>> calls = new ArrayList<>();
+        List<Disposable> subscriptions = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (String name : new String[]{"a1", "a2", "a3", "a4", "b1"}) {
+            User user = new User();
+            user.setId(name.startsWith("a") ? 1L : 2L);
+            Flux<String> flux = scheduler.admit("model", user, () -> {
+                order.add(name);
+                Sinks.Many<String> call = Sinks.many().unicast().onBackpressureBuffer();
+                calls.add(call);
+                return call.asFlux();
+            }, name.equals("b1") ? status -> positions.add(status.getPosition()) : null);
+            subscriptions.add(flux.subscribe());
+        }
+        while (calls.size() < 5) {
+            calls.get(calls.size() - 1).tryEmitComplete();
+        }
+        calls.get(4).tryEmitComplete();
+        assertEquals(List.of("a1", "b1", "a2", "a3", "a4"), order);
+        // b1 入队时排在 a2 之前
+        assertEquals(1, positions.get(0));
+        assertEquals(0, positions.get(positions.size() - 1));
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    /**
+     * 排队中的请求已被放行、尚未收到许可时取消，许可也要归还
+     */
+    @Test
+    void cancelRacingGrantDoesNotLeakPermit() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.getModels().put("model", 1);
+        ModelAdmissionScheduler scheduler = new ModelAdmissionScheduler();
+        ReflectionTestUtils.setField(scheduler, "admissionProperties", properties);
+
+        Disposable holder = scheduler.admit("model", null, Flux::<String>never, null).subscribe();
+        AtomicReference<Disposable> waiter = new AtomicReference<>();
+        AtomicBoolean waiterStarted = new AtomicBoolean();
+        waiter.set(scheduler.admit("model", null, () -> {
+            waiterStarted.set(true);
+            return Flux.<String>never();
+        }, status -> {
+            // 放行通知在许可完成之前发出，此时取消正好落在放行和完成之间
+            if (status.getPosition() == 0) {
+                waiter.get().dispose();
+            }
+        }).subscribe());
+        holder.dispose();
+        assertFalse(waiterStarted.get());
+
+        AtomicBoolean nextStarted = new AtomicBoolean();
+        Disposable next = scheduler.admit("model", null, () -> {
+            nextStarted.set(true);
+            return Flux.<String>never();
+        }, null).subscribe();
+        assertTrue(nextStarted.get());
+        next.dispose();
+    }
+}
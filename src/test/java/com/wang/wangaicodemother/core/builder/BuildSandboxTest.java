@@ -0,0 +1,67 @@
+package com.wang.wangaicodemother.core.builder;
+
+import com.wang.wangaicodemother.config.VueBuildProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@EnabledOnOs(OS.LINUX)
+class BuildSandboxTest {
+
+    @TempDir
+    Path workingDir;
+
+    @Test
+    void appliesPriorityAndLimits() throws IOException, InterruptedException {
+        VueBuildProperties properties = new VueBuildProperties();
+        properties.getSandbox().setCpuTimeSeconds(123);
+        properties.getSandbox().setMaxOpenFiles(256);
+        BuildSandbox sandbox = new BuildSandbox(properties);
+        sandbox.init();
+        SandboxedCommand command = sandbox.wrap(new String[]{"sh", "-c", "ulimit -t; ulimit -n; nice"});
+        List<String> output = new CopyOnWriteArrayList<>();
+        assertEquals(0, ProcessRunner.run(workingDir.toFile(), command, 30, output::add));
+        ResourceUsage usage = command.finish();
+        assertEquals("123", output.get(0));
+        assertEquals("256", output.get(1));
+        assertTrue(Integer.parseInt(output.get(2)) >= 10);
+        assertTrue(usage.cpuSeconds() >= 0);
+    }
+
+    @Test
+    void timeoutKillsProcessesThatLeftTheTree() throws IOException, InterruptedException {
+        BuildSandbox sandbox = new BuildSandbox(new VueBuildProperties());
+        sandbox.init();
+        // 子 shell 退出后后台 sleep 被 init 收养，不再是命令的后代进程，但仍在同一进程组
+        SandboxedCommand command = sandbox.wrap(new String[]{"sh", "-c", "( sleep 300 & echo $! ); sleep 30"});
+        List<String> output = new CopyOnWriteArrayList<>();
+        int exitCode = ProcessRunner.run(workingDir.toFile(), command, 1, output::add);
+        command.finish();
+        assertEquals(ProcessRunner.TIMEOUT_EXIT_CODE, exitCode);
+        Thread.sleep(200);
+        assertFalse(isRunning(Long.parseLong(output.get(0))));
+    }
+
+    /**
+     * 容器中的 1 号进程不一定回收孤儿进程，被终止的进程可能残留为僵尸进程
+     */
+    private static boolean isRunning(long pid) throws IOException {
+        Path stat = Path.of("/proc", String.valueOf(pid), "stat");
+        if (!Files.exists(stat)) {
+            return false;
+        }
+        String content = Files.readString(stat);
+        return content.charAt(content.lastIndexOf(')') + 2) != 'Z';
+    }
+}
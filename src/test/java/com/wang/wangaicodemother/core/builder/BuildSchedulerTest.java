@@ -0,0 +1,97 @@
+package com.wang.wangaicodemother.core.builder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuildSchedulerTest {
+
+    @Test
+    void capsConcurrencyAndNeverBuildsOneProjectTwiceAtOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ConcurrentHashMap<String, AtomicInteger> perProject = new ConcurrentHashMap<>();
+        AtomicInteger maxPerProject = new AtomicInteger();
+        BuildScheduler scheduler = new BuildScheduler(path -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            AtomicInteger project = perProject.computeIfAbsent(path, k -> new AtomicInteger());
+            maxPerProject.accumulateAndGet(project.incrementAndGet(), Math::max);
+            sleep(50);
+            project.decrementAndGet();
+            running.decrementAndGet();
+            return BuildResult.REBUILT;
+        }, 2);
+        List<CompletableFuture<BuildResult>> builds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            builds.add(scheduler.submit("/tmp/code_output/vue_project_" + (i % 5)));
+        }
+        CompletableFuture.allOf(builds.toArray(CompletableFuture[]::new)).join();
+        scheduler.shutdown();
+        assertEquals(2, maxRunning.get());
+        assertEquals(1, maxPerProject.get());
+    }
+
+    @Test
+    void waitingRequestsShareOneFollowUpBuild() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger builds = new AtomicInteger();
+        BuildScheduler scheduler = new BuildScheduler(path -> {
+            builds.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return BuildResult.REBUILT;
+        }, 1);
+        CompletableFuture<BuildResult> first = scheduler.submit("/tmp/p");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 第一次构建进行中：后续请求（异步构建、部署）合并为一次后续构建
+        CompletableFuture<BuildResult> second = scheduler.submit("/tmp/p");
+        CompletableFuture<BuildResult> deploy = scheduler.submit("/tmp/./p");
+        assertNotSame(first, second);
+        assertSame(second, deploy);
+        release.countDown();
+        assertEquals(BuildResult.REBUILT, deploy.join());
+        assertEquals(2, builds.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    void shutdownFailsQueuedBuilds() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        BuildScheduler scheduler = new BuildScheduler(path -> {
+            started.countDown();
+            sleep(100);
+            return BuildResult.REBUILT;
+        }, 1);
+        CompletableFuture<BuildResult> running = scheduler.submit("/tmp/a");
+        // 工作线程被占用，这个构建在执行器队列中排队
+        CompletableFuture<BuildResult> queued = scheduler.submit("/tmp/b");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(BuildResult.FAILED, queued.get(1, TimeUnit.SECONDS));
+        assertTrue(running.isDone());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.wang.wangaicodemother.core.builder;
+
+import com.wang.wangaicodemother.config.DependencyStoreProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyStoreTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void keyDependsOnlyOnDependencies() throws IOException {
+        Path a = project("a", "{\"name\":\"app-1\",\"scripts\":{\"build\":\"vite build\"},\"dependencies\":{\"vue\":\"^3.5.0\",\"axios\":\"^1.7.0\"}}");
+        Path b = project("b", "{\"dependencies\":{\"axios\":\"^1.7.0\",\"vue\":\"^3.5.0\"},\"name\":\"app-2\"}");
+        Path c = project("c", "{\"dependencies\":{\"vue\":\"^3.4.0\",\"axios\":\"^1.7.0\"}}");
+        assertEquals(DependencyStore.storeKey(a), DependencyStore.storeKey(b));
+        assertNotEquals(DependencyStore.storeKey(a), DependencyStore.storeKey(c));
+    }
+
+    @Test
+    void installsOnceAndLinksIntoEveryProject() throws IOException {
+        DependencyStore store = new DependencyStore(temp.resolve("store"), new DependencyStoreProperties());
+        AtomicInteger installs = new AtomicInteger();
+        Predicate<File> fakeNpmInstall = dir -> {
+            installs.incrementAndGet();
+            try {
+                Path vue = dir.toPath().resolve("node_modules/vue/index.js");
+                Files.createDirectories(vue.getParent());
+                Files.writeString(vue, "export default {}");
+                Files.createDirectories(dir.toPath().resolve("node_modules/.bin"));
+                Files.createSymbolicLink(dir.toPath().resolve("node_modules/.bin/vue"), Path.of("../vue/index.js"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        };
+        Path first = project("first", "{\"name\":\"first\",\"dependencies\":{\"vue\":\"^3.5.0\"}}");
+        Path second = project("second", "{\"name\":\"second\",\"dependencies\":{\"vue\":\"^3.5.0\"}}");
+
+        assertTrue(store.install(first, fakeNpmInstall));
+        assertTrue(store.install(second, fakeNpmInstall));
+        assertTrue(store.install(second, fakeNpmInstall));
+
+        assertEquals(1, installs.get());
+        assertTrue(Files.isSameFile(first.resolve("node_modules/vue/index.js"), second.resolve("node_modules/vue/index.js")));
+        assertTrue(Files.isSymbolicLink(second.resolve("node_modules/.bin/vue")));
+        assertEquals("export default {}", Files.readString(second.resolve("node_modules/.bin/vue")));
+        // 仓库文件只读，项目构建不能就地修改共享的依赖
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(first.resolve("node_modules/vue/index.js"));
+        assertFalse(permissions.contains(PosixFilePermission.OWNER_WRITE));
+        assertFalse(permissions.contains(PosixFilePermission.GROUP_WRITE));
+        assertFalse(permissions.contains(PosixFilePermission.OTHERS_WRITE));
+    }
+
+    @Test
+    void sweepRemovesExpiredAndLeastRecentlyUsedEntries() throws IOException {
+        DependencyStoreProperties properties = new DependencyStoreProperties();
+        properties.setRetainDays(7);
+        properties.setMaxSizeMb(2);
+        Path storeRoot = temp.resolve("store");
+        DependencyStore store = new DependencyStore(storeRoot, properties);
+        long now = System.currentTimeMillis();
+        long day = TimeUnit.DAYS.toMillis(1);
+        entry(storeRoot, "expired", 10, now - 8 * day);
+        entry(storeRoot, "old", 1024 * 1024, now - 3 * day);
+        entry(storeRoot, "recent", 512 * 1024, now - day);
+        entry(storeRoot, "in-use", 512 * 1024, now);
+
+        assertEquals(2, store.sweep(now));
+        assertFalse(Files.exists(storeRoot.resolve("expired")));
+        assertFalse(Files.exists(storeRoot.resolve("old")));
+        assertTrue(Files.exists(storeRoot.resolve("recent")));
+        assertTrue(Files.exists(storeRoot.resolve("in-use")));
+    }
+
+    private static void entry(Path storeRoot, String key, int bytes, long lastUsed) throws IOException {
+        Path file = storeRoot.resolve(key).resolve("node_modules/pkg/index.js");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[bytes]);
+        DependencyStore.makeReadOnly(storeRoot.resolve(key).resolve("node_modules"));
+        Path complete = storeRoot.resolve(key).resolve(".complete");
+        Files.writeString(complete, key);
+        Files.setLastModifiedTime(complete, FileTime.fromMillis(lastUsed));
+    }
+
+    private Path project(String name, String packageJson) throws IOException {
+        Path dir = temp.resolve(name);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("package.json"), packageJson);
+        return dir;
+    }
+}
@@ -0,0 +1,57 @@
+package com.wang.wangaicodemother.core.builder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessRunnerTest {
+
+    @TempDir
+    Path workingDir;
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void drainsOutputLargerThanPipeBuffer() throws IOException, InterruptedException {
+        BuildLog buildLog = new BuildLog("b1", workingDir.toString(), 100);
+        // 约 1MB 输出，远超管道缓冲区；不读取时子进程会阻塞到超时
+        String[] command = {"sh", "-c", "seq 1 150000; seq 1 1000 >&2"};
+        long start = System.currentTimeMillis();
+        int exitCode = ProcessRunner.run(workingDir.toFile(), command, 30, buildLog::append);
+        assertEquals(0, exitCode);
+        assertTrue(System.currentTimeMillis() - start < 20_000);
+        assertEquals(100, buildLog.tail(1000).size());
+        assertEquals(151_000 - 100, buildLog.getDroppedLines());
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void timesOut() throws IOException, InterruptedException {
+        int exitCode = ProcessRunner.run(workingDir.toFile(), new String[]{"sleep", "30"}, 1, line -> {
+        });
+        assertEquals(ProcessRunner.TIMEOUT_EXIT_CODE, exitCode);
+    }
+
+    @Test
+    void attachReplaysBufferThenFollowsUntilFinished() {
+        BuildLog buildLog = new BuildLog("b1", "p", 2);
+        buildLog.append("a");
+        buildLog.append("b");
+        buildLog.append("c");
+        List<String> received = new CopyOnWriteArrayList<>();
+        buildLog.attach().subscribe(received::add);
+        buildLog.append("d");
+        buildLog.finish(BuildResult.REBUILT);
+        buildLog.append("ignored");
+        assertEquals(List.of("b", "c", "d"), received);
+        assertEquals(List.of("c", "d"), buildLog.attach().collectList().block());
+    }
+}
@@ -0,0 +1,60 @@
+package com.wang.wangaicodemother.core.builder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceManifestTest {
+
+    @TempDir
+    Path project;
+
+    @Test
+    void ignoresBuildOutputsAndDetectsSourceChanges() throws IOException {
+        write("package.json", "{\"dependencies\":{\"vue\":\"^3.5.0\"}}");
+        write("src/App.vue", "<template>v1</template>");
+        assertNull(SourceManifest.read(project));
+        SourceManifest built = SourceManifest.scan(project);
+        built.write(project);
+
+        // 构建产物和清单本身不影响哈希
+        write("dist/index.html", "<html></html>");
+        write("node_modules/vue/index.js", "export default {}");
+        SourceManifest last = SourceManifest.read(project);
+        assertTrue(SourceManifest.scan(project).sameSources(last));
+
+        write("src/App.vue", "<template>v2</template>");
+        SourceManifest changed = SourceManifest.scan(project);
+        assertFalse(changed.sameSources(last));
+        assertTrue(changed.sameDependencies(last));
+        assertEquals(1, changed.changedFileCount(last));
+
+        write("package.json", "{\"dependencies\":{\"vue\":\"^3.5.1\"}}");
+        assertFalse(SourceManifest.scan(project).sameDependencies(last));
+
+        // 编辑器不展示的 .env、lockfile 同样会影响构建
+        SourceManifest beforeEnv = SourceManifest.scan(project);
+        write(".env", "VITE_API=/api");
+        SourceManifest withEnv = SourceManifest.scan(project);
+        assertFalse(withEnv.sameSources(beforeEnv));
+        write("yarn.lock", "vue@^3.5.1");
+        assertFalse(SourceManifest.scan(project).sameSources(withEnv));
+
+        SourceManifest.delete(project);
+        assertNull(SourceManifest.read(project));
+    }
+
+    private void write(String relative, String content) throws IOException {
+        Path file = project.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
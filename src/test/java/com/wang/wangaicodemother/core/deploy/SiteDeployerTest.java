@@ -0,0 +1,69 @@
+package com.wang.wangaicodemother.core.deploy;
+
+import com.wang.wangaicodemother.config.DeployProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SiteDeployerTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void redeployLinksUnchangedFilesAndSwitchesAtomically() throws IOException {
+        DeployProperties properties = new DeployProperties();
+        properties.setRetainVersions(2);
+        Path root = temp.resolve("deploy");
+        SiteDeployer deployer = new SiteDeployer(root, properties);
+        Path dist = temp.resolve("dist");
+        write(dist.resolve("index.html"), "<html>v1</html>");
+        write(dist.resolve("assets/app.js"), "console.log(1)");
+
+        String v1 = deployer.deploy(dist, "ABC123");
+        Path live = root.resolve("ABC123");
+        assertTrue(Files.isSymbolicLink(live));
+        assertEquals("<html>v1</html>", Files.readString(live.resolve("index.html")));
+
+        write(dist.resolve("index.html"), "<html>v2</html>");
+        String v2 = deployer.deploy(dist, "ABC123");
+        assertNotEquals(v1, v2);
+        assertEquals("<html>v2</html>", Files.readString(live.resolve("index.html")));
+        // 未变化的文件与上一版本是同一个 inode
+        assertTrue(Files.isSameFile(root.resolve(v1).resolve("assets/app.js"), root.resolve(v2).resolve("assets/app.js")));
+        assertFalse(Files.isSameFile(root.resolve(v1).resolve("index.html"), root.resolve(v2).resolve("index.html")));
+
+        // 内容未变化时复用已有版本
+        assertEquals(v2, deployer.deploy(dist, "ABC123"));
+
+        write(dist.resolve("index.html"), "<html>v3</html>");
+        String v3 = deployer.deploy(dist, "ABC123");
+        assertEquals(root.resolve(v3), deployer.currentVersion(live));
+        assertFalse(Files.exists(root.resolve(v1)));
+        assertTrue(Files.exists(root.resolve(v2)));
+    }
+
+    @Test
+    void replacesLegacyInPlaceDeploy() throws IOException {
+        Path root = temp.resolve("deploy");
+        write(root.resolve("OLD1/index.html"), "legacy");
+        Path dist = temp.resolve("dist");
+        write(dist.resolve("index.html"), "new");
+        new SiteDeployer(root, new DeployProperties()).deploy(dist, "OLD1");
+        assertTrue(Files.isSymbolicLink(root.resolve("OLD1")));
+        assertEquals("new", Files.readString(root.resolve("OLD1/index.html")));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
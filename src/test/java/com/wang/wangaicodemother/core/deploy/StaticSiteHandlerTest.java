@@ -0,0 +1,102 @@
+package com.wang.wangaicodemother.core.deploy;
+
+import com.wang.wangaicodemother.config.DeployProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaticSiteHandlerTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void negotiatesPrecompressedVariantsAndValidators() throws IOException {
+        DeployProperties properties = new DeployProperties();
+        // 1KB 以上的文件走磁盘发送，覆盖零拷贝路径
+        properties.setMemoryCacheFileMaxKb(1);
+        Path root = temp.resolve("deploy");
+        Path dist = temp.resolve("dist");
+        String html = "<html>" + "hello ".repeat(500) + "</html>";
+        write(dist.resolve("index.html"), html);
+        write(dist.resolve("assets/index-B3x9kQ2a.js"), "console.log(1)");
+        new SiteDeployer(root, properties).deploy(dist, "APP1");
+        StaticSiteHandler handler = new StaticSiteHandler(root, properties);
+
+        MockHttpServletResponse gzipped = get(handler, "APP1/index.html", "gzip, deflate");
+        assertEquals(200, gzipped.getStatus());
+        assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzipped.getHeader("Vary"));
+        assertEquals("no-cache", gzipped.getHeader("Cache-Control"));
+        assertEquals(html, gunzip(gzipped.getContentAsByteArray()));
+
+        MockHttpServletResponse plain = get(handler, "APP1/index.html", "gzip;q=0");
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals(html, plain.getContentAsString(StandardCharsets.UTF_8));
+        assertFalse(plain.getHeader("ETag").equals(gzipped.getHeader("ETag")));
+
+        MockHttpServletRequest conditional = request("GET");
+        conditional.addHeader("Accept-Encoding", "gzip");
+        conditional.addHeader("If-None-Match", gzipped.getHeader("ETag"));
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        handler.serve("APP1/index.html", conditional, notModified);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        MockHttpServletResponse asset = get(handler, "APP1/assets/index-B3x9kQ2a.js", null);
+        assertTrue(asset.getHeader("Cache-Control").contains("immutable"));
+        assertEquals("console.log(1)", asset.getContentAsString());
+    }
+
+    @Test
+    void rejectsHiddenAndTraversalPaths() throws IOException {
+        Path root = temp.resolve("deploy");
+        Path dist = temp.resolve("dist");
+        write(dist.resolve("index.html"), "ok");
+        new SiteDeployer(root, new DeployProperties()).deploy(dist, "APP2");
+        write(temp.resolve("secret.txt"), "secret");
+        StaticSiteHandler handler = new StaticSiteHandler(root, new DeployProperties());
+        assertEquals(404, get(handler, "APP2/" + SiteDeployer.MANIFEST_FILE, null).getStatus());
+        assertEquals(404, get(handler, "APP2/%2E%2E/%2E%2E/secret.txt", null).getStatus());
+        assertEquals(404, get(handler, "APP2/missing.html", null).getStatus());
+        assertEquals("ok", get(handler, "APP2/", null).getContentAsString());
+    }
+
+    private static MockHttpServletResponse get(StaticSiteHandler handler, String path, String acceptEncoding) throws IOException {
+        MockHttpServletRequest request = request("GET");
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.serve(path, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        return new MockHttpServletRequest(method, "/api/static/deploy/");
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -0,0 +1,46 @@
+package com.wang.wangaicodemother.core.handler;
+
+import com.wang.wangaicodemother.config.SseCoalesceProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamCoalescerTest {
+
+    @Test
+    void flushesPendingTextAfterIntervalAndOnDemand() throws InterruptedException {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> frames = new CopyOnWriteArrayList<>();
+        Flux<String> coalesced = StreamCoalescer.coalesce(source.asFlux(), text -> text, "!"::equals,
+                new SseCoalesceProperties.Window(50L, 1000), "test");
+        coalesced.subscribe(frames::add);
+
+        source.tryEmitNext("a");
+        source.tryEmitNext("b");
+        Thread.sleep(200);
+        // 缓冲区有数据时定时刷写，之后空闲不产生空帧
+        assertEquals(List.of("ab"), frames);
+        Thread.sleep(150);
+        assertEquals(List.of("ab"), frames);
+
+        source.tryEmitNext("c");
+        source.tryEmitNext("!");
+        assertEquals(List.of("ab", "c!"), frames);
+        source.tryEmitNext("d");
+        source.tryEmitComplete();
+        assertEquals(List.of("ab", "c!", "d"), frames);
+    }
+
+    @Test
+    void sizeLimitFlushesImmediately() {
+        List<String> frames = StreamCoalescer.coalesce(Flux.just("ab", "cd", "e"), text -> text, text -> false,
+                new SseCoalesceProperties.Window(Duration.ofMinutes(1).toMillis(), 4), "test").collectList().block();
+        assertEquals(List.of("abcd", "e"), frames);
+    }
+}
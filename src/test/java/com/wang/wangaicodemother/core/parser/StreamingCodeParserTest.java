@@ -0,0 +1,155 @@
+package com.wang.wangaicodemother.core.parser;
+
+import com.wang.wangaicodemother.ai.model.HtmlCodeResult;
+import com.wang.wangaicodemother.ai.model.MultiFileCodeResult;
+import com.wang.wangaicodemother.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Slf4j
+class StreamingCodeParserTest {
+
+    private static final String MULTI_FILE_RESPONSE = """
+            下面是生成的代码：
+            ```html
+            <!DOCTYPE html>
+            <html><body><pre>`code` ``inline``</pre></body></html>
+            ```
+            样式：
+            ```CSS
+            body { margin: 0; }
+            ```
+            脚本：
+            ```javascript
+            console.log('hello');
+            ```
+            """;
+
+    @Test
+    void parseMultiFileInChunks() {
+        MultiFileCodeResult expected = (MultiFileCodeResult) ParseActuator.parse(MULTI_FILE_RESPONSE, CodeGenTypeEnum.MULTI_FILE);
+        for (int chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            Map<String, String> blocks = parseInChunks(MULTI_FILE_RESPONSE, CodeGenTypeEnum.MULTI_FILE, chunkSize);
+            assertEquals(expected.getHtmlCode(), blocks.get("html"));
+            assertEquals(expected.getCssCode(), blocks.get("css"));
+            assertEquals(expected.getJsCode(), blocks.get("js"));
+        }
+    }
+
+    @Test
+    void skipsEmptyBlocksLikeParseActuator() {
+        String response = "```html\n\n```\n```css\n```\n```html\n<p>second</p>\n```\n```css\nbody {}\n```\n";
+        MultiFileCodeResult expected = (MultiFileCodeResult) ParseActuator.parse(response, CodeGenTypeEnum.MULTI_FILE);
+        Map<String, String> blocks = parseInChunks(response, CodeGenTypeEnum.MULTI_FILE, 5);
+        assertEquals("<p>second</p>", expected.getHtmlCode());
+        assertEquals(expected.getHtmlCode(), blocks.get("html"));
+        assertEquals(expected.getCssCode(), blocks.get("css"));
+        HtmlCodeResult expectedHtml = (HtmlCodeResult) ParseActuator.parse(response, CodeGenTypeEnum.HTML);
+        assertEquals(expectedHtml.getHtmlCode(), parseInChunks(response, CodeGenTypeEnum.HTML, 5).get("html"));
+    }
+
+    @Test
+    void parseHtmlWithoutFence() {
+        String response = "  <html><body>no fence</body></html>\n";
+        HtmlCodeResult expected = (HtmlCodeResult) ParseActuator.parse(response, CodeGenTypeEnum.HTML);
+        Map<String, String> blocks = parseInChunks(response, CodeGenTypeEnum.HTML, 3);
+        assertEquals(expected.getHtmlCode(), blocks.get("html"));
+        assertEquals(1, blocks.size());
+    }
+
+    /**
+     * 对比正则解析和流式解析在 50KB ~ 500KB 响应上的耗时，只输出日志，默认不执行
+     */
+    @Test
+    @Tag("benchmark")
+    void compareWithParseActuator() {
+        for (int sizeKb : new int[]{50, 100, 200, 500}) {
+            String response = buildResponse(sizeKb * 1024);
+            List<String> chunks = split(response, 8);
+            MultiFileCodeResult expected = (MultiFileCodeResult) regexPath(chunks);
+            assertEquals(expected.getHtmlCode().length() + expected.getCssCode().length() + expected.getJsCode().length(),
+                    streamingPath(chunks));
+            // 预热
+            for (int i = 0; i < 20; i++) {
+                regexPath(chunks);
+                streamingPath(chunks);
+            }
+            int rounds = 50;
+            long regexStart = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                regexPath(chunks);
+            }
+            long regexCost = (System.nanoTime() - regexStart) / rounds;
+            long streamingStart = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                streamingPath(chunks);
+            }
+            long streamingCost = (System.nanoTime() - streamingStart) / rounds;
+            log.info("{}KB: ParseActuator {} us, StreamingCodeParser {} us", sizeKb, regexCost / 1000, streamingCost / 1000);
+        }
+    }
+
+    private static Object regexPath(List<String> chunks) {
+        StringBuilder builder = new StringBuilder();
+        for (String chunk : chunks) {
+            builder.append(chunk);
+        }
+        return ParseActuator.parse(builder.toString(), CodeGenTypeEnum.MULTI_FILE);
+    }
+
+    private static int streamingPath(List<String> chunks) {
+        int[] length = new int[1];
+        StreamingCodeParser parser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE,
+                (language, code) -> length[0] += code.length());
+        for (String chunk : chunks) {
+            parser.append(chunk);
+        }
+        parser.finish();
+        return length[0];
+    }
+
+    private static Map<String, String> parseInChunks(String response, CodeGenTypeEnum codeGenTypeEnum, int chunkSize) {
+        Map<String, String> blocks = new HashMap<>();
+        StreamingCodeParser parser = new StreamingCodeParser(codeGenTypeEnum, blocks::put);
+        for (String chunk : split(response, chunkSize)) {
+            parser.append(chunk);
+        }
+        parser.finish();
+        return blocks;
+    }
+
+    private static List<String> split(String content, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += chunkSize) {
+            chunks.add(content.substring(i, Math.min(content.length(), i + chunkSize)));
+        }
+        return chunks;
+    }
+
+    private static String buildResponse(int size) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder("说明文字\n```html\n");
+        int third = size / 3;
+        while (builder.length() < third) {
+            builder.append("<div class=\"item-").append(random.nextInt(1000)).append("\">内容</div>\n");
+        }
+        builder.append("```\n```css\n");
+        while (builder.length() < third * 2) {
+            builder.append(".item-").append(random.nextInt(1000)).append(" { color: #333; }\n");
+        }
+        builder.append("```\n```js\n");
+        while (builder.length() < size) {
+            builder.append("document.querySelector('.item-").append(random.nextInt(1000)).append("');\n");
+        }
+        return builder.append("```\n").toString();
+    }
+}
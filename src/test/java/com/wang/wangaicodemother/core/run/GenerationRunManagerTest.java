@@ -0,0 +1,95 @@
+package com.wang.wangaicodemother.core.run;
+
+import com.wang.wangaicodemother.config.GenerationRunProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationRunManagerTest {
+
+    private GenerationRunManager manager;
+
+    @BeforeEach
+    void setUp() {
+        GenerationRunProperties properties = new GenerationRunProperties();
+        MemoryGenerationEventLog eventLog = new MemoryGenerationEventLog();
+        ReflectionTestUtils.setField(eventLog, "generationRunProperties", properties);
+        manager = new GenerationRunManager();
+        ReflectionTestUtils.setField(manager, "generationRunProperties", properties);
+        ReflectionTestUtils.setField(manager, "generationEventLog", eventLog);
+    }
+
+    @Test
+    void turnsRunInOrderWithQueuePosition() {
+        List<String> started = new ArrayList<>();
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        Sinks.Many<String> second = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationRun run1 = manager.submit(1L, 7L, "a", run -> {
+            started.add("a");
+            return first.asFlux();
+        });
+        GenerationRun run2 = manager.submit(1L, 7L, "b", run -> {
+            started.add("b");
+            return second.asFlux();
+        });
+        // 重复提交连接到已有任务
+        assertSame(run2, manager.submit(1L, 7L, "b", run -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(List.of("a"), started);
+        assertEquals(List.of("1"), queuePositions(run2));
+        first.tryEmitComplete();
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(List.of("1", "0"), queuePositions(run2));
+        assertSame(run2, manager.getActiveRun(1L));
+        // 取消正在运行的轮次
+        assertTrue(manager.cancel(1L, false));
+        assertTrue(run2.isFinished());
+        assertNull(manager.getActiveRun(1L));
+    }
+
+    @Test
+    void duplicateNeedsSameUserWithinWindow() {
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationRun run1 = manager.submit(2L, 7L, "a", run -> first.asFlux());
+        assertSame(run1, manager.submit(2L, 7L, "a", run -> Flux.never()));
+        // 其他用户提交相同的提示词是新的轮次
+        GenerationRun other = manager.submit(2L, 8L, "a", run -> Flux.never());
+        assertNotSame(run1, other);
+        // 超出重复提交窗口后再次提交也是新的轮次
+        ReflectionTestUtils.setField(run1, "submittedAt", run1.getSubmittedAt() - 11_000);
+        assertNotSame(run1, manager.submit(2L, 7L, "a", run -> Flux.never()));
+        manager.cancel(2L, true);
+    }
+
+    @Test
+    void onlyKnownRunsAreResumable() {
+        GenerationRun run = manager.submit(3L, 7L, "a", submitted -> Flux.never());
+        // 限流拦截器据此放行 Last-Event-ID 重连
+        assertTrue(manager.isResumable(run.getRunId()));
+        assertFalse(manager.isResumable("3_unknown"));
+        manager.cancel(3L, true);
+    }
+
+    private static List<String> queuePositions(GenerationRun run) {
+        List<String> positions = new ArrayList<>();
+        run.attach(0).take(Duration.ofMillis(50))
+                .filter(event -> GenerationEvent.QUEUE.equals(event.getEvent()))
+                .doOnNext(event -> positions.add(event.getData()))
+                .blockLast();
+        return positions;
+    }
+}
@@ -0,0 +1,164 @@
+package com.wang.wangaicodemother.core.run;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationRunTest {
+
+    @Test
+    void replayMissedEventsThenFollowLiveTail() {
+        Sinks.Many<String> content = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationRun run = new GenerationRun("1_run", 1L, "", new ListEventLog(), Duration.ofMinutes(1), Duration.ofMinutes(5), finished -> {
+        });
+        run.open();
+        run.start(content.asFlux());
+        content.tryEmitNext("a");
+        content.tryEmitNext("b");
+        // 第一次连接收到 run、a 后断开
+        List<GenerationEvent> first = run.attach(0).take(2).collectList().block();
+        assertEquals(List.of(1L, 2L), first.stream().map(GenerationEvent::getId).toList());
+        // 断线期间继续生成
+        content.tryEmitNext("c");
+        List<String> resumed = new ArrayList<>();
+        run.attach(2).subscribe(event -> resumed.add(event.getEvent() == null ? event.getData() : event.getEvent()));
+        content.tryEmitNext("d");
+        content.tryEmitComplete();
+        assertEquals(List.of("b", "c", "d", GenerationEvent.DONE), resumed);
+        assertTrue(run.isFinished());
+        // 结束后连接只回放
+        assertEquals(6, run.attach(0).collectList().block().size());
+    }
+
+    @Test
+    void cancelStopsUpstream() {
+        boolean[] cancelled = new boolean[1];
+        GenerationRun run = new GenerationRun("1_run", 1L, "", new ListEventLog(), Duration.ofMinutes(1), Duration.ofMinutes(5), finished -> {
+        });
+        run.open();
+        run.start(Flux.<String>never().doOnCancel(() -> cancelled[0] = true));
+        run.cancel();
+        assertTrue(cancelled[0]);
+        List<GenerationEvent> events = run.attach(0).collectList().block();
+        assertEquals(GenerationEvent.CANCELLED, events.get(events.size() - 1).getEvent());
+    }
+
+    @Test
+    void slowEventLogDoesNotBlockGeneration() throws InterruptedException {
+        CountDownLatch redisDown = new CountDownLatch(1);
+        ListEventLog eventLog = new ListEventLog() {
+            @Override
+            public void append(String runId, GenerationEvent event) {
+                awaitQuietly(redisDown);
+                super.append(runId, event);
+            }
+        };
+        Sinks.Many<String> content = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationRun run = new GenerationRun("1_run", 1L, "", eventLog, Duration.ofMinutes(1), Duration.ofMinutes(5), finished -> {
+        });
+        run.open();
+        run.start(content.asFlux());
+        for (int i = 0; i < 100; i++) {
+            content.tryEmitNext("chunk" + i);
+        }
+        // 日志写入阻塞时，生成、连接和回放照常进行，未写入的事件从内存回放
+        List<GenerationEvent> events = run.attach(0).take(101).collectList().block(Duration.ofSeconds(5));
+        assertEquals(101, events.size());
+        run.cancel();
+        assertTrue(run.isFinished());
+        redisDown.countDown();
+        List<GenerationEvent> replayed = run.attach(0).collectList().block(Duration.ofSeconds(5));
+        assertEquals(GenerationEvent.CANCELLED, replayed.get(replayed.size() - 1).getEvent());
+        eventLog.awaitEvents("1_run", 102);
+    }
+
+    @Test
+    void truncatedReplayStartsWithGap() throws InterruptedException {
+        ListEventLog eventLog = new ListEventLog(3);
+        GenerationRun run = new GenerationRun("1_run", 1L, "", eventLog, Duration.ofMinutes(1), Duration.ofMinutes(5), finished -> {
+        });
+        run.open();
+        run.start(Flux.just("a", "b", "c", "d"));
+        eventLog.awaitEvents("1_run", 3);
+        // 日志只保留了最后 3 个事件（c、d、done），从头连接时先收到 gap
+        List<GenerationEvent> events = run.attach(0).collectList().block();
+        assertEquals(GenerationEvent.GAP, events.get(0).getEvent());
+        assertEquals(3L, events.get(0).getId());
+        assertEquals(List.of(4L, 5L, 6L), events.subList(1, events.size()).stream().map(GenerationEvent::getId).toList());
+        // 没有丢失时不发送 gap
+        assertEquals(4L, run.attach(3).collectList().block().get(0).getId());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ListEventLog implements GenerationEventLog {
+
+        private final Map<String, List<GenerationEvent>> logs = new ConcurrentHashMap<>();
+
+        private final int maxEvents;
+
+        ListEventLog() {
+            this(Integer.MAX_VALUE);
+        }
+
+        ListEventLog(int maxEvents) {
+            this.maxEvents = maxEvents;
+        }
+
+        @Override
+        public synchronized void append(String runId, GenerationEvent event) {
+            List<GenerationEvent> events = logs.computeIfAbsent(runId, key -> new ArrayList<>());
+            events.add(event);
+            if (events.size() > maxEvents) {
+                events.remove(0);
+            }
+            notifyAll();
+        }
+
+        /**
+         * 等待事件日志中的事件达到指定数量且已写入结束事件
+         */
+        synchronized void awaitEvents(String runId, int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (true) {
+                List<GenerationEvent> events = logs.getOrDefault(runId, List.of());
+                if (events.size() >= count && events.get(events.size() - 1).isTerminal()) {
+                    return;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                assertTrue(remaining > 0, "事件日志未写入");
+                wait(remaining);
+            }
+        }
+
+        @Override
+        public synchronized List<GenerationEvent> readAfter(String runId, long lastEventId) {
+            return logs.getOrDefault(runId, List.of()).stream().filter(event -> event.getId() > lastEventId).toList();
+        }
+
+        @Override
+        public boolean exists(String runId) {
+            return logs.containsKey(runId);
+        }
+
+        @Override
+        public void expire(String runId, Duration retention) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.wang.wangaicodemother.manager;
+
+import cn.hutool.core.io.FileUtil;
+import com.wang.wangaicodemother.model.entity.ChatHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryWriteBehindBufferTest {
+
+    @TempDir
+    File journalDir;
+
+    @Test
+    void flushesInBatchesAndKeepsOrder() {
+        List<List<Long>> batches = new ArrayList<>();
+        ChatHistoryWriteBehindBuffer buffer = new ChatHistoryWriteBehindBuffer(journalDir, 2, 10,
+                chunk -> batches.add(chunk.stream().map(ChatHistory::getId).toList()), ids -> Set.of());
+        assertFalse(buffer.append(message(1)));
+        assertTrue(buffer.append(message(2)));
+        buffer.append(message(3));
+        assertTrue(buffer.flush());
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L)), batches);
+        assertFalse(buffer.hasPending());
+    }
+
+    @Test
+    void replaysJournalAfterFailureWithoutDuplicates() {
+        Set<Long> saved = new HashSet<>();
+        List<Long> order = new ArrayList<>();
+        int[] calls = {0};
+        // 第一批写入成功，之后数据库不可用
+        ChatHistoryWriteBehindBuffer buffer = new ChatHistoryWriteBehindBuffer(journalDir, 2, 10, chunk -> {
+            if (calls[0]++ > 0) {
+                throw new IllegalStateException("database down");
+            }
+            chunk.forEach(history -> {
+                saved.add(history.getId());
+                order.add(history.getId());
+            });
+        }, ids -> Set.of());
+        for (long id = 1; id <= 3; id++) {
+            buffer.append(message(id));
+        }
+        assertFalse(buffer.flush());
+        buffer.append(message(4));
+        // 模拟进程重启：新的缓冲区从日志段补写
+        buffer.close();
+        ChatHistoryWriteBehindBuffer restarted = new ChatHistoryWriteBehindBuffer(journalDir, 2, 10, chunk -> chunk.forEach(history -> {
+            assertTrue(saved.add(history.getId()), "duplicate id " + history.getId());
+            order.add(history.getId());
+        }), ids -> new HashSet<>(ids.stream().filter(saved::contains).toList()));
+        assertTrue(restarted.hasPending());
+        assertTrue(restarted.flush());
+        assertEquals(List.of(1L, 2L, 3L, 4L), order);
+        assertFalse(restarted.hasPending());
+    }
+
+    @Test
+    void failingSegmentIsDeadLetteredWithoutBlockingLaterSegments() throws InterruptedException {
+        List<Long> saved = new ArrayList<>();
+        // 消息 1 始终无法写入（如超出字段长度），其余正常
+        ChatHistoryWriteBehindBuffer buffer = new ChatHistoryWriteBehindBuffer(journalDir, 10, 2, chunk -> {
+            if (chunk.stream().anyMatch(history -> history.getId() == 1L)) {
+                throw new IllegalStateException("data too long");
+            }
+            chunk.forEach(history -> saved.add(history.getId()));
+        }, ids -> Set.of());
+        buffer.append(message(1));
+        assertFalse(buffer.flush());
+        // 失败的日志段退避期间，之后的日志段照常写入
+        buffer.append(message(2));
+        assertFalse(buffer.flush());
+        assertEquals(List.of(2L), saved);
+        assertTrue(buffer.hasPending());
+
+        Thread.sleep(250);
+        buffer.append(message(3));
+        assertFalse(buffer.flush());
+        assertEquals(List.of(2L, 3L), saved);
+        // 第二次失败达到上限，移入死信目录
+        assertFalse(buffer.hasPending());
+        File[] deadLetters = new File(journalDir, "dead-letter").listFiles();
+        assertEquals(1, deadLetters.length);
+        assertEquals(1L, ChatHistoryWriteBehindBuffer.fromJournalLine(FileUtil.readUtf8Lines(deadLetters[0]).get(0)).getId());
+        assertTrue(buffer.flush());
+    }
+
+    @Test
+    void discardedAppIsNotWrittenBackAfterRetry() throws InterruptedException {
+        List<Long> saved = new ArrayList<>();
+        boolean[] down = {true};
+        ChatHistoryWriteBehindBuffer buffer = new ChatHistoryWriteBehindBuffer(journalDir, 10, 10, chunk -> {
+            if (down[0]) {
+                throw new IllegalStateException("database down");
+            }
+            chunk.forEach(history -> saved.add(history.getId()));
+        }, ids -> Set.of());
+        buffer.append(message(1, 100L));
+        buffer.append(message(2, 200L));
+        assertFalse(buffer.flush());
+        // 日志段在退避中，未写库的消息仍然可以读到
+        assertEquals(List.of(1L), buffer.unwritten(100L).stream().map(ChatHistory::getId).toList());
+        // 退避期间追加的消息留在打开的日志段中
+        buffer.append(message(3, 100L));
+        buffer.append(message(4, 200L));
+
+        // 删除应用 100 的对话历史
+        assertEquals(2, buffer.discard(100L));
+        assertTrue(buffer.unwritten(100L).isEmpty());
+
+        down[0] = false;
+        Thread.sleep(250);
+        assertTrue(buffer.flush());
+        assertEquals(List.of(2L, 4L), saved);
+        assertFalse(buffer.hasPending());
+    }
+
+    private static ChatHistory message(long id) {
+        return message(id, 100L);
+    }
+
+    private static ChatHistory message(long id, long appId) {
+        LocalDateTime now = LocalDateTime.now();
+        return ChatHistory.builder()
+                .id(id)
+                .appId(appId)
+                .userId(1L)
+                .messageType("user")
+                .message("message " + id)
+                .createTime(now)
+                .updateTime(now)
+                .isDelete(0)
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.wang.wangaicodemother.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeasedTokenBucketTest {
+
+    @Test
+    void leasesInBatchesAndStopsAtGlobalLimit() throws InterruptedException {
+        long limit = 20;
+        AtomicLong global = new AtomicLong();
+        AtomicLong leaseCalls = new AtomicLong();
+        // 模拟 Redis INCRBY
+        LeasedTokenBucket bucket = new LeasedTokenBucket(3_600_000, 5, (window, permits) -> {
+            leaseCalls.incrementAndGet();
+            long before = global.getAndAdd(permits);
+            return Math.max(0, Math.min(permits, limit - before));
+        });
+        int granted = 0;
+        for (int i = 0; i < 30; i++) {
+            if (bucket.tryAcquire(1) == 0) {
+                granted++;
+            }
+            // 等待异步续租完成，保证结果稳定
+            Thread.sleep(5);
+        }
+        assertEquals(limit, granted);
+        assertTrue(leaseCalls.get() <= 6, "lease calls: " + leaseCalls.get());
+        assertTrue(bucket.tryAcquire(1) > 0);
+    }
+
+    @Test
+    void waitsForInFlightPrefetchInsteadOfLeasingAgain() {
+        AtomicLong global = new AtomicLong();
+        AtomicLong leaseCalls = new AtomicLong();
+        LeasedTokenBucket bucket = new LeasedTokenBucket(3_600_000, 4, (window, permits) -> {
+            // 异步预取比较慢，本地令牌先用完
+            if (leaseCalls.incrementAndGet() > 1) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            global.addAndGet(permits);
+            return permits;
+        });
+        // 同步租 4 个，第 3 次剩余不足一半触发异步预取，第 5 次本地用完时预取仍在进行
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1));
+        }
+        assertEquals(2, leaseCalls.get());
+        assertEquals(8, global.get());
+    }
+}
@@ -0,0 +1,76 @@
+package com.wang.wangaicodemother.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectOverlayTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void changesStayInMemoryUntilCommit() throws IOException {
+        Path app = root.resolve("src/App.vue");
+        Path main = root.resolve("src/main.js");
+        Files.createDirectories(app.getParent());
+        Files.writeString(main, "old main");
+        ProjectOverlay overlay = new ProjectOverlay(root);
+
+        overlay.write(app, "<template>v1</template>");
+        overlay.write(app, overlay.read(app).replace("v1", "v2"));
+        assertTrue(overlay.delete(main));
+        assertFalse(overlay.delete(root.resolve("src/missing.js")));
+        assertEquals("<template>v2</template>", overlay.read(app));
+        assertNull(overlay.read(main));
+        // 提交前磁盘不变
+        assertFalse(Files.exists(app));
+        assertEquals("old main", Files.readString(main));
+
+        assertEquals(2, overlay.commit());
+        assertEquals("<template>v2</template>", Files.readString(app));
+        assertFalse(Files.exists(main));
+        assertEquals(0, overlay.pendingCount());
+        try (var files = Files.list(app.getParent())) {
+            assertEquals(List.of(app), files.toList());
+        }
+    }
+
+    @Test
+    void pendingChangesAreReplayedIntoRebuiltIndex() throws IOException {
+        Files.createDirectories(root.resolve("src"));
+        Files.writeString(root.resolve("src/old.js"), "old");
+        ProjectOverlay overlay = new ProjectOverlay(root);
+        overlay.write(root.resolve("src/pages/Home.vue"), "home");
+        overlay.delete(root.resolve("src/old.js"));
+
+        ProjectTreeIndex index = new ProjectTreeIndex(root);
+        index.rebuild();
+        overlay.replayTo(index);
+        assertEquals(List.of("src/pages/Home.vue"), index.list(root));
+    }
+
+    @Test
+    void writesAfterCloseAreRejected() throws IOException {
+        Path app = root.resolve("src/App.vue");
+        ProjectOverlay overlay = new ProjectOverlay(root);
+        overlay.write(app, "v1");
+        assertEquals(1, overlay.closeAndCommit());
+        assertTrue(overlay.awaitClosed());
+        // 取消后仍在执行的工具调用不能写进已经提交过的覆盖层，否则改动丢失
+        assertThrows(ProjectOverlay.ClosedException.class, () -> overlay.write(app, "v2"));
+        assertThrows(ProjectOverlay.ClosedException.class, () -> overlay.delete(app));
+        assertEquals("v1", Files.readString(app));
+        assertEquals(0, overlay.pendingCount());
+    }
+}
@@ -0,0 +1,56 @@
+package com.wang.wangaicodemother.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProjectTreeIndexTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void listsByDepthThenPathAndSkipsIgnoredTrees() throws IOException {
+        write("package.json");
+        write("src/main.js");
+        write("src/components/Card.vue");
+        write("src/App.vue");
+        write("node_modules/vue/index.js");
+        write("npm-debug.log");
+        ProjectTreeIndex index = new ProjectTreeIndex(root);
+        index.rebuild();
+
+        assertEquals(List.of("package.json", "src/App.vue", "src/main.js", "src/components/Card.vue"), index.list(root));
+        assertEquals(List.of("App.vue", "main.js", "components/Card.vue"), index.list(root.resolve("src")));
+        assertNull(index.list(root.getParent()));
+    }
+
+    @Test
+    void appliesWritesAndDeletesIncrementally() throws IOException {
+        write("src/App.vue");
+        ProjectTreeIndex index = new ProjectTreeIndex(root);
+        index.rebuild();
+
+        List<Path> newDirs = index.add(write("src/pages/Home.vue"));
+        assertEquals(List.of(root.resolve("src/pages")), newDirs);
+        index.add(write("src/pages/About.vue"));
+        assertEquals(List.of("src/App.vue", "src/pages/About.vue", "src/pages/Home.vue"), index.list(root));
+
+        index.remove(root.resolve("src/pages"));
+        assertEquals(List.of("src/App.vue"), index.list(root));
+    }
+
+    private Path write(String relativePath) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, relativePath);
+        return file;
+    }
+}
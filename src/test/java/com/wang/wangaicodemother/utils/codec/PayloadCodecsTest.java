@@ -0,0 +1,54 @@
+package com.wang.wangaicodemother.utils.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class PayloadCodecsTest {
+
+    private static final String PAGE = """
+            <template>
+              <div class="container">
+                <header class="header">
+                  <nav class="nav">
+                    <router-link to="/" class="nav-link">首页</router-link>
+                  </nav>
+                </header>
+                <div class="card" v-for="item in list" :key="item.id">{{ item.title }}</div>
+              </div>
+            </template>
+            <style scoped>
+            .card {
+              background: #fff;
+              border-radius: 8px;
+              box-shadow: 0 2px 12px rgba(0, 0, 0, 0.08);
+            }
+            </style>
+            """;
+
+    @Test
+    void roundTripAndCompress() {
+        String text = "已为你生成以下页面：\n```vue\n" + PAGE.repeat(20) + "```";
+        String encoded = PayloadCodecs.encode(text, PayloadCodecs.FAST);
+        assertEquals(text, PayloadCodecs.decode(encoded));
+        log.info("{}: {} -> {} 字符", PayloadCodecs.FAST.id(), text.length(), encoded.length());
+        assertTrue(encoded.length() * 4 < text.length());
+    }
+
+    @Test
+    void plainTextIsKeptAndMarkerIsEscaped() {
+        String shortText = "帮我做一个待办清单";
+        assertSame(shortText, PayloadCodecs.encode(shortText, PayloadCodecs.FAST));
+        // 旧数据没有编码头部，原样返回
+        assertSame(shortText, PayloadCodecs.decode(shortText));
+        String marked = "\u0001f1:not encoded";
+        String encoded = PayloadCodecs.encode(marked, PayloadCodecs.FAST);
+        assertNotEquals(marked, encoded);
+        assertEquals(marked, PayloadCodecs.decode(encoded));
+    }
+}
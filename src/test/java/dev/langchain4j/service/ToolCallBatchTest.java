@@ -0,0 +1,89 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.tool.ConflictAwareToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolCallBatchTest {
+
+    private static final long TOOL_MILLIS = 200;
+
+    private final ConcurrentLinkedQueue<String> finished = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 以 arguments 作为文件路径，执行耗时固定
+     */
+    private final ConflictAwareToolExecutor writeFile = new ConflictAwareToolExecutor() {
+        @Override
+        public String execute(ToolExecutionRequest request, Object memoryId) {
+            sleep();
+            finished.add(request.id());
+            return "written " + request.id();
+        }
+
+        @Override
+        public Set<String> conflictKeys(ToolExecutionRequest request, Object memoryId) {
+            return Set.of(request.arguments());
+        }
+    };
+
+    private final ToolExecutor listDir = (request, memoryId) -> {
+        sleep();
+        finished.add(request.id());
+        return "listed " + request.id();
+    };
+
+    @Test
+    void independentCallsOverlapAndSamePathStaysOrdered() {
+        List<ToolExecutionRequest> requests = List.of(
+                request("1", "writeFile", "a.vue"),
+                request("2", "writeFile", "b.vue"),
+                request("3", "writeFile", "a.vue"),
+                request("4", "writeFile", "c.vue"));
+        long start = System.nanoTime();
+        ToolCallBatch batch = ToolCallBatch.dispatch(requests, Map.of("writeFile", writeFile), 1L, () -> false, "cancelled");
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals("written " + (i + 1), batch.result(i));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 1、2、4 并发，3 等待 1 完成：总耗时约两次调用
+        assertTrue(elapsedMillis < TOOL_MILLIS * 3, "elapsed " + elapsedMillis + " ms");
+        List<String> order = List.copyOf(finished);
+        assertTrue(order.indexOf("1") < order.indexOf("3"), "order " + order);
+    }
+
+    @Test
+    void undeclaredToolIsABarrierAndCancelledCallsAreSkipped() {
+        List<ToolExecutionRequest> requests = List.of(
+                request("1", "writeFile", "a.vue"),
+                request("2", "listDir", ""),
+                request("3", "writeFile", "b.vue"));
+        ToolCallBatch batch = ToolCallBatch.dispatch(requests,
+                Map.of("writeFile", writeFile, "listDir", listDir), 1L, () -> finished.contains("2"), "cancelled");
+        assertEquals("written 1", batch.result(0));
+        assertEquals("listed 2", batch.result(1));
+        assertEquals("cancelled", batch.result(2));
+        assertEquals(List.of("1", "2"), List.copyOf(finished));
+    }
+
+    private static ToolExecutionRequest request(String id, String name, String arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(TOOL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -14,6 +14,12 @@ declare namespace API {
     appId?: number
   }
 
+  type AppDeployVO = {
+    deployUrl?: string
+    buildResult?: string
+    buildResultText?: string
+  }
+
   type AppQueryRequest = {
     pageNum?: number
     pageSize?: number
@@ -103,6 +109,12 @@ declare namespace API {
     sort?: string
   }
 
+  type BaseResponseAppDeployVO = {
+    code?: number
+    data?: AppDeployVO
+    message?: string
+  }
+
   type BaseResponseAppVO = {
     code?: number
     data?: AppVO